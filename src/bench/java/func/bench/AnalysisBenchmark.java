@@ -0,0 +1,42 @@
+package func.bench;
+
+import func.Parser;
+import func.TokenBuffer;
+import func.syntax.Program;
+import func.visitors.AssignmentAnalyser;
+import func.visitors.ProgramAnalyser;
+import func.visitors.SemanticAnalyser;
+import func.visitors.TypeChecker;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares running the {@link SemanticAnalyser}, {@link AssignmentAnalyser}
+ * and {@link TypeChecker} back to back with the fused {@link ProgramAnalyser},
+ * run on this thread and across the common pool.
+ * <p>
+ * Usage: AnalysisBenchmark [size] [runs], ie. AnalysisBenchmark 100M 5
+ */
+public class AnalysisBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        long size = Programs.size(args.length > 0 ? args[0] : "100M");
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Path file = Programs.generate(size);
+        long bytes = Files.size(file);
+        Program program = new Parser(TokenBuffer.read(file)).program();
+        System.out.printf("analysing %.1f MB of func (%d methods)%n", bytes / (double) (1 << 20), program.methods.methods.size());
+
+        Timer timer = new Timer(2, runs);
+        timer.time("separate passes", bytes, () -> {
+            program.accept(new SemanticAnalyser());
+            program.accept(new AssignmentAnalyser());
+            program.accept(new TypeChecker());
+        });
+        timer.time("fused", bytes, () -> program.accept(new ProgramAnalyser()));
+        timer.time("fused, parallel", bytes, () -> program.accept(new ProgramAnalyser(ForkJoinPool.commonPool())));
+    }
+}
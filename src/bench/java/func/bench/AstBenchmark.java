@@ -0,0 +1,73 @@
+package func.bench;
+
+import func.Parser;
+import func.TokenBuffer;
+import func.syntax.FlatTree;
+import func.syntax.Program;
+import func.syntax.SymbolTable;
+import func.visitors.AssignmentAnalyser;
+import func.visitors.SemanticAnalyser;
+import func.visitors.TypeChecker;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares the object AST with the {@link FlatTree}: how many
+ * nodes each holds, how much heap each retains, and how long
+ * the analysis passes take to walk them back to back. Each run over
+ * the flat tree starts from a fresh view, so it materialises the
+ * methods again rather than walking objects left by the last run.
+ * <p>
+ * Usage: AstBenchmark [size] [runs], ie. AstBenchmark 100M 3
+ */
+public class AstBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        long size = Programs.size(args.length > 0 ? args[0] : "100M");
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        Path file = Programs.generate(size);
+        long bytes = Files.size(file);
+        TokenBuffer tokens = TokenBuffer.read(file);
+        System.out.printf("parsing %.1f MB of func (%d tokens)%n", bytes / (double) (1 << 20), tokens.size());
+
+        long before = used();
+        Program objects = new Parser(tokens).program();
+        long objectBytes = used() - before;
+
+        before = used();
+        FlatTree tree = new FlatTree(new SymbolTable());
+        new Parser(tokens, tree.symbols()).program(tree::add);
+        tree.trim();
+        long flatBytes = used() - before;
+
+        int nodes = 0;
+        for (int i = 0; i < tree.size(); i++) {
+            if (tree.kind(i) != FlatTree.Kind.EMPTY) nodes++;
+        }
+        System.out.printf("object AST  %10d nodes  %8.1f MB retained  %6.1f bytes/node%n",
+            nodes, objectBytes / (double) (1 << 20), objectBytes / (double) nodes);
+        System.out.printf("flat AST    %10d rows   %8.1f MB retained  %6.1f bytes/node  (%.1f MB of columns)%n",
+            tree.size(), flatBytes / (double) (1 << 20), flatBytes / (double) nodes, tree.retainedBytes() / (double) (1 << 20));
+
+        Timer timer = new Timer(1, runs);
+        timer.time("analyse object AST", bytes, () -> analyse(objects));
+        timer.time("analyse flat AST", bytes, () -> analyse(tree.program()));
+    }
+
+    private static void analyse(Program program) {
+        program.accept(new SemanticAnalyser());
+        program.accept(new AssignmentAnalyser());
+        program.accept(new TypeChecker());
+    }
+
+    private static long used() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
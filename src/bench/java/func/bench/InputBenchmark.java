@@ -0,0 +1,40 @@
+package func.bench;
+
+import func.TokenBuffer;
+
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares lexing a file through the memory-mapped ASCII path
+ * with decoding it through an InputStreamReader.
+ * <p>
+ * Usage: InputBenchmark [size] [runs], ie. InputBenchmark 100M 5
+ */
+public class InputBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        long size = Programs.size(args.length > 0 ? args[0] : "100M");
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Path file = Programs.generate(size);
+        long bytes = Files.size(file);
+        System.out.printf("lexing %.1f MB of func%n", bytes / (double) (1 << 20));
+
+        Timer timer = new Timer(2, runs);
+        int[] tokens = new int[2];
+        timer.time("reader", bytes, () -> {
+            try (Reader in = new InputStreamReader(new FileInputStream(file.toFile()))) {
+                tokens[0] = TokenBuffer.read(in).size();
+            }
+        });
+        timer.time("mapped", bytes, () -> tokens[1] = TokenBuffer.read(file).size());
+
+        if (tokens[0] != tokens[1])
+            throw new AssertionError("paths disagree: " + tokens[0] + " vs " + tokens[1] + " tokens");
+        System.out.println(tokens[0] + " tokens");
+    }
+}
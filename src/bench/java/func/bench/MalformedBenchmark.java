@@ -0,0 +1,40 @@
+package func.bench;
+
+import func.Parser;
+import func.TokenBuffer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Times parsing a program in which every method has syntax
+ * errors, so that the parser spends its time recovering.
+ * Sizes are doubled each round; recovery is linear if the
+ * throughput holds steady.
+ * <p>
+ * Usage: MalformedBenchmark [size] [rounds] [runs], ie. MalformedBenchmark 1M 4 5
+ */
+public class MalformedBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        long size = Programs.size(args.length > 0 ? args[0] : "1M");
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        Timer timer = new Timer(2, runs);
+        for (int round = 0; round < rounds; round++, size *= 2) {
+            Path file = Programs.generate(size, true);
+            long bytes = Files.size(file);
+            TokenBuffer tokens = TokenBuffer.read(file);
+
+            int[] errors = new int[1];
+            String name = String.format("%.1f MB", bytes / (double) (1 << 20));
+            timer.time(name, bytes, () -> {
+                Parser parser = new Parser(tokens);
+                parser.program();
+                errors[0] = parser.getErrors().size();
+            });
+            System.out.println("  " + tokens.size() + " tokens, " + errors[0] + " errors");
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package func.bench;
+
+import func.ParallelParser;
+import func.Parser;
+import func.TokenBuffer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares parsing a lexed program with the sequential
+ * {@link Parser} and with the {@link ParallelParser}.
+ * <p>
+ * Usage: ParseBenchmark [size] [runs] [threads], ie. ParseBenchmark 100M 5 32
+ */
+public class ParseBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        long size = Programs.size(args.length > 0 ? args[0] : "100M");
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        Path file = Programs.generate(size);
+        long bytes = Files.size(file);
+        TokenBuffer tokens = TokenBuffer.read(file);
+        System.out.printf("parsing %.1f MB of func (%d tokens) on %d threads%n", bytes / (double) (1 << 20), tokens.size(), threads);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Timer timer = new Timer(2, runs);
+        int[] methods = new int[2];
+        timer.time("sequential", bytes, () -> methods[0] = new Parser(tokens).program().methods.methods.size());
+        timer.time("parallel", bytes, () -> methods[1] = new ParallelParser(tokens, pool).program().methods.methods.size());
+        pool.shutdown();
+
+        if (methods[0] != methods[1])
+            throw new AssertionError("parsers disagree: " + methods[0] + " vs " + methods[1] + " methods");
+        System.out.println(methods[0] + " methods");
+    }
+}
@@ -0,0 +1,115 @@
+package func.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates large func programs to benchmark against,
+ * either valid or riddled with syntax errors.
+ */
+public class Programs {
+
+    private static final String METHOD = "method f%d(a, b) vars i, r\n" +
+        "begin\n" +
+        "    r := 0;\n" +
+        "    i := 0;\n" +
+        "    while less(i, b)\n" +
+        "    begin\n" +
+        "        r := plus(r, times(a, i));\n" +
+        "        i := plus(i, 1);\n" +
+        "    endwhile;\n" +
+        "    if eq(r, %d)\n" +
+        "    then\n" +
+        "        write r;\n" +
+        "    else\n" +
+        "        write 0;\n" +
+        "    endif;\n" +
+        "    return r;\n" +
+        "endmethod;\n\n";
+
+    private static final String MAIN = "method main() vars x\n" +
+        "begin\n" +
+        "    x := f0(2, 10);\n" +
+        "    write x;\n" +
+        "endmethod;\n";
+
+    /**
+     * Methods with the kinds of mistakes the parser has to recover
+     * from: unclosed conditions, bad arguments, stray tokens, missing
+     * parentheses, semicolons and terminators.
+     */
+    private static final String[] BROKEN = {
+        "method m%d() vars a, b, x\n" +
+            "begin\n" +
+            "    a := 5;\n" +
+            "    x := pow(b, a);\n" +
+            "    if eq(x,\n" +
+            "    endif;\n" +
+            "endmethod;\n\n",
+        "method h%d(x, 1) begin x := 1 endmethod;\n\n",
+        "method w%d() vars i begin\n" +
+            "    while less(i 10) begin i := plus(i, 1) endwhile;\n" +
+            "    := := 3;\n" +
+            "    write ;\n" +
+            "endmethod;\n\n",
+        "method r%d(a) begin\n" +
+            "    if a then write a; else write 0;\n" +
+            "    return a\n" +
+            "endmethod;\n\n",
+    };
+
+    /**
+     * Writes a program of at least the given size.
+     */
+    public static void write(Writer out, long bytes) throws IOException {
+        long written = 0;
+        for (int i = 0; written < bytes; i++) {
+            String method = String.format(METHOD, i, i);
+            out.write(method);
+            written += method.length();
+        }
+        out.write(MAIN);
+    }
+
+    /**
+     * Writes a program of at least the given size in which
+     * every method has syntax errors.
+     */
+    public static void writeMalformed(Writer out, long bytes) throws IOException {
+        long written = 0;
+        for (int i = 0; written < bytes; i++) {
+            String method = String.format(BROKEN[i % BROKEN.length], i);
+            out.write(method);
+            written += method.length();
+        }
+    }
+
+    /**
+     * Writes a program of at least the given size to a temporary file.
+     */
+    public static Path generate(long bytes) throws IOException {
+        return generate(bytes, false);
+    }
+
+    public static Path generate(long bytes, boolean malformed) throws IOException {
+        Path path = Files.createTempFile("func-bench", ".func");
+        path.toFile().deleteOnExit();
+        try (Writer out = Files.newBufferedWriter(path)) {
+            if (malformed) writeMalformed(out, bytes);
+            else write(out, bytes);
+        }
+        return path;
+    }
+
+    /**
+     * Reads a size such as 100M or 512K.
+     */
+    public static long size(String size) {
+        char unit = Character.toUpperCase(size.charAt(size.length() - 1));
+        long multiplier = unit == 'K' ? 1L << 10 : unit == 'M' ? 1L << 20 : unit == 'G' ? 1L << 30 : 1;
+        String digits = multiplier == 1 ? size : size.substring(0, size.length() - 1);
+        return Long.parseLong(digits) * multiplier;
+    }
+}
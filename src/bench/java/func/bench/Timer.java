@@ -0,0 +1,48 @@
+package func.bench;
+
+import java.util.Arrays;
+
+/**
+ * Times a piece of work over a number of runs
+ * after warming the JIT up on it.
+ */
+public class Timer {
+
+    @FunctionalInterface
+    public interface Work {
+        void run() throws Exception;
+    }
+
+    private final int warmups;
+    private final int runs;
+
+    public Timer(int warmups, int runs) {
+        this.warmups = warmups;
+        this.runs = runs;
+    }
+
+    /**
+     * Runs the work and prints the best and median times, plus
+     * throughput if the amount of input per run is known.
+     *
+     * @return the median time in nanoseconds
+     */
+    public long time(String name, long bytes, Work work) throws Exception {
+        for (int i = 0; i < this.warmups; i++) work.run();
+
+        long[] times = new long[this.runs];
+        for (int i = 0; i < this.runs; i++) {
+            System.gc();
+            long start = System.nanoTime();
+            work.run();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+
+        long median = times[times.length / 2];
+        StringBuilder line = new StringBuilder(String.format("%-24s best %8.1f ms  median %8.1f ms", name, times[0] / 1e6, median / 1e6));
+        if (bytes > 0) line.append(String.format("  %8.1f MB/s", (bytes / (double) (1 << 20)) / (median / 1e9)));
+        System.out.println(line);
+        return median;
+    }
+}
@@ -1,7 +1,16 @@
 package func;
 
+import func.errors.CompileError;
+import func.errors.SyntaxError;
+import func.ir.*;
+import func.passes.Analyses;
+import func.passes.Optimiser;
+import func.passes.PassManager;
+import func.passes.VisitorPass;
+import func.syntax.FlatTree;
 import func.syntax.Identifier;
 import func.syntax.Program;
+import func.syntax.SymbolTable;
 import func.visitors.*;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
@@ -14,12 +23,14 @@ import javax.tools.ToolProvider;
 import java.io.*;
 import java.math.BigInteger;
 import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
@@ -30,10 +41,26 @@ import java.util.stream.Collectors;
 @Command(name = "func", mixinStandardHelpOptions = true, version = "functools version 2.1.1")
 public class Func implements Callable<Void> {
 
-    public static final AbstractList<Identifier> builtins = new ArrayList<>(Arrays.asList(
-        new Identifier("plus"), new Identifier("minus"),
-        new Identifier("times"), new Identifier("divide")
-    ));
+    public static final AbstractList<Identifier> builtins = new ArrayList<>(SymbolTable.builtins());
+
+    @Option(names = "--parallel", description = "parse and check methods concurrently, one per core")
+    boolean parallel;
+
+    @Option(names = "--flat", description = "build the AST in a flat arena while parsing, materialising methods as passes read them")
+    boolean flat;
+
+    /**
+     * Swallows everything written to it, for when only a digest is wanted.
+     */
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
 
     public static void main(String[] args) {
         CommandLine.call(new Func(), args);
@@ -56,9 +83,13 @@ public class Func implements Callable<Void> {
         @Parameters(paramLabel = "<infile>", description = "read input from file") File inFile,
         @Option(names = "-o", paramLabel = "<outfile>", description = "direct output to file") String outFile
     ) {
-        InputStream in = getInputStream(inFile);
-        Program program = parseProgram(in);
-        writeStringToOutput(outFile, program.toString());
+        Program program = parseProgram(readTokens(inFile, null), parallel, flat);
+        try (Writer out = new BufferedWriter(openOutput(outFile))) {
+            new ASTPrinter(out).visit(program);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Could not write to file: " + e.getLocalizedMessage());
+            System.exit(1);
+        }
     }
 
     @Command(
@@ -71,14 +102,18 @@ public class Func implements Callable<Void> {
     void validate(
         @Parameters(paramLabel = "<infile>", description = "read input from file") File inFile
     ) throws NoSuchAlgorithmException {
-        InputStream in = getInputStream(inFile);
-        DigestInputStream digestStream = new DigestInputStream(in, MessageDigest.getInstance("SHA-256"));
-        Program program = parseProgram(digestStream);
+        MessageDigest source = MessageDigest.getInstance("SHA-256");
+        Program program = parseProgram(readTokens(inFile, source), parallel, flat);
 
+        // stream the formatted program into the digest rather than building it
         MessageDigest md = MessageDigest.getInstance("SHA-256");
-        for (byte aByte : program.toString().getBytes()) md.update(aByte);
+        try (Writer out = new OutputStreamWriter(new DigestOutputStream(DISCARD, md))) {
+            new ASTPrinter(out).visit(program);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
 
-        byte[] dig = digestStream.getMessageDigest().digest();
+        byte[] dig = source.digest();
         byte[] dig2 = md.digest();
 
         System.out.println("source:    " + String.format("%0" + (dig.length << 1) + "x", new BigInteger(1, dig)));
@@ -95,23 +130,61 @@ public class Func implements Callable<Void> {
     void compile(
         @Parameters(paramLabel = "<infile>", description = "read input from file") File inFile,
         @Option(names = "-o", paramLabel = "<outfile>", description = "direct output to file. if exporting to JAVA or JVM, simply supply the class name.") String outFile,
-        @Option(names = "-t", paramLabel = "<format>", description = "the format of the output: ${COMPLETION-CANDIDATES} (defaults to MIPS)", defaultValue = "MIPS") OutputFormat outputFormat
+        @Option(names = "-t", paramLabel = "<format>", description = "the format of the output: ${COMPLETION-CANDIDATES} (defaults to MIPS)", defaultValue = "MIPS") OutputFormat outputFormat,
+        @Option(names = "--ir", description = "compile through the SSA intermediate representation rather than straight from the syntax tree") boolean ir,
+        @Option(names = "--time-passes", description = "print the time, allocation and tree size of each pass, and what the peephole optimiser removed, to stderr") boolean timePasses,
+        @Option(names = "-O", description = "optimise the syntax tree before generating code") boolean optimise,
+        @Option(names = "--inline-size", paramLabel = "<nodes>", description = "with -O, inline methods of at most this many nodes (defaults to ${DEFAULT-VALUE})", defaultValue = "" + Optimiser.INLINE_SIZE) int inlineSize,
+        @Option(names = "--inline-depth", paramLabel = "<calls>", description = "with -O, inline calls at most this deep (defaults to ${DEFAULT-VALUE})", defaultValue = "" + Optimiser.INLINE_DEPTH) int inlineDepth,
+        @Option(names = "--eval-fuel", paramLabel = "<steps>", description = "with -O, run calls with constant arguments for at most this many steps at compile time (defaults to ${DEFAULT-VALUE})", defaultValue = "" + Optimiser.EVALUATION_FUEL) int fuel,
+        @Option(names = "--specialise-limit", paramLabel = "<copies>", description = "with -O, specialise at most this many copies of each method for constant arguments (defaults to ${DEFAULT-VALUE})", defaultValue = "" + Optimiser.SPECIALISE_LIMIT) int specialiseLimit,
+        @Option(names = "--unroll-factor", paramLabel = "<copies>", description = "with -O, unroll loops with a known trip count too long to unroll fully this many times (defaults to ${DEFAULT-VALUE})", defaultValue = "" + Optimiser.UNROLL_FACTOR) int unrollFactor
     ) {
-        InputStream in = getInputStream(inFile);
-        Program program = parseProgram(in);
+        PassManager passes = new PassManager(timePasses);
+        TokenBuffer tokens = passes.time("lex", () -> readTokens(inFile, null));
+        checkProgram(passes, tokens, parallel, flat);
+        if (optimise) new Optimiser(inlineSize, inlineDepth, fuel, specialiseLimit, unrollFactor).passes().forEach(passes::run);
+        passes.run(new VisitorPass("dead method elimination", Collections.singletonList(Analyses.CALL_GRAPH),
+            manager -> new EliminateDeadMethods(manager.get(Analyses.CALL_GRAPH)), Analyses.ALL));
+        Program program = passes.program();
         JavaTranspiler jc;
 
+        List<Function> functions = ir || outputFormat == OutputFormat.IR ? passes.time("lower", () -> Lowering.lower(program)) : null;
+        if (functions != null) {
+            passes.time("ssa", () -> functions.stream().map(SSABuilder::build).collect(Collectors.toList()));
+            if (outputFormat != OutputFormat.IR)
+                passes.time("destruct ssa", () -> functions.stream().map(SSADestructor::destruct).collect(Collectors.toList()));
+        }
+
         String outputCode = null;
         switch (outputFormat) {
             case MIPS:
-                MIPSCompiler mc = new MIPSCompiler();
-                mc.visit(program);
-                outputCode = mc.toString();
+                if (ir) {
+                    try {
+                        outputCode = passes.time("mips", () -> MIPSBackend.compile(functions));
+                    } catch (CompileError e) {
+                        System.err.println("Could not compile for MIPS: " + e.message);
+                        System.exit(1);
+                    }
+                    break;
+                }
+                outputCode = passes.time("mips", () -> {
+                    MIPSCompiler mc = new MIPSCompiler();
+                    mc.visit(program);
+                    return mc.toString();
+                });
                 break;
             case JAVA:
                 String className = outFile == null ? "Program" : outFile.split("\\.")[0];
+                if (ir) {
+                    outputCode = passes.time("java", () -> new JavaBackend(className).compile(functions));
+                    break;
+                }
                 jc = new JavaTranspiler(className);
-                outputCode = jc.visit(program);
+                outputCode = passes.time("java", () -> jc.visit(program));
+                break;
+            case IR:
+                outputCode = functions.stream().map(Object::toString).collect(Collectors.joining("\n"));
                 break;
             case JVM:
                 if (outFile == null) {
@@ -125,12 +198,24 @@ public class Func implements Callable<Void> {
                     System.exit(1);
                 }
 
+                if (ir) {
+                    compileJVM(passes.time("java", () -> new JavaBackend(outFile).compile(functions)), outFile);
+                    break;
+                }
                 jc = new JavaTranspiler(outFile);
-                compileJVM(jc.visit(program), outFile);
+                compileJVM(passes.time("java", () -> jc.visit(program)), outFile);
                 break;
         }
 
+        Peephole peephole = !optimise || outputFormat != OutputFormat.MIPS ? null : ir ? MIPSBackend.peephole() : MIPSCompiler.peephole();
+        if (peephole != null) {
+            String assembly = outputCode;
+            outputCode = passes.time("peephole", () -> peephole.optimise(assembly));
+        }
+
         writeStringToOutput(outFile, outputCode);
+        if (timePasses) passes.report(System.err);
+        if (timePasses && peephole != null) peephole.report(System.err);
     }
 
     private void compileJVM(String sourceCode, String className) {
@@ -148,9 +233,13 @@ public class Func implements Callable<Void> {
         }
     }
 
+    private static Writer openOutput(String outFile) throws IOException {
+        return outFile != null ? new FileWriter(outFile) : new OutputStreamWriter(System.out);
+    }
+
     private void writeStringToOutput(String outFile, String outputCode) {
         try {
-            Writer out = outFile != null ? new FileWriter(outFile) : new OutputStreamWriter(System.out);
+            Writer out = openOutput(outFile);
             out.write(outputCode);
             out.close();
         } catch (IOException e) {
@@ -160,61 +249,114 @@ public class Func implements Callable<Void> {
     }
 
     public static Program parseProgram(InputStream stream) {
-        Lexer symbols = new Lexer(new InputStreamReader(stream));
-        Parser p = new Parser(symbols);
+        TokenBuffer tokens = null;
+        try {
+            tokens = TokenBuffer.read(new InputStreamReader(stream));
+        } catch (IOException e) {
+            System.err.println("Could not read input: " + e.getLocalizedMessage());
+            System.exit(1);
+        }
+        return parseProgram(tokens);
+    }
+
+    public static Program parseProgram(TokenBuffer tokens) {
+        return parseProgram(tokens, false, false);
+    }
+
+    public static Program parseProgram(TokenBuffer tokens, boolean parallel, boolean flat) {
+        PassManager passes = new PassManager();
+        checkProgram(passes, tokens, parallel, flat);
+        return passes.program();
+    }
+
+    /**
+     * Parses and checks a program, leaving it in the pass manager.
+     * Exits if there are any errors.
+     */
+    public static void checkProgram(PassManager passes, TokenBuffer tokens, boolean parallel, boolean flat) {
         boolean errors = false;
-        Program program = p.program();
+        List<SyntaxError> syntaxErrors = new ArrayList<>();
+        passes.setProgram(passes.time("parse", () -> parse(tokens, parallel, flat, syntaxErrors)));
 
-        if (p.hasErrors()) {
+        if (!syntaxErrors.isEmpty()) {
             errors = true;
             System.err.println("There are syntax errors with your program:");
-            System.err.println(p.getErrors().stream().map(err -> "\t" + err).collect(Collectors.joining("\n")));
+            System.err.println(syntaxErrors.stream().map(err -> "\t" + err).collect(Collectors.joining("\n")));
         }
 
-        SemanticAnalyser sa = new SemanticAnalyser();
-        if (!program.accept(sa)) {
+        // scope, assignment and type checks share a single walk of each method
+        ProgramAnalyser pa = passes.get(parallel ? Analyses.PARALLEL_DIAGNOSTICS : Analyses.DIAGNOSTICS);
+
+        if (!pa.getSemanticErrors().isEmpty()) {
             errors = true;
             System.err.println("There are semantic errors with your program:");
-            System.err.println(sa.getErrors().stream().map(err -> "\t" + err).collect(Collectors.joining("\n")));
+            System.err.println(pa.getSemanticErrors().stream().map(err -> "\t" + err).collect(Collectors.joining("\n")));
         }
 
-        AssignmentAnalyser aa = new AssignmentAnalyser();
-        if (!program.accept(aa)) {
+        if (!pa.getAssignmentErrors().isEmpty()) {
             errors = true;
             System.err.println("There are assignment errors with your program:");
-            System.err.println(aa.getErrors().stream().map(err -> "\t" + err).collect(Collectors.joining("\n")));
+            System.err.println(pa.getAssignmentErrors().stream().map(err -> "\t" + err).collect(Collectors.joining("\n")));
         }
 
-        TypeChecker fv = new TypeChecker();
-        program.accept(fv);
-        if (fv.getErrors().size() > 0) {
+        if (!pa.getTypeErrors().isEmpty()) {
             errors = true;
             System.err.println("There are type errors with your program:");
-            System.err.println(fv.getErrors().stream().map(err -> "\t" + err).collect(Collectors.joining("\n")));
+            System.err.println(pa.getTypeErrors().stream().map(err -> "\t" + err).collect(Collectors.joining("\n")));
         }
 
-        CleanTree ct = new CleanTree();
-        program = ct.visit(program);
+        passes.run(new VisitorPass("clean", CleanTree::new, Analyses.ALL));
 
         if (errors) {
             System.exit(1);
         }
+    }
 
+    private static Program parse(TokenBuffer tokens, boolean parallel, boolean flat, List<SyntaxError> syntaxErrors) {
+        Program program;
+        if (parallel) {
+            ParallelParser p = new ParallelParser(tokens);
+            program = p.program();
+            syntaxErrors.addAll(p.getErrors());
+            if (flat) program = FlatTree.of(program).program();
+        } else if (flat) {
+            // flatten each method as it is parsed; passes materialise them again as they read them
+            FlatTree tree = new FlatTree(new SymbolTable());
+            Parser p = new Parser(tokens, tree.symbols());
+            p.program(tree::add);
+            tree.trim();
+            program = tree.program();
+            syntaxErrors.addAll(p.getErrors());
+        } else {
+            Parser p = new Parser(tokens);
+            program = p.program();
+            syntaxErrors.addAll(p.getErrors());
+        }
         return program;
     }
 
-    private InputStream getInputStream(File inFile) {
-        InputStream in = null;
+    /**
+     * Lexes the input file, or stdin if there isn't one. Files are
+     * memory-mapped (see {@link TokenBuffer#read(java.nio.file.Path)}).
+     * If a digest is given, the raw bytes of the input are fed into it.
+     */
+    private TokenBuffer readTokens(File inFile, MessageDigest digest) {
         try {
-            in = inFile != null ? new FileInputStream(inFile) : System.in;
-        } catch (FileNotFoundException e) {
+            if (inFile == null) {
+                InputStream in = digest != null ? new DigestInputStream(System.in, digest) : System.in;
+                return TokenBuffer.read(new InputStreamReader(in));
+            }
+            MappedSource source = MappedSource.map(inFile.toPath());
+            if (digest != null) digest.update(source.bytes());
+            return TokenBuffer.read(source);
+        } catch (IOException e) {
             System.err.println("Error with your file: " + e.getLocalizedMessage());
             System.exit(1);
+            return null;
         }
-        return in;
     }
 
     private enum OutputFormat {
-        JVM, JAVA, MIPS
+        JVM, JAVA, MIPS, IR
     }
 }
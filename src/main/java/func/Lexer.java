@@ -31,10 +31,10 @@ public class Lexer extends func.JFlexLexer implements Iterator<Token> {
      */
     private Token lex() {
         try {
-            Token ft = this.yylex();
-            while (ft != null && ft.type == Token.Type.WHITESPACE) ft = this.yylex();
-            if (ft.type == Token.Type.EOF) this.eof = true;
-            return ft;
+            Token.Type type = this.yylex();
+            while (type == Token.Type.WHITESPACE) type = this.yylex();
+            if (type == Token.Type.EOF) this.eof = true;
+            return this.token(type);
         } catch (IOException e) {
             System.out.println(e.toString());
             System.exit(1);
@@ -42,6 +42,20 @@ public class Lexer extends func.JFlexLexer implements Iterator<Token> {
         }
     }
 
+    /**
+     * Lexes the rest of the input into a {@link TokenBuffer},
+     * ignoring whitespace. Only the type, offset and length
+     * of each token are recorded so no tokens are allocated.
+     */
+    void drain(TokenBuffer buffer) throws IOException {
+        Token.Type type;
+        do {
+            type = this.yylex();
+            if (type != Token.Type.WHITESPACE) buffer.add(type, this.offset(), this.yylength());
+        } while (type != Token.Type.EOF);
+        this.eof = true;
+    }
+
     @Override
     public boolean hasNext() {
         if (this.eof) return false;
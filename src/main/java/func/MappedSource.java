@@ -0,0 +1,109 @@
+package func;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A memory-mapped source file. When the file is pure ASCII
+ * every byte is already a char, so it can be handed to the
+ * scanner and sliced for lexemes without being decoded or
+ * copied onto the heap.
+ */
+class MappedSource implements CharSequence {
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final ByteBuffer bytes;
+    private final int length;
+
+    private MappedSource(ByteBuffer bytes) {
+        this.bytes = bytes;
+        this.length = bytes.limit();
+    }
+
+    static MappedSource map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(path + " is too large to compile");
+            return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * A view over the raw bytes of the file.
+     */
+    ByteBuffer bytes() {
+        return this.bytes.duplicate();
+    }
+
+    /**
+     * Whether every byte in the file is 7-bit ASCII,
+     * checking eight bytes at a time.
+     */
+    boolean isAscii() {
+        int i = 0;
+        for (; i + 8 <= this.length; i += 8) {
+            if ((this.bytes.getLong(i) & HIGH_BITS) != 0) return false;
+        }
+        for (; i < this.length; i++) {
+            if (this.bytes.get(i) < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * A reader over the file that widens each byte to a char.
+     * Only meaningful when the file {@link #isAscii()}.
+     */
+    Reader reader() {
+        ByteBuffer view = this.bytes();
+        return new Reader() {
+            private byte[] chunk = new byte[0];
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                if (!view.hasRemaining()) return -1;
+                int count = Math.min(length, view.remaining());
+                if (this.chunk.length < count) this.chunk = new byte[count];
+                view.get(this.chunk, 0, count);
+                for (int i = 0; i < count; i++) {
+                    buffer[offset + i] = (char) this.chunk[i];
+                }
+                return count;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (this.bytes.get(index) & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        byte[] slice = new byte[end - start];
+        ByteBuffer view = this.bytes();
+        view.position(start);
+        view.get(slice);
+        return new String(slice, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return this.subSequence(0, this.length).toString();
+    }
+}
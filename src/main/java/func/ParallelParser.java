@@ -0,0 +1,162 @@
+package func;
+
+import func.errors.SyntaxError;
+import func.syntax.Method;
+import func.syntax.Methods;
+import func.syntax.Program;
+import func.syntax.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static func.Token.Type.*;
+
+/**
+ * Parses a {@link TokenBuffer} on a {@link ForkJoinPool}, one
+ * method at a time.
+ * <p>
+ * A program is a flat list of methods, so every METHOD token at
+ * the start of the buffer or straight after ENDMETHOD SEMI is very
+ * likely where the {@link Parser} will start its next method. The
+ * buffer is split into ranges, and each task parses the methods
+ * starting in its range with a parser of its own.
+ * <p>
+ * The results are then stitched together in source order, following
+ * the positions a sequential parse would visit. A broken method may
+ * end somewhere other than the next boundary, in which case the
+ * methods up to the next boundary it lines up with are parsed again
+ * on this thread. The program and errors are therefore the same as
+ * {@link Parser#program()} gives for the same tokens.
+ */
+public class ParallelParser {
+
+    /**
+     * The fewest tokens worth handing to a task of their own.
+     */
+    private static final int MIN_RANGE = 1 << 12;
+
+    private final TokenBuffer tokens;
+    private final SymbolTable symbols;
+    private final ForkJoinPool pool;
+    private final List<SyntaxError> errors;
+
+    public ParallelParser(TokenBuffer tokens) {
+        this(tokens, ForkJoinPool.commonPool());
+    }
+
+    public ParallelParser(TokenBuffer tokens, ForkJoinPool pool) {
+        this.tokens = tokens;
+        this.symbols = new SymbolTable();
+        this.pool = pool;
+        this.errors = new ArrayList<>();
+    }
+
+    public List<SyntaxError> getErrors() {
+        return Collections.unmodifiableList(this.errors);
+    }
+
+    public boolean hasErrors() {
+        return !this.errors.isEmpty();
+    }
+
+    /**
+     * Parses a program, rethrowing the first error that
+     * the sequential parser would not have recovered from.
+     */
+    public Program program() {
+        int range = Math.max(MIN_RANGE, this.tokens.size() / (this.pool.getParallelism() * 4));
+        List<Slice> slices = this.pool.invoke(new Scan(0, this.tokens.size(), range));
+
+        List<Method> methods = new ArrayList<>();
+        int position = 0;
+        int next = 0;
+        while (this.tokens.has(position) && this.tokens.type(position) != EOF) {
+            while (next < slices.size() && slices.get(next).start < position) next++;
+            Slice slice = next < slices.size() && slices.get(next).start == position
+                ? slices.get(next)
+                : this.parse(position);
+
+            this.errors.addAll(slice.errors);
+            if (slice.failure != null) throw slice.failure;
+            methods.add(slice.method);
+            position = slice.end;
+        }
+
+        return new Program(new Methods(methods), this.symbols);
+    }
+
+    private boolean isBoundary(int index) {
+        if (this.tokens.type(index) != METHOD) return false;
+        return index == 0 || index >= 2 && this.tokens.type(index - 1) == SEMI && this.tokens.type(index - 2) == ENDMETHOD;
+    }
+
+    /**
+     * Parses the method starting at the given token.
+     */
+    private Slice parse(int start) {
+        Parser parser = new Parser(this.tokens, this.symbols, start);
+        Slice slice = new Slice(start);
+        try {
+            slice.method = parser.method();
+        } catch (RuntimeException e) {
+            slice.failure = e;
+        }
+        slice.errors = parser.getErrors();
+        slice.end = parser.position();
+        return slice;
+    }
+
+    /**
+     * A method parsed on its own, along with the errors it raised
+     * and the position the parser was left at.
+     */
+    private static class Slice {
+        final int start;
+        int end;
+        Method method;
+        List<SyntaxError> errors;
+        RuntimeException failure;
+
+        Slice(int start) {
+            this.start = start;
+        }
+    }
+
+    /**
+     * Parses every method starting in a range of tokens,
+     * splitting the range in half until it is small enough.
+     */
+    private class Scan extends RecursiveTask<List<Slice>> {
+        private final int from;
+        private final int to;
+        private final int range;
+
+        Scan(int from, int to, int range) {
+            this.from = from;
+            this.to = to;
+            this.range = range;
+        }
+
+        @Override
+        protected List<Slice> compute() {
+            if (this.to - this.from > this.range) {
+                int middle = (this.from + this.to) >>> 1;
+                Scan left = new Scan(this.from, middle, this.range);
+                left.fork();
+                List<Slice> right = new Scan(middle, this.to, this.range).compute();
+                List<Slice> slices = left.join();
+                slices.addAll(right);
+                return slices;
+            }
+
+            List<Slice> slices = new ArrayList<>();
+            for (int i = this.from; i < this.to; i++) {
+                if (isBoundary(i)) slices.add(parse(i));
+            }
+            return slices;
+        }
+    }
+}
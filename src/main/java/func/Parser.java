@@ -12,29 +12,79 @@ import func.syntax.statement.rw.Read;
 import func.syntax.statement.rw.Write;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 import static func.Token.Type.*;
 
 /**
- * Parses a {@link Token} iterator building a
+ * Parses a {@link TokenStream} building a
  * valid AST for the Func language. Any syntax errors
  * will raise a {@link SyntaxError} with an appropriate message.
  */
 public class Parser {
 
-    private final List<Token> tokens;
-    private final ListIterator<Token> iterator;
+    private final TokenStream tokens;
+    private final SymbolTable symbols;
+    private int position;
     private final List<SyntaxError> errors;
 
     public Parser(Iterator<Token> tokens) {
-        this.tokens = new ArrayList<>();
-        tokens.forEachRemaining(
-            this.tokens::add
-        );
-        this.iterator = this.tokens.listIterator();
+        this(new TokenList(tokens));
+    }
+
+    public Parser(TokenStream tokens) {
+        this(tokens, new SymbolTable());
+    }
+
+    /**
+     * Creates a parser that interns identifiers into the given table.
+     */
+    public Parser(TokenStream tokens, SymbolTable symbols) {
+        this(tokens, symbols, 0);
+    }
+
+    /**
+     * Creates a parser that starts at the given token rather
+     * than the beginning, used to parse methods independently.
+     */
+    Parser(TokenStream tokens, SymbolTable symbols, int position) {
+        this.tokens = tokens;
+        this.symbols = symbols;
+        this.position = position;
         errors = new LinkedList<>();
     }
 
+    /**
+     * Adapts a plain token iterator, buffering it into a list.
+     */
+    private static class TokenList implements TokenStream {
+        private final List<Token> tokens = new ArrayList<>();
+
+        TokenList(Iterator<Token> tokens) {
+            tokens.forEachRemaining(this.tokens::add);
+        }
+
+        @Override
+        public boolean has(int index) {
+            return index < this.tokens.size();
+        }
+
+        @Override
+        public Token.Type type(int index) {
+            return this.tokens.get(index).type;
+        }
+
+        @Override
+        public String lexeme(int index) {
+            return this.tokens.get(index).lexeme;
+        }
+
+        @Override
+        public Token token(int index) {
+            return this.tokens.get(index);
+        }
+    }
+
     private SyntaxError error(String message, Token... token) {
         SyntaxError e = new SyntaxError(message, token);
         this.errors.add(e);
@@ -49,22 +99,27 @@ public class Parser {
         return !this.errors.isEmpty();
     }
 
+    /**
+     * The index of the next token to be parsed.
+     */
+    int position() {
+        return this.position;
+    }
+
     /**
      * Gives a list of token types, takes them in that order
-     * from the token iterator and asserts they are of the
+     * from the token stream and asserts they are of the
      * correct type.
      */
     private void take(Token.Type... tokens) throws SyntaxError {
-        Token actual;
         for (Token.Type expected : tokens) {
-            if (!this.iterator.hasNext()) {
+            if (!this.hasNext()) {
                 throw new SyntaxError("Reached " + peekBack() + " when expecting " + expected, peekBack());
             }
-            actual = this.iterator.next();
-            if (actual.type != expected) {
-                this.iterator.previous();
-                throw new SyntaxError("Expected " + expected + ", not", actual);
+            if (this.tokens.type(this.position) != expected) {
+                throw new SyntaxError("Expected " + expected + ", not", this.tokens.token(this.position));
             }
+            this.position++;
         }
     }
 
@@ -84,23 +139,23 @@ public class Parser {
         }
     }
 
+    private boolean hasNext() {
+        return this.tokens.has(this.position);
+    }
+
     /**
-     * Peeks ahead of the iterator, staying in place.
+     * Peeks at the type of the next token, staying in place.
      */
-    private Token peek() {
-        if (!this.iterator.hasNext()) return null;
-        Token match = this.iterator.next();
-        this.iterator.previous();
-        return match;
+    private Token.Type peek() {
+        if (!this.hasNext()) return null;
+        return this.tokens.type(this.position);
     }
 
     /**
-     * Peeks behind the iterator, staying in place.
+     * Peeks behind the cursor, staying in place.
      */
     private Token peekBack() {
-        Token match = this.iterator.previous();
-        this.iterator.next();
-        return match;
+        return this.tokens.token(this.position - 1);
     }
 
     /**
@@ -108,15 +163,13 @@ public class Parser {
      * This allows you to group logical parts of the grammar together,
      * such as the "vars" which is a token combined with a list of args.
      * <p>
-     * Allows the sub-parts of the grammar to throw exceptions without
-     * worrying about how they are handled.
+     * Every optional unit starts with a token that decides whether
+     * it is there, so rather than trying it and catching the failure
+     * this peeks at that token and only parses the unit if it matches.
      */
-    private <T> T optional(OptionalSyntax<T> func) {
-        try {
-            return func.apply();
-        } catch (MatchError e) {
-            return null;
-        }
+    private <T> T optional(Token.Type first, OptionalSyntax<T> func) {
+        if (peek() != first) return null;
+        return func.apply();
     }
 
     /**
@@ -157,33 +210,58 @@ public class Parser {
      * means we've forgotten an LPAR.
      */
     private void fastForward(Token.Type until, Token.Type before) {
-        Token t;
-        List<Token> errors = new ArrayList<>();
+        Token.Type t;
+        Skipped skipped = new Skipped();
         boolean missingToken = false;
 
-        while (iterator.hasNext()) {
-            t = iterator.next();
-            if (Objects.equals(until, t.type)) {
-                if (!errors.isEmpty()) {
-                    error("Expected " + until + ", not", errors.toArray(new Token[]{}));
+        while (this.hasNext()) {
+            t = this.tokens.type(this.position++);
+            if (until == t) {
+                if (skipped.count > 0) {
+                    error("Expected " + until + ", not", skipped.tokens());
                 }
                 break;
-            } else if (t.type == before) {
+            } else if (t == before) {
                 missingToken = true;
                 break;
             }
-            errors.add(t);
+            skipped.add(this.position - 1);
         }
 
-        missingToken |= !iterator.hasNext();
+        missingToken |= !this.hasNext();
 
         if (missingToken) {
             // we have reached the end of the program without the expected symbol
-            if (!errors.isEmpty())
-                throw new SyntaxError("Bad Syntax. Expected a missing " + until + ".", errors.toArray(new Token[]{}));
+            if (skipped.count > 0)
+                throw new SyntaxError("Bad Syntax. Expected a missing " + until + ".", skipped.tokens());
             throw new SyntaxError("Bad Syntax. Expected a missing " + until + ".");
         }
-        this.iterator.previous();
+        this.position--;
+    }
+
+    /**
+     * A run of tokens that recovery skipped over. When the stream
+     * keeps its tokens only where the run starts and how long it is
+     * are tracked, so tokens are only built once they are actually
+     * going into an error. Otherwise they are kept as they are
+     * scanned, before the stream lets go of them.
+     */
+    private class Skipped {
+        private final int from = Parser.this.position;
+        private final List<Token> kept = Parser.this.tokens.keepsTokens() ? null : new ArrayList<>();
+        int count;
+
+        void add(int index) {
+            if (this.kept != null) this.kept.add(Parser.this.tokens.token(index));
+            this.count++;
+        }
+
+        Token[] tokens() {
+            if (this.kept != null) return this.kept.toArray(new Token[0]);
+            Token[] tokens = new Token[this.count];
+            for (int i = 0; i < this.count; i++) tokens[i] = Parser.this.tokens.token(this.from + i);
+            return tokens;
+        }
     }
 
     /**
@@ -193,14 +271,24 @@ public class Parser {
      */
     public Program program() {
         Methods methods = this.methods();
-        return new Program(methods);
+        return new Program(methods, this.symbols);
+    }
+
+    /**
+     * Parses a program one method at a time, handing each method
+     * to the sink as soon as its endmethod is reached rather than
+     * collecting them. Paired with a {@link TokenWindow} this
+     * parses any length of input in constant memory.
+     */
+    public void program(Consumer<Method> sink) {
+        while (this.hasNext() && peek() != EOF) {
+            sink.accept(this.method());
+        }
     }
 
     private Methods methods() {
         List<Method> methods = new ArrayList<>();
-        while (this.iterator.hasNext() && peek().type != EOF) {
-            methods.add(this.method());
-        }
+        this.program(methods::add);
         return new Methods(methods);
     }
 
@@ -212,7 +300,7 @@ public class Parser {
         try {
             fastForward(LPAR, RPAR);
             this.take(LPAR);
-            args = optional(this::arguments);
+            args = optional(IDENTIFIER, this::arguments);
             try {
                 fastForward(RPAR);
                 this.take(RPAR);
@@ -223,7 +311,7 @@ public class Parser {
             error(e.message, e.token);
         }
 
-        Arguments vars = optional(this::vars);
+        Arguments vars = optional(VARS, this::vars);
 
         try {
             this.take(BEGIN);
@@ -232,7 +320,7 @@ public class Parser {
         }
 
         Statements statements = required(this::statements);
-        Identifier ret = optional(this::ret);
+        Identifier ret = optional(RETURN, this::ret);
 
         try {
             this.take(Token.Type.ENDMETHOD, Token.Type.SEMI);
@@ -259,10 +347,18 @@ public class Parser {
 
     public Statements statements() throws SyntaxError {
         List<Statement> statements = new ArrayList<>();
-        while (this.iterator.hasNext()) {
-            try {
-                statements.add(this.statement());
-            } catch (SyntaxError e) {
+        while (this.hasNext()) {
+            Statement statement = null;
+            if (startsStatement(peek())) {
+                try {
+                    statement = this.statement();
+                } catch (SyntaxError e) {
+                    // already reported, recover below
+                }
+            }
+            if (statement != null) {
+                statements.add(statement);
+            } else {
                 boolean unrecognisedStatement = fastForwardStatement();
                 if (unrecognisedStatement) {
                     statements.add(null);
@@ -276,36 +372,43 @@ public class Parser {
                 error(e.message, e.token);
             }
         }
-        if (statements.isEmpty()) throw error("No statements", this.iterator.hasNext() ? this.peekBack() : null);
+        if (statements.isEmpty()) throw error("No statements", this.hasNext() ? this.peekBack() : null);
         return new Statements(statements);
     }
 
+    private static boolean startsStatement(Token.Type type) {
+        return type == READ || type == WRITE || type == IDENTIFIER || type == IF || type == WHILE;
+    }
+
     /**
      * Fast-forwards over a given statement to get back to a known state.
+     * The end of the program counts as an end of statement, so nothing
+     * is scanned more than once and recovery is linear in the input.
      *
      * @return true if an unrecognized statement was discovered
      */
     private boolean fastForwardStatement() {
-        List<Token> errors = new ArrayList<>();
+        if (!this.hasNext()) return false;
+        Skipped skipped = new Skipped();
         do {
-            Token t = this.iterator.next();
-            if (t.type.endsStatement()) break;
-            if (t.type == Token.Type.SEMI) {
-                if (!errors.isEmpty())
-                    error("Unrecognised statement", errors.toArray(new Token[]{}));
+            Token.Type t = this.tokens.type(this.position++);
+            if (t.endsStatement()) break;
+            if (t == Token.Type.SEMI) {
+                if (skipped.count > 0)
+                    error("Unrecognised statement", skipped.tokens());
                 break;
             }
-            errors.add(t);
-        } while (iterator.hasNext());
-        this.iterator.previous();
-        return !errors.isEmpty();
+            skipped.add(this.position - 1);
+        } while (this.hasNext());
+        this.position--;
+        return skipped.count > 0;
     }
 
     public Statement statement() throws MatchError {
-        Token next = peek();
+        Token.Type next = peek();
 
         try {
-            switch (next.type) {
+            switch (next) {
                 case READ:
                     this.take(Token.Type.READ);
                     return new Read(this.identifier());
@@ -322,7 +425,7 @@ public class Parser {
                     Condition ifCond = this.cond();
                     this.take(THEN);
                     Statements then = this.statements();
-                    Statements otherwise = this.optional(this::otherwise);
+                    Statements otherwise = this.optional(ELSE, this::otherwise);
                     fastForward(ENDIF);
                     this.take(ENDIF);
                     return new If(ifCond, then, otherwise);
@@ -338,7 +441,7 @@ public class Parser {
             throw error(e.message, e.token);
         }
 
-        throw new MatchError("Not a valid statement! ", next);
+        throw new MatchError("Not a valid statement! ", this.tokens.token(this.position));
     }
 
     private Statements otherwise() throws SyntaxError {
@@ -370,7 +473,7 @@ public class Parser {
     }
 
     public BinaryOp bop() throws SyntaxError {
-        switch (this.iterator.next().type) {
+        switch (this.tokens.type(this.position++)) {
             case LESS:
                 return BinaryOp.Less;
             case LESSEQ:
@@ -380,15 +483,12 @@ public class Parser {
             case NEQ:
                 return BinaryOp.NEq;
             default:
-                throw new MatchError("Unrecognised binary operator", iterator.previous());
+                throw new MatchError("Unrecognised binary operator", this.tokens.token(--this.position));
         }
     }
 
     public Expression expression() throws SyntaxError {
-        Token s = this.iterator.next();
-        Token.Type t = s.type;
-        this.iterator.previous();
-        switch (t) {
+        switch (this.tokens.type(this.position)) {
             case IDENTIFIER:
                 return this.functionExpression();
             case INT_LITERAL:
@@ -399,7 +499,7 @@ public class Parser {
 
     private FunctionExpression functionExpression() throws SyntaxError {
         Identifier x = this.identifier();
-        Expressions exps = this.optional(this::functionApplication);
+        Expressions exps = this.optional(LPAR, this::functionApplication);
         return new FunctionExpression(x, exps);
     }
 
@@ -412,23 +512,22 @@ public class Parser {
 
     private Expressions expressions() {
         List<Expression> exps = new ArrayList<>();
-        while (this.iterator.hasNext()) {
+        while (this.hasNext()) {
             Expression e = this.expression();
             if (e == null) break;
             exps.add(e);
-            if (this.iterator.next().type == Token.Type.COMMA) continue;
-            this.iterator.previous();
+            if (this.tokens.type(this.position++) == Token.Type.COMMA) continue;
+            this.position--;
             break;
         }
         return new Expressions(exps);
     }
 
     private IntExpression intExpression() {
-        Token t = this.iterator.next();
-        if (t.type != INT_LITERAL) {
-            throw error("Expected " + INT_LITERAL + ", not", t);
+        if (this.tokens.type(this.position) != INT_LITERAL) {
+            throw error("Expected " + INT_LITERAL + ", not", this.tokens.token(this.position++));
         }
-        return new IntExpression(Integer.parseInt(t.lexeme));
+        return new IntExpression(Integer.parseInt(this.tokens.lexeme(this.position++)));
     }
 
     public Arguments arguments() throws SyntaxError {
@@ -439,8 +538,8 @@ public class Parser {
             throw new MatchError(e.message, e.token);
         }
 
-        while (this.iterator.hasNext() && this.peek().type == Token.Type.COMMA) {
-            this.iterator.next();
+        while (this.hasNext() && this.peek() == Token.Type.COMMA) {
+            this.position++;
             identifiers.add(required(this::identifier));
         }
 
@@ -448,11 +547,9 @@ public class Parser {
     }
 
     private Identifier identifier() throws MatchError {
-        Token token = this.iterator.next();
-        if (token.type != Token.Type.IDENTIFIER) {
-            this.iterator.previous();
-            throw new MatchError("Expected " + IDENTIFIER + ", not", token);
+        if (this.tokens.type(this.position) != Token.Type.IDENTIFIER) {
+            throw new MatchError("Expected " + IDENTIFIER + ", not", this.tokens.token(this.position));
         }
-        return new Identifier(token.lexeme);
+        return this.symbols.identifier(this.tokens.lexeme(this.position++));
     }
 }
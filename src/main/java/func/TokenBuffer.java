@@ -0,0 +1,164 @@
+package func;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A compact, struct-of-arrays store of every token in a
+ * source file.
+ * <p>
+ * Instead of a {@link Token} per lexeme, the type, start
+ * offset and length of each token are kept in parallel int
+ * arrays. Lexemes are sliced out of the source on demand and
+ * rows and columns are worked out from the offsets when a
+ * token is materialised, so lexing allocates nothing per token.
+ */
+public class TokenBuffer implements TokenStream {
+
+    private static final Token.Type[] TYPES = Token.Type.values();
+
+    private final CharSequence source;
+    private int[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int size;
+
+    /**
+     * The offset at which each line starts, computed
+     * the first time a row or column is needed. It is
+     * published after its count so that parsers sharing
+     * the buffer across threads see both or neither.
+     */
+    private volatile int[] lines;
+    private int lineCount;
+
+    TokenBuffer(CharSequence source) {
+        int capacity = Math.max(16, source.length() / 8);
+        this.source = source;
+        this.types = new int[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * Reads and lexes everything in the given reader.
+     */
+    public static TokenBuffer read(Reader in) throws IOException {
+        char[] chars = new char[8192];
+        int length = 0;
+        int read;
+        while ((read = in.read(chars, length, chars.length - length)) != -1) {
+            length += read;
+            if (length == chars.length) chars = Arrays.copyOf(chars, chars.length * 2);
+        }
+        return lex(CharBuffer.wrap(chars, 0, length), new CharArrayReader(chars, 0, length));
+    }
+
+    /**
+     * Reads and lexes a file. Pure ASCII files are memory-mapped and
+     * scanned in place; anything else is decoded through a reader.
+     */
+    public static TokenBuffer read(Path path) throws IOException {
+        return read(MappedSource.map(path));
+    }
+
+    /**
+     * Lexes a file that has already been mapped, decoding it
+     * from the mapped bytes if it isn't pure ASCII.
+     */
+    static TokenBuffer read(MappedSource source) throws IOException {
+        if (source.isAscii()) return lex(source, source.reader());
+        CharBuffer chars = Charset.defaultCharset().decode(source.bytes());
+        return lex(chars, new CharArrayReader(chars.array(), 0, chars.limit()));
+    }
+
+    /**
+     * Lexes a source, given both as a sequence to slice
+     * lexemes from and as a reader for the scanner.
+     */
+    static TokenBuffer lex(CharSequence source, Reader in) throws IOException {
+        TokenBuffer buffer = new TokenBuffer(source);
+        new Lexer(in).drain(buffer);
+        return buffer;
+    }
+
+    void add(Token.Type type, int start, int length) {
+        if (this.size == this.types.length) {
+            int capacity = this.size * 2;
+            this.types = Arrays.copyOf(this.types, capacity);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.lengths = Arrays.copyOf(this.lengths, capacity);
+        }
+        this.types[this.size] = type.ordinal();
+        this.starts[this.size] = start;
+        this.lengths[this.size] = length;
+        this.size++;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int start(int index) {
+        return this.starts[index];
+    }
+
+    public int length(int index) {
+        return this.lengths[index];
+    }
+
+    @Override
+    public boolean has(int index) {
+        return index < this.size;
+    }
+
+    @Override
+    public Token.Type type(int index) {
+        if (index >= this.size) throw new IndexOutOfBoundsException("Token " + index + " of " + this.size);
+        return TYPES[this.types[index]];
+    }
+
+    @Override
+    public String lexeme(int index) {
+        int start = this.start(index);
+        return this.source.subSequence(start, start + this.length(index)).toString();
+    }
+
+    @Override
+    public Token token(int index) {
+        int line = this.line(this.start(index));
+        return new Token(this.type(index), this.lexeme(index), this.start(index) - this.lines[line], line + 1, this.length(index));
+    }
+
+    /**
+     * Finds the (zero-indexed) line containing the given offset.
+     */
+    private int line(int offset) {
+        int[] lines = this.lines;
+        if (lines == null) lines = this.countLines();
+        int line = Arrays.binarySearch(lines, 0, this.lineCount, offset);
+        return line >= 0 ? line : -line - 2;
+    }
+
+    private int[] countLines() {
+        int[] lines = new int[64];
+        int count = 1;
+        int length = this.source.length();
+        for (int i = 0; i < length; i++) {
+            char c = this.source.charAt(i);
+            if (c == '\n' || c == '\r' && (i + 1 == length || this.source.charAt(i + 1) != '\n')) {
+                if (count == lines.length) lines = Arrays.copyOf(lines, count * 2);
+                lines[count++] = i + 1;
+            }
+        }
+        this.lineCount = count;
+        this.lines = lines;
+        return lines;
+    }
+}
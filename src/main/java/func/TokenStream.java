@@ -0,0 +1,33 @@
+package func;
+
+/**
+ * Indexed access to a sequence of tokens. This is
+ * what the {@link Parser} reads from, letting it work
+ * on types alone and only build a {@link Token} when
+ * it needs one (for an error, say).
+ */
+public interface TokenStream {
+
+    /**
+     * Whether there is a token at the given index.
+     */
+    boolean has(int index);
+
+    Token.Type type(int index);
+
+    String lexeme(int index);
+
+    /**
+     * Materialises the token at the given index.
+     */
+    Token token(int index);
+
+    /**
+     * Whether tokens can still be materialised once the parser
+     * has moved past them. Streams that drop old tokens say no,
+     * and the parser keeps the ones it needs as it goes.
+     */
+    default boolean keepsTokens() {
+        return true;
+    }
+}
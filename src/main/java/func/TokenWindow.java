@@ -0,0 +1,60 @@
+package func;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link TokenStream} that pulls tokens lazily from an
+ * iterator and keeps only the last few in a ring buffer.
+ * <p>
+ * The parser never looks more than one token ahead of or
+ * behind its cursor, so a small window is enough to parse
+ * an input of any length in constant memory.
+ */
+public class TokenWindow implements TokenStream {
+
+    private static final int CAPACITY = 8;
+    private static final int MASK = CAPACITY - 1;
+
+    private final Iterator<Token> tokens;
+    private final Token[] window;
+    private int pulled;
+
+    public TokenWindow(Iterator<Token> tokens) {
+        this.tokens = tokens;
+        this.window = new Token[CAPACITY];
+        this.pulled = 0;
+    }
+
+    @Override
+    public boolean has(int index) {
+        while (index >= this.pulled && this.tokens.hasNext()) {
+            this.window[this.pulled & MASK] = this.tokens.next();
+            this.pulled++;
+        }
+        return index < this.pulled;
+    }
+
+    @Override
+    public Token.Type type(int index) {
+        return this.token(index).type;
+    }
+
+    @Override
+    public String lexeme(int index) {
+        return this.token(index).lexeme;
+    }
+
+    @Override
+    public boolean keepsTokens() {
+        return false;
+    }
+
+    @Override
+    public Token token(int index) {
+        if (!this.has(index)) throw new NoSuchElementException();
+        if (index < this.pulled - CAPACITY)
+            throw new IllegalStateException("Token " + index + " is no longer in the window");
+        return this.window[index & MASK];
+    }
+}
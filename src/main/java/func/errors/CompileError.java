@@ -1,8 +1,16 @@
 package func.errors;
 
-import lombok.AllArgsConstructor;
-
-@AllArgsConstructor
+/**
+ * The base of every error the compiler reports. These are
+ * diagnostics about the program being compiled rather than
+ * faults in the compiler, so they don't capture a stack
+ * trace, which keeps raising one during recovery cheap.
+ */
 public class CompileError extends RuntimeException {
     public final String message;
+
+    public CompileError(String message) {
+        super(message, null, false, false);
+        this.message = message;
+    }
 }
@@ -0,0 +1,71 @@
+package func.ir;
+
+import lombok.AllArgsConstructor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * One of the builtin arithmetic functions applied to two operands.
+ */
+@AllArgsConstructor
+public class Arithmetic extends Instruction {
+
+    public enum Operator {
+        PLUS, MINUS, TIMES, DIVIDE;
+
+        /**
+         * The operator for a builtin function name, or null.
+         */
+        public static Operator of(String builtin) {
+            switch (builtin) {
+                case "plus":
+                    return PLUS;
+                case "minus":
+                    return MINUS;
+                case "times":
+                    return TIMES;
+                case "divide":
+                    return DIVIDE;
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return this.name().toLowerCase();
+        }
+    }
+
+    public Operator operator;
+    public Variable target;
+    public Operand left;
+    public Operand right;
+
+    @Override
+    public Variable def() {
+        return this.target;
+    }
+
+    @Override
+    public void setDef(Variable variable) {
+        this.target = variable;
+    }
+
+    @Override
+    public List<Operand> uses() {
+        return Arrays.asList(this.left, this.right);
+    }
+
+    @Override
+    public void replaceUses(UnaryOperator<Operand> replace) {
+        this.left = replace.apply(this.left);
+        this.right = replace.apply(this.right);
+    }
+
+    @Override
+    public String toString() {
+        return this.target + " = " + this.operator + " " + this.left + ", " + this.right;
+    }
+}
@@ -0,0 +1,41 @@
+package func.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A straight run of instructions with a single entry at
+ * the top and a {@link Terminator} at the bottom. Phis,
+ * when there are any, come before everything else.
+ */
+public class BasicBlock {
+    public final int id;
+    public final List<Phi> phis;
+    public final List<Instruction> instructions;
+    public final List<BasicBlock> predecessors;
+    public Terminator terminator;
+
+    BasicBlock(int id) {
+        this.id = id;
+        this.phis = new ArrayList<>();
+        this.instructions = new ArrayList<>();
+        this.predecessors = new ArrayList<>();
+    }
+
+    public List<BasicBlock> successors() {
+        return this.terminator.successors();
+    }
+
+    public String label() {
+        return "b" + this.id;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(this.label()).append(":\n");
+        this.phis.forEach(phi -> builder.append("    ").append(phi).append("\n"));
+        this.instructions.forEach(instruction -> builder.append("    ").append(instruction).append("\n"));
+        builder.append("    ").append(this.terminator).append("\n");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,49 @@
+package func.ir;
+
+import func.syntax.BinaryOp;
+import lombok.AllArgsConstructor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Compares two operands, going to one block if
+ * the comparison holds and another if it doesn't.
+ */
+@AllArgsConstructor
+public class Branch extends Terminator {
+    public BinaryOp operator;
+    public Operand left;
+    public Operand right;
+    public BasicBlock ifTrue;
+    public BasicBlock ifFalse;
+
+    @Override
+    public List<BasicBlock> successors() {
+        return Arrays.asList(this.ifTrue, this.ifFalse);
+    }
+
+    @Override
+    public void replaceSuccessor(BasicBlock from, BasicBlock to) {
+        if (this.ifTrue == from) this.ifTrue = to;
+        if (this.ifFalse == from) this.ifFalse = to;
+    }
+
+    @Override
+    public List<Operand> uses() {
+        return Arrays.asList(this.left, this.right);
+    }
+
+    @Override
+    public void replaceUses(UnaryOperator<Operand> replace) {
+        this.left = replace.apply(this.left);
+        this.right = replace.apply(this.right);
+    }
+
+    @Override
+    public String toString() {
+        return "branch " + this.operator + " " + this.left + ", " + this.right +
+            " ? " + this.ifTrue.label() + " : " + this.ifFalse.label();
+    }
+}
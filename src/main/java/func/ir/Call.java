@@ -0,0 +1,43 @@
+package func.ir;
+
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Calls a method of the program, assigning its return value.
+ */
+@AllArgsConstructor
+public class Call extends Instruction {
+    public Variable target;
+    public String method;
+    public List<Operand> arguments;
+
+    @Override
+    public Variable def() {
+        return this.target;
+    }
+
+    @Override
+    public void setDef(Variable variable) {
+        this.target = variable;
+    }
+
+    @Override
+    public List<Operand> uses() {
+        return this.arguments;
+    }
+
+    @Override
+    public void replaceUses(UnaryOperator<Operand> replace) {
+        this.arguments.replaceAll(replace);
+    }
+
+    @Override
+    public String toString() {
+        return this.target + " = call " + this.method + "(" +
+            this.arguments.stream().map(Object::toString).collect(Collectors.joining(", ")) + ")";
+    }
+}
@@ -0,0 +1,15 @@
+package func.ir;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+
+@AllArgsConstructor
+@EqualsAndHashCode
+public class Constant implements Operand {
+    public final int value;
+
+    @Override
+    public String toString() {
+        return Integer.toString(this.value);
+    }
+}
@@ -0,0 +1,113 @@
+package func.ir;
+
+import java.util.*;
+
+/**
+ * The dominator tree and dominance frontiers of a {@link Function},
+ * computed with the iterative algorithm of Cooper, Harvey and Kennedy
+ * ("A Simple, Fast Dominance Algorithm"). Blocks are numbered in
+ * reverse postorder, so a block's immediate dominator always has a
+ * smaller number and intersecting two paths up the tree only has to
+ * walk whichever is further down.
+ * <p>
+ * The predecessors of the function's blocks must be up to date.
+ */
+public class DominatorTree {
+    private final List<BasicBlock> order;
+    private final Map<BasicBlock, Integer> numbers;
+    private final int[] idoms;
+    private final Map<BasicBlock, List<BasicBlock>> children;
+    private final Map<BasicBlock, Set<BasicBlock>> frontiers;
+
+    public DominatorTree(Function function) {
+        this.order = function.reversePostorder();
+        this.numbers = new HashMap<>();
+        for (int i = 0; i < this.order.size(); i++) this.numbers.put(this.order.get(i), i);
+
+        this.idoms = new int[this.order.size()];
+        Arrays.fill(this.idoms, -1);
+        this.idoms[0] = 0;
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = 1; b < this.order.size(); b++) {
+                int idom = -1;
+                for (BasicBlock predecessor : this.order.get(b).predecessors) {
+                    Integer p = this.numbers.get(predecessor);
+                    if (p == null || this.idoms[p] == -1) continue;
+                    idom = idom == -1 ? p : this.intersect(p, idom);
+                }
+                if (this.idoms[b] != idom) {
+                    this.idoms[b] = idom;
+                    changed = true;
+                }
+            }
+        }
+
+        this.children = new HashMap<>();
+        this.order.forEach(block -> this.children.put(block, new ArrayList<>()));
+        for (int b = 1; b < this.order.size(); b++) {
+            this.children.get(this.order.get(this.idoms[b])).add(this.order.get(b));
+        }
+
+        this.frontiers = new HashMap<>();
+        this.order.forEach(block -> this.frontiers.put(block, new LinkedHashSet<>()));
+        for (int b = 0; b < this.order.size(); b++) {
+            BasicBlock block = this.order.get(b);
+            if (block.predecessors.size() < 2) continue;
+            for (BasicBlock predecessor : block.predecessors) {
+                Integer runner = this.numbers.get(predecessor);
+                while (runner != null && runner != this.idoms[b]) {
+                    this.frontiers.get(this.order.get(runner)).add(block);
+                    runner = runner == 0 ? null : this.idoms[runner];
+                }
+            }
+        }
+    }
+
+    private int intersect(int a, int b) {
+        while (a != b) {
+            while (a > b) a = this.idoms[a];
+            while (b > a) b = this.idoms[b];
+        }
+        return a;
+    }
+
+    /**
+     * The blocks in reverse postorder, entry first.
+     */
+    public List<BasicBlock> order() {
+        return this.order;
+    }
+
+    /**
+     * The immediate dominator of a block, or null for the entry.
+     */
+    public BasicBlock immediateDominator(BasicBlock block) {
+        int b = this.numbers.get(block);
+        return b == 0 ? null : this.order.get(this.idoms[b]);
+    }
+
+    public boolean dominates(BasicBlock a, BasicBlock b) {
+        int dominator = this.numbers.get(a);
+        int runner = this.numbers.get(b);
+        while (runner > dominator) runner = this.idoms[runner];
+        return runner == dominator;
+    }
+
+    /**
+     * The blocks immediately dominated by a block.
+     */
+    public List<BasicBlock> children(BasicBlock block) {
+        return this.children.get(block);
+    }
+
+    /**
+     * The blocks where a block's dominance ends: each is not
+     * strictly dominated by it, but has a predecessor that is.
+     */
+    public Set<BasicBlock> frontier(BasicBlock block) {
+        return this.frontiers.get(block);
+    }
+}
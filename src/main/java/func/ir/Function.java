@@ -0,0 +1,111 @@
+package func.ir;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The control flow graph of a single method. The first
+ * block is the entry; the parameters are defined on entry
+ * and every other variable starts at zero.
+ */
+public class Function {
+    public final String name;
+    public final List<Variable> parameters;
+    public final List<Variable> variables;
+    public final List<BasicBlock> blocks;
+    private int blockCount;
+    private int temporaryCount;
+
+    public Function(String name, List<Variable> parameters, List<Variable> variables) {
+        this.name = name;
+        this.parameters = parameters;
+        this.variables = variables;
+        this.blocks = new ArrayList<>();
+    }
+
+    public BasicBlock entry() {
+        return this.blocks.get(0);
+    }
+
+    public BasicBlock newBlock() {
+        BasicBlock block = new BasicBlock(this.blockCount++);
+        this.blocks.add(block);
+        return block;
+    }
+
+    public Variable newTemporary() {
+        return Variable.temporary(this.temporaryCount++);
+    }
+
+    /**
+     * The blocks reachable from the entry, each after all of
+     * its predecessors except those reached by a back edge.
+     */
+    public List<BasicBlock> reversePostorder() {
+        List<BasicBlock> postorder = new ArrayList<>();
+        Set<BasicBlock> visited = new HashSet<>();
+        Deque<Iterator<BasicBlock>> stack = new ArrayDeque<>();
+        Deque<BasicBlock> path = new ArrayDeque<>();
+
+        visited.add(this.entry());
+        path.push(this.entry());
+        stack.push(this.entry().successors().iterator());
+        while (!stack.isEmpty()) {
+            if (stack.peek().hasNext()) {
+                BasicBlock next = stack.peek().next();
+                if (visited.add(next)) {
+                    path.push(next);
+                    stack.push(next.successors().iterator());
+                }
+            } else {
+                stack.pop();
+                postorder.add(path.pop());
+            }
+        }
+
+        Collections.reverse(postorder);
+        return postorder;
+    }
+
+    /**
+     * Drops unreachable blocks and recomputes every block's predecessors.
+     */
+    public void update() {
+        List<BasicBlock> reachable = this.reversePostorder();
+        this.blocks.retainAll(new HashSet<>(reachable));
+        this.blocks.forEach(block -> block.predecessors.clear());
+        for (BasicBlock block : this.blocks) {
+            for (BasicBlock successor : block.successors()) {
+                if (!successor.predecessors.contains(block)) successor.predecessors.add(block);
+            }
+        }
+    }
+
+    /**
+     * Puts a new block on the edge between two blocks, so that code
+     * can run on that edge alone. Phis in the target are updated to
+     * arrive from the new block.
+     */
+    public BasicBlock splitEdge(BasicBlock from, BasicBlock to) {
+        BasicBlock middle = this.newBlock();
+        middle.terminator = new Jump(to);
+        from.terminator.replaceSuccessor(to, middle);
+        middle.predecessors.add(from);
+        to.predecessors.replaceAll(block -> block == from ? middle : block);
+        for (Phi phi : to.phis) {
+            Map<BasicBlock, Operand> incoming = new LinkedHashMap<>();
+            phi.incoming.forEach((block, operand) -> incoming.put(block == from ? middle : block, operand));
+            phi.incoming.clear();
+            phi.incoming.putAll(incoming);
+        }
+        return middle;
+    }
+
+    @Override
+    public String toString() {
+        String parameters = this.parameters.stream().map(Object::toString).collect(Collectors.joining(", "));
+        StringBuilder builder = new StringBuilder("function ").append(this.name).append("(").append(parameters).append(")\n");
+        this.reversePostorder().forEach(builder::append);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package func.ir;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * A single operation in a {@link BasicBlock}. Instructions read
+ * operands and assign at most one variable, which is all that
+ * SSA construction and liveness need to know about them.
+ */
+public abstract class Instruction {
+
+    /**
+     * The variable this instruction assigns, or null.
+     */
+    public Variable def() {
+        return null;
+    }
+
+    public void setDef(Variable variable) {
+        throw new UnsupportedOperationException(this + " does not assign a variable");
+    }
+
+    /**
+     * The operands this instruction reads, in order.
+     */
+    public abstract List<Operand> uses();
+
+    /**
+     * Replaces every operand this instruction reads.
+     */
+    public abstract void replaceUses(UnaryOperator<Operand> replace);
+}
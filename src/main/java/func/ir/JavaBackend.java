@@ -0,0 +1,151 @@
+package func.ir;
+
+import com.github.jknack.handlebars.Handlebars;
+import com.github.jknack.handlebars.Template;
+import com.github.jknack.handlebars.io.ClassPathTemplateLoader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Transpiles functions out of SSA form to Java.
+ * <p>
+ * Java has no goto, so a function with more than one block becomes
+ * a loop around a switch on the block to run next. Straight line
+ * functions are written out as they are.
+ * <p>
+ * Func identifiers are valid Java identifiers, so names are prefixed
+ * to keep them apart from each other and from Java keywords: methods
+ * become f_name, variables v_name, versions with a home of their own
+ * s1_name and temporaries t1.
+ */
+public class JavaBackend {
+    private final Handlebars handlebars = new Handlebars(new ClassPathTemplateLoader("/java", ".java"));
+    private final String name;
+
+    public JavaBackend(String name) {
+        this.name = name;
+    }
+
+    public String compile(List<Function> functions) {
+        Map<String, String> vars = new HashMap<>();
+        vars.put("fileName", this.name);
+        vars.put("methods", functions.stream().map(this::function).collect(Collectors.joining("\n\n")));
+        vars.put("main", "public static void main(String[] args) {\n        f_main();\n    }");
+
+        try {
+            Template programTemplate = this.handlebars.compile("program");
+            return programTemplate.apply(vars);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String name(Operand operand) {
+        if (operand instanceof Constant) return Integer.toString(((Constant) operand).value);
+        Variable variable = (Variable) operand;
+        if (variable.temporary) return variable.name;
+        if (variable.version != Variable.UNVERSIONED) return "s" + variable.version + "_" + variable.name;
+        return "v_" + variable.name;
+    }
+
+    private String function(Function function) {
+        String parameters = function.parameters.stream().map(p -> "int " + name(p)).collect(Collectors.joining(", "));
+        StringBuilder builder = new StringBuilder();
+        builder.append("    private static int f_").append(function.name).append("(").append(parameters).append(") {\n");
+
+        Set<Variable> locals = new LinkedHashSet<>(function.variables);
+        for (BasicBlock block : function.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction.def() != null) locals.add(instruction.def());
+            }
+        }
+        locals.removeAll(function.parameters);
+        for (Variable local : locals) builder.append("        int ").append(name(local)).append(" = 0;\n");
+
+        List<BasicBlock> order = function.reversePostorder();
+        if (order.size() == 1) {
+            this.block(builder, order.get(0), "        ");
+        } else {
+            builder.append("        int block = ").append(order.get(0).id).append(";\n");
+            builder.append("        while (true) {\n");
+            builder.append("            switch (block) {\n");
+            for (BasicBlock block : order) {
+                builder.append("                case ").append(block.id).append(":\n");
+                this.block(builder, block, "                    ");
+            }
+            builder.append("            }\n");
+            builder.append("        }\n");
+        }
+        builder.append("    }");
+        return builder.toString();
+    }
+
+    private void block(StringBuilder builder, BasicBlock block, String indent) {
+        for (Instruction instruction : block.instructions) {
+            builder.append(indent).append(instruction(instruction)).append(";\n");
+        }
+
+        Terminator terminator = block.terminator;
+        if (terminator instanceof Jump) {
+            builder.append(indent).append("block = ").append(((Jump) terminator).target.id).append(";\n");
+            builder.append(indent).append("break;\n");
+        } else if (terminator instanceof Branch) {
+            Branch branch = (Branch) terminator;
+            builder.append(indent).append("block = ")
+                .append(name(branch.left)).append(" ").append(operator(branch)).append(" ").append(name(branch.right))
+                .append(" ? ").append(branch.ifTrue.id).append(" : ").append(branch.ifFalse.id).append(";\n");
+            builder.append(indent).append("break;\n");
+        } else if (terminator instanceof Return) {
+            Operand value = ((Return) terminator).value;
+            builder.append(indent).append("return ").append(value != null ? name(value) : "0").append(";\n");
+        }
+    }
+
+    private static String instruction(Instruction instruction) {
+        if (instruction instanceof Move) {
+            Move move = (Move) instruction;
+            return name(move.target) + " = " + name(move.source);
+        } else if (instruction instanceof Arithmetic) {
+            Arithmetic arithmetic = (Arithmetic) instruction;
+            return name(arithmetic.target) + " = " + name(arithmetic.left) + " " + operator(arithmetic.operator) + " " + name(arithmetic.right);
+        } else if (instruction instanceof Call) {
+            Call call = (Call) instruction;
+            return name(call.target) + " = f_" + call.method + "(" +
+                call.arguments.stream().map(JavaBackend::name).collect(Collectors.joining(", ")) + ")";
+        } else if (instruction instanceof ReadInt) {
+            return name(((ReadInt) instruction).target) + " = read()";
+        } else if (instruction instanceof WriteInt) {
+            return "write(" + name(((WriteInt) instruction).value) + ")";
+        }
+        throw new IllegalArgumentException("Unknown instruction " + instruction);
+    }
+
+    private static String operator(Arithmetic.Operator operator) {
+        switch (operator) {
+            case PLUS:
+                return "+";
+            case MINUS:
+                return "-";
+            case TIMES:
+                return "*";
+            default:
+                return "/";
+        }
+    }
+
+    private static String operator(Branch branch) {
+        switch (branch.operator) {
+            case Less:
+                return "<";
+            case LessEq:
+                return "<=";
+            case Eq:
+                return "==";
+            default:
+                return "!=";
+        }
+    }
+}
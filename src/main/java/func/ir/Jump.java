@@ -0,0 +1,36 @@
+package func.ir;
+
+import lombok.AllArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+@AllArgsConstructor
+public class Jump extends Terminator {
+    public BasicBlock target;
+
+    @Override
+    public List<BasicBlock> successors() {
+        return Collections.singletonList(this.target);
+    }
+
+    @Override
+    public void replaceSuccessor(BasicBlock from, BasicBlock to) {
+        if (this.target == from) this.target = to;
+    }
+
+    @Override
+    public List<Operand> uses() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void replaceUses(UnaryOperator<Operand> replace) {
+    }
+
+    @Override
+    public String toString() {
+        return "jump " + this.target.label();
+    }
+}
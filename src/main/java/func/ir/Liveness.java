@@ -0,0 +1,85 @@
+package func.ir;
+
+import java.util.*;
+
+/**
+ * Which variables are live on entry to and exit from each block:
+ * those that may still be read before they are next assigned.
+ * <p>
+ * A phi reads its operand at the end of the predecessor it comes
+ * from, so phi operands are live out of that predecessor only, and
+ * phi targets are assigned on entry to their block.
+ */
+public class Liveness {
+    private final Map<BasicBlock, Set<Variable>> in;
+    private final Map<BasicBlock, Set<Variable>> out;
+
+    public Liveness(Function function) {
+        this.in = new HashMap<>();
+        this.out = new HashMap<>();
+        function.blocks.forEach(block -> {
+            this.in.put(block, new HashSet<>());
+            this.out.put(block, new HashSet<>());
+        });
+
+        List<BasicBlock> order = function.reversePostorder();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = order.size() - 1; i >= 0; i--) {
+                BasicBlock block = order.get(i);
+
+                Set<Variable> out = new HashSet<>();
+                for (BasicBlock successor : block.successors()) {
+                    // live in excludes the successor's phi targets already
+                    out.addAll(this.in.get(successor));
+                    for (Phi phi : successor.phis) {
+                        Operand operand = phi.incoming.get(block);
+                        if (operand instanceof Variable) out.add((Variable) operand);
+                    }
+                }
+
+                Set<Variable> in = this.liveBefore(block, out, 0);
+                block.phis.forEach(phi -> in.remove(phi.target));
+
+                changed |= !out.equals(this.out.get(block)) || !in.equals(this.in.get(block));
+                this.out.put(block, out);
+                this.in.put(block, in);
+            }
+        }
+    }
+
+    /**
+     * The variables live just before the given instruction of a block,
+     * found by walking back from the end of the block. An index equal to
+     * the number of instructions means just before the terminator.
+     */
+    public Set<Variable> liveBefore(BasicBlock block, int index) {
+        return this.liveBefore(block, this.out.get(block), index);
+    }
+
+    private Set<Variable> liveBefore(BasicBlock block, Set<Variable> out, int index) {
+        Set<Variable> live = new HashSet<>(out);
+        addUses(live, block.terminator);
+        for (int i = block.instructions.size() - 1; i >= index; i--) {
+            Instruction instruction = block.instructions.get(i);
+            if (instruction.def() != null) live.remove(instruction.def());
+            addUses(live, instruction);
+        }
+        return live;
+    }
+
+    private static void addUses(Set<Variable> live, Instruction instruction) {
+        for (Operand operand : instruction.uses()) {
+            if (operand instanceof Variable) live.add((Variable) operand);
+        }
+    }
+
+    public Set<Variable> in(BasicBlock block) {
+        return this.in.get(block);
+    }
+
+    public Set<Variable> out(BasicBlock block) {
+        return this.out.get(block);
+    }
+}
@@ -0,0 +1,224 @@
+package func.ir;
+
+import func.syntax.*;
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Lowers the methods of a checked AST into control flow graphs.
+ * <p>
+ * Nested expressions are flattened into temporaries, each if and
+ * while becomes a diamond or a loop of blocks, and the method ends
+ * in a single return. The result is not in SSA form yet; variables
+ * are assigned as often as the source assigns them.
+ */
+public class Lowering implements ASTVisitor<Operand> {
+
+    private Function function;
+    private BasicBlock block;
+
+    /**
+     * Where the next call or builtin should put its result. Assignments
+     * set it so that their expression is computed straight into the
+     * variable, rather than into a temporary that is then copied.
+     */
+    private Variable target;
+
+    public static List<Function> lower(Program program) {
+        Lowering lowering = new Lowering();
+        return program.methods.methods.stream().map(lowering::lower).collect(Collectors.toList());
+    }
+
+    public Function lower(Method method) {
+        this.visit(method);
+        return this.function;
+    }
+
+    private static Variable variable(Identifier identifier) {
+        return Variable.named(identifier.name);
+    }
+
+    private void emit(Instruction instruction) {
+        this.block.instructions.add(instruction);
+    }
+
+    /**
+     * Ends the current block and carries on in another.
+     */
+    private void end(Terminator terminator, BasicBlock next) {
+        this.block.terminator = terminator;
+        this.block = next;
+    }
+
+    private Operand expression(Expression expression, Variable target) {
+        this.target = target;
+        Operand operand = expression.accept(this);
+        this.target = null;
+        return operand;
+    }
+
+    private Variable target() {
+        Variable target = this.target != null ? this.target : this.function.newTemporary();
+        this.target = null;
+        return target;
+    }
+
+    private void statements(Statements statements) {
+        if (statements != null) this.visit(statements);
+    }
+
+    /**
+     * Branches on a condition, leaving the current block.
+     */
+    private void branch(Condition condition, BasicBlock ifTrue, BasicBlock ifFalse) {
+        Operand left = this.expression(condition.exps.expressions.get(0), null);
+        Operand right = this.expression(condition.exps.expressions.get(1), null);
+        this.block.terminator = new Branch(condition.bop, left, right, ifTrue, ifFalse);
+    }
+
+    @Override
+    public Operand visit(Assign cmd) {
+        Variable variable = variable(cmd.id);
+        Operand value = this.expression(cmd.expression, variable);
+        if (!variable.equals(value)) this.emit(new Move(variable, value));
+        return null;
+    }
+
+    @Override
+    public Operand visit(If cmd) {
+        BasicBlock then = this.function.newBlock();
+        BasicBlock join = this.function.newBlock();
+        BasicBlock otherwise = cmd.otherwise != null ? this.function.newBlock() : join;
+
+        this.branch(cmd.cond, then, otherwise);
+
+        this.block = then;
+        this.statements(cmd.then);
+        this.end(new Jump(join), otherwise);
+
+        if (cmd.otherwise != null) {
+            this.statements(cmd.otherwise);
+            this.end(new Jump(join), join);
+        }
+        return null;
+    }
+
+    @Override
+    public Operand visit(While cmd) {
+        BasicBlock header = this.function.newBlock();
+        BasicBlock body = this.function.newBlock();
+        BasicBlock exit = this.function.newBlock();
+
+        this.end(new Jump(header), header);
+        this.branch(cmd.cond, body, exit);
+
+        this.block = body;
+        this.statements(cmd.statements);
+        this.end(new Jump(header), exit);
+        return null;
+    }
+
+    @Override
+    public Operand visit(Read cmd) {
+        this.emit(new ReadInt(variable(cmd.id)));
+        return null;
+    }
+
+    @Override
+    public Operand visit(Write cmd) {
+        this.emit(new WriteInt(this.expression(cmd.exp, null)));
+        return null;
+    }
+
+    @Override
+    public Operand visit(Expressions expressions) {
+        return null; // handled by function expression
+    }
+
+    @Override
+    public Operand visit(IntExpression intExpression) {
+        return new Constant(intExpression.integer);
+    }
+
+    /**
+     * Either reads a variable, applies a builtin or calls a method.
+     */
+    @Override
+    public Operand visit(FunctionExpression functionExpression) {
+        if (functionExpression.expressions == null) return variable(functionExpression.id);
+
+        Variable target = this.target();
+        List<Operand> arguments = new ArrayList<>();
+        for (Expression argument : functionExpression.expressions.expressions) {
+            arguments.add(this.expression(argument, null));
+        }
+
+        Arithmetic.Operator operator = Arithmetic.Operator.of(functionExpression.id.name);
+        if (operator != null) {
+            // we know from type checking that there are always 2 arguments
+            this.emit(new Arithmetic(operator, target, arguments.get(0), arguments.get(1)));
+        } else {
+            this.emit(new Call(target, functionExpression.id.name, arguments));
+        }
+        return target;
+    }
+
+    @Override
+    public Operand visit(Statements statements) {
+        for (Statement statement : statements.statements) statement.accept(this);
+        return null;
+    }
+
+    @Override
+    public Operand visit(Arguments arguments) {
+        return null;
+    }
+
+    @Override
+    public Operand visit(Condition condition) {
+        return null; // handled by branch
+    }
+
+    @Override
+    public Operand visit(Identifier identifier) {
+        return variable(identifier);
+    }
+
+    @Override
+    public Operand visit(Method method) {
+        List<Variable> parameters = new ArrayList<>();
+        if (method.args != null) method.args.identifiers.forEach(i -> parameters.add(variable(i)));
+        List<Variable> variables = new ArrayList<>();
+        if (method.vars != null) method.vars.identifiers.forEach(i -> variables.add(variable(i)));
+
+        this.function = new Function(method.id.name, parameters, variables);
+        this.block = this.function.newBlock();
+        this.statements(method.statements);
+        this.block.terminator = new Return(method.ret != null ? variable(method.ret) : null);
+        this.function.update();
+        return null;
+    }
+
+    @Override
+    public Operand visit(Methods methods) {
+        return null;
+    }
+
+    @Override
+    public Operand visit(Program program) {
+        return null;
+    }
+}
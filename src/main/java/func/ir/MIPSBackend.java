@@ -0,0 +1,328 @@
+package func.ir;
+
+import com.github.jknack.handlebars.Handlebars;
+import com.github.jknack.handlebars.Template;
+import com.github.jknack.handlebars.io.ClassPathTemplateLoader;
+import func.errors.CompileError;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Compiles functions out of SSA form to MIPS assembly, following
+ * the same conventions as {@link func.visitors.MIPSCompiler}:
+ * variables live in the callee saved registers, arguments are
+ * passed in $a0-$a3 and the result comes back in $v0.
+ * <p>
+ * Temporaries only live within a block, so they are given the
+ * $t registers by a linear scan of the block, and any still live
+ * at a call are saved around it. Constants are loaded into $t8
+ * and $t9 when an instruction needs them in a register.
+ */
+public class MIPSBackend {
+    private static final String[] CALLEE = {"$s0", "$s1", "$s2", "$s3", "$s4", "$s5", "$s6", "$s7"};
+    private static final String[] TEMP = {"$t0", "$t1", "$t2", "$t3", "$t4", "$t5", "$t6", "$t7"};
+    private static final String[] ARGUMENTS = {"$a0", "$a1", "$a2", "$a3"};
+    private static final String[] EVAL = {"$t8", "$t9"};
+
+    private static final int PRINT_INT = 1;
+    private static final int PRINT_STRING = 4;
+    private static final int READ_INT = 5;
+    private static final int EXIT = 10;
+
+    private final StringBuilder builder = new StringBuilder();
+
+    private Function function;
+    private Map<Variable, String> registers;
+    private int saved;
+    private Deque<String> free;
+
+    public static String compile(List<Function> functions) {
+        MIPSBackend backend = new MIPSBackend();
+        functions.forEach(backend::function);
+        Handlebars handlebars = new Handlebars(new ClassPathTemplateLoader("/asm", ".asm"));
+        try {
+            Template programTemplate = handlebars.compile("program");
+            return programTemplate.apply(backend.builder.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A peephole optimiser for the output, which may take it that the
+     * $t registers hold nothing across blocks or calls.
+     */
+    public static Peephole peephole() {
+        Set<String> temporaries = new HashSet<>(Arrays.asList(TEMP));
+        temporaries.addAll(Arrays.asList(EVAL));
+        return new Peephole(temporaries, temporaries, Peephole.rules());
+    }
+
+    private boolean isMain() {
+        return this.function.name.equals("main");
+    }
+
+    private String label(BasicBlock block) {
+        return this.function.name + "." + block.label();
+    }
+
+    private void emit(String format, Object... args) {
+        this.builder.append("\t").append(String.format(format, args)).append("\n");
+    }
+
+    private void push(String register) {
+        this.emit("addi $sp, $sp, -4");
+        this.emit("sw %s, 0($sp)", register);
+    }
+
+    private void pop(String register) {
+        this.emit("lw %s, 0($sp)", register);
+        this.emit("addi $sp, $sp, 4");
+    }
+
+    /**
+     * Gives each variable a callee saved register: the parameters
+     * first, then the declared variables, then any versions that
+     * needed a home of their own.
+     */
+    private void allocateVariables() {
+        Set<Variable> variables = new LinkedHashSet<>(this.function.parameters);
+        variables.addAll(this.function.variables);
+        for (BasicBlock block : this.function.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction.def() != null && !instruction.def().temporary) variables.add(instruction.def());
+            }
+        }
+
+        if (variables.size() > CALLEE.length)
+            throw new CompileError("Method " + this.function.name + " needs " + variables.size() +
+                " registers for its variables but only " + CALLEE.length + " are available");
+        if (this.function.parameters.size() > ARGUMENTS.length)
+            throw new CompileError("Method " + this.function.name + " takes more than " + ARGUMENTS.length + " arguments");
+
+        this.registers = new HashMap<>();
+        this.saved = 0;
+        for (Variable variable : variables) this.registers.put(variable, CALLEE[this.saved++]);
+    }
+
+    private void function(Function function) {
+        this.function = function;
+        this.allocateVariables();
+
+        this.builder.append(function.name).append(":\n");
+        if (!this.isMain()) {
+            this.emit("# function %s load", function.name);
+            this.push("$ra");
+            for (int i = 0; i < this.saved; i++) this.push(CALLEE[i]);
+            for (int i = 0; i < function.parameters.size(); i++) {
+                this.emit("move %s, %s", this.registers.get(function.parameters.get(i)), ARGUMENTS[i]);
+            }
+        }
+        this.emit("# function %s begin", function.name);
+
+        List<BasicBlock> order = function.reversePostorder();
+        for (int i = 0; i < order.size(); i++) {
+            BasicBlock next = i + 1 < order.size() ? order.get(i + 1) : null;
+            this.block(order.get(i), next);
+        }
+    }
+
+    /**
+     * The register holding an operand, loading constants into
+     * the given scratch register first.
+     */
+    private String operand(Operand operand, String scratch) {
+        if (operand instanceof Constant) {
+            this.emit("li %s, %d", scratch, ((Constant) operand).value);
+            return scratch;
+        }
+        return this.registers.get(operand);
+    }
+
+    /**
+     * Copies an operand into a register.
+     */
+    private void load(String register, Operand operand) {
+        if (operand instanceof Constant) {
+            this.emit("li %s, %d", register, ((Constant) operand).value);
+        } else if (!register.equals(this.registers.get(operand))) {
+            this.emit("move %s, %s", register, this.registers.get(operand));
+        }
+    }
+
+    private void block(BasicBlock block, BasicBlock next) {
+        this.builder.append(this.label(block)).append(":\n");
+
+        // the index of the last instruction reading each temporary, the terminator being last
+        Map<Variable, Integer> lastUse = new HashMap<>();
+        for (int i = 0; i <= block.instructions.size(); i++) {
+            Instruction instruction = i < block.instructions.size() ? block.instructions.get(i) : block.terminator;
+            for (Operand operand : instruction.uses()) {
+                if (operand instanceof Variable && ((Variable) operand).temporary) lastUse.put((Variable) operand, i);
+            }
+        }
+
+        this.free = new ArrayDeque<>(Arrays.asList(TEMP));
+        for (int i = 0; i < block.instructions.size(); i++) {
+            Instruction instruction = block.instructions.get(i);
+            // operands are read before the result is written, so a dying temporary's register can be reused
+            List<String> uses = new ArrayList<>();
+            for (Operand operand : instruction.uses()) {
+                if (operand instanceof Variable && ((Variable) operand).temporary && lastUse.get(operand) == i) {
+                    uses.add(this.registers.get(operand));
+                }
+            }
+            uses.forEach(register -> {
+                if (!this.free.contains(register)) this.free.push(register);
+            });
+
+            Variable def = instruction.def();
+            if (def != null && def.temporary) {
+                if (this.free.isEmpty())
+                    throw new CompileError("Expression in method " + this.function.name + " is nested too deeply");
+                this.registers.put(def, this.free.pop());
+            }
+
+            this.instruction(instruction);
+
+            if (def != null && def.temporary && !lastUse.containsKey(def)) this.free.push(this.registers.get(def));
+        }
+        this.terminator(block.terminator, next);
+    }
+
+    private void instruction(Instruction instruction) {
+        if (instruction instanceof Move) {
+            Move move = (Move) instruction;
+            this.load(this.registers.get(move.target), move.source);
+        } else if (instruction instanceof Arithmetic) {
+            Arithmetic arithmetic = (Arithmetic) instruction;
+            if (this.reduce(arithmetic)) return;
+            String left = this.operand(arithmetic.left, EVAL[0]);
+            String right = this.operand(arithmetic.right, EVAL[1]);
+            this.emit("%s %s, %s, %s", opcode(arithmetic.operator), this.registers.get(arithmetic.target), left, right);
+        } else if (instruction instanceof Call) {
+            this.call((Call) instruction);
+        } else if (instruction instanceof ReadInt) {
+            this.emit("la $a0, sinp");
+            this.emit("li $v0, %d", PRINT_STRING);
+            this.emit("syscall");
+            this.emit("li $v0, %d", READ_INT);
+            this.emit("syscall");
+            this.emit("move %s, $v0", this.registers.get(((ReadInt) instruction).target));
+        } else if (instruction instanceof WriteInt) {
+            this.load(ARGUMENTS[0], ((WriteInt) instruction).value);
+            this.emit("li $v0, %d", PRINT_INT);
+            this.emit("syscall");
+        }
+    }
+
+    /**
+     * Multiplies or divides by a constant without mult or div
+     * where {@link StrengthReduction} has a shorter sequence.
+     */
+    private boolean reduce(Arithmetic arithmetic) {
+        Operand constant, other;
+        if (arithmetic.right instanceof Constant && (arithmetic.operator == Arithmetic.Operator.TIMES || arithmetic.operator == Arithmetic.Operator.DIVIDE)) {
+            constant = arithmetic.right;
+            other = arithmetic.left;
+        } else if (arithmetic.left instanceof Constant && arithmetic.operator == Arithmetic.Operator.TIMES) {
+            constant = arithmetic.left;
+            other = arithmetic.right;
+        } else {
+            return false;
+        }
+
+        int c = ((Constant) constant).value;
+        String target = this.registers.get(arithmetic.target);
+        String x = other instanceof Constant ? EVAL[0] : this.registers.get(other);
+        List<String> code = arithmetic.operator == Arithmetic.Operator.TIMES
+            ? StrengthReduction.times(target, x, c, EVAL[1])
+            : StrengthReduction.divide(target, x, c, EVAL[1]);
+        if (code == null) return false;
+
+        this.operand(other, EVAL[0]);
+        code.forEach(line -> this.emit("%s", line));
+        return true;
+    }
+
+    private static String opcode(Arithmetic.Operator operator) {
+        switch (operator) {
+            case PLUS:
+                return "add";
+            case MINUS:
+                return "sub";
+            case TIMES:
+                return "mul";
+            default:
+                return "div";
+        }
+    }
+
+    /**
+     * Calls a method, saving the temporaries that are still live
+     * since the callee is free to overwrite them.
+     */
+    private void call(Call call) {
+        if (call.arguments.size() > ARGUMENTS.length)
+            throw new CompileError("Call to " + call.method + " has more than " + ARGUMENTS.length + " arguments");
+
+        List<String> saved = new ArrayList<>();
+        for (String register : TEMP) {
+            if (!this.free.contains(register) && !register.equals(this.registers.get(call.target))) saved.add(register);
+        }
+
+        this.emit("# function call: %s", call.method);
+        saved.forEach(this::push);
+        for (int i = 0; i < call.arguments.size(); i++) this.load(ARGUMENTS[i], call.arguments.get(i));
+        this.emit("jal %s", call.method);
+        for (int i = saved.size() - 1; i >= 0; i--) this.pop(saved.get(i));
+        this.emit("move %s, $v0", this.registers.get(call.target));
+    }
+
+    private void terminator(Terminator terminator, BasicBlock next) {
+        if (terminator instanceof Jump) {
+            BasicBlock target = ((Jump) terminator).target;
+            if (target != next) this.emit("j %s", this.label(target));
+        } else if (terminator instanceof Branch) {
+            Branch branch = (Branch) terminator;
+            String left = this.operand(branch.left, EVAL[0]);
+            String right = this.operand(branch.right, EVAL[1]);
+            if (branch.ifTrue == next) {
+                this.emit("%s %s, %s, %s", opcode(branch, false), left, right, this.label(branch.ifFalse));
+            } else {
+                this.emit("%s %s, %s, %s", opcode(branch, true), left, right, this.label(branch.ifTrue));
+                if (branch.ifFalse != next) this.emit("j %s", this.label(branch.ifFalse));
+            }
+        } else if (terminator instanceof Return) {
+            Operand value = ((Return) terminator).value;
+            if (value != null) this.load("$v0", value);
+            if (this.isMain()) {
+                this.emit("li $v0, %d", EXIT);
+                this.emit("syscall");
+            } else {
+                this.emit("# function %s unload", this.function.name);
+                for (int i = this.saved - 1; i >= 0; i--) this.pop(CALLEE[i]);
+                this.pop("$ra");
+                this.emit("jr $ra");
+            }
+        }
+    }
+
+    /**
+     * The branch instruction taken when the comparison holds, or when it doesn't.
+     */
+    private static String opcode(Branch branch, boolean holds) {
+        switch (branch.operator) {
+            case Less:
+                return holds ? "blt" : "bge";
+            case LessEq:
+                return holds ? "ble" : "bgt";
+            case Eq:
+                return holds ? "beq" : "bne";
+            default:
+                return holds ? "bne" : "beq";
+        }
+    }
+}
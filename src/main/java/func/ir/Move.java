@@ -0,0 +1,41 @@
+package func.ir;
+
+import lombok.AllArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Copies a variable or constant into a variable.
+ */
+@AllArgsConstructor
+public class Move extends Instruction {
+    public Variable target;
+    public Operand source;
+
+    @Override
+    public Variable def() {
+        return this.target;
+    }
+
+    @Override
+    public void setDef(Variable variable) {
+        this.target = variable;
+    }
+
+    @Override
+    public List<Operand> uses() {
+        return Collections.singletonList(this.source);
+    }
+
+    @Override
+    public void replaceUses(UnaryOperator<Operand> replace) {
+        this.source = replace.apply(this.source);
+    }
+
+    @Override
+    public String toString() {
+        return this.target + " = " + this.source;
+    }
+}
@@ -0,0 +1,8 @@
+package func.ir;
+
+/**
+ * Something an instruction reads: either a {@link Variable}
+ * or a {@link Constant}.
+ */
+public interface Operand {
+}
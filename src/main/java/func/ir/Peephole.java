@@ -0,0 +1,512 @@
+package func.ir;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * A peephole optimiser over the MIPS assembly both backends emit.
+ * <p>
+ * The assembly is split into lines, each a label, a comment, a directive
+ * or an instruction, and each rule rewrites them in turn until none of
+ * them finds anything more to remove. What the rules may assume about
+ * registers comes from the backend: which registers hold nothing across
+ * a label, and which hold nothing across a call. Otherwise only the $s
+ * registers are taken to keep their values over calls, and anything the
+ * optimiser can't read is taken to use every register.
+ */
+public class Peephole {
+
+    /**
+     * A rewrite of the lines of a program.
+     */
+    public interface Rule {
+
+        String name();
+
+        /**
+         * Rewrites the lines, giving how many instructions it removed.
+         */
+        int apply(Peephole peephole, List<Line> code);
+    }
+
+    /**
+     * The rules run by default, in order.
+     */
+    public static List<Rule> rules() {
+        return Arrays.asList(new CancelPushPop(), new CoalesceMoves(), new RemoveJumpToNext(), new RemoveRedundantLoads());
+    }
+
+    private static final int MAX_ROUNDS = 16;
+
+    private static final Set<String> DEST = new HashSet<>(Arrays.asList(
+        "move", "li", "la", "lw", "add", "addu", "addi", "addiu", "sub", "subu", "mul", "and", "andi", "or", "ori",
+        "xor", "xori", "nor", "slt", "slti", "sltu", "sll", "srl", "sra", "sllv", "srlv", "srav", "mfhi", "mflo",
+        "neg", "negu", "not", "abs", "rem"));
+    private static final Set<String> MULTIPLY = new HashSet<>(Arrays.asList("mult", "multu", "div", "divu"));
+    private static final Set<String> BRANCH = new HashSet<>(Arrays.asList(
+        "beq", "bne", "blt", "ble", "bgt", "bge", "bltu", "bleu", "bgtu", "bgeu", "beqz", "bnez", "bltz", "blez", "bgtz", "bgez"));
+    private static final Pattern REGISTER = Pattern.compile("\\$[a-z]+[0-9]*");
+    private static final Pattern ADDRESS = Pattern.compile("-?[0-9]*\\((\\$[a-z]+[0-9]*)\\)");
+
+    /**
+     * A line of assembly.
+     */
+    public static final class Line {
+
+        public enum Kind {LABEL, COMMENT, DIRECTIVE, INSTRUCTION}
+
+        public final Kind kind;
+        public final String text;
+
+        /**
+         * The label a label line defines, or the opcode of an instruction.
+         */
+        public final String name;
+        public final List<String> operands;
+
+        private Line(Kind kind, String text, String name, List<String> operands) {
+            this.kind = kind;
+            this.text = text;
+            this.name = name;
+            this.operands = operands;
+        }
+
+        public static Line parse(String text) {
+            String trimmed = text.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) return new Line(Kind.COMMENT, text, null, null);
+            if (trimmed.startsWith(".") || trimmed.contains("#") || trimmed.contains("\"")) return new Line(Kind.DIRECTIVE, text, null, null);
+            if (trimmed.endsWith(":") && !trimmed.contains(" ")) return new Line(Kind.LABEL, text, trimmed.substring(0, trimmed.length() - 1), null);
+            if (trimmed.contains(":")) return new Line(Kind.DIRECTIVE, text, null, null);
+
+            String[] parts = trimmed.split("\\s+", 2);
+            List<String> operands = new ArrayList<>();
+            if (parts.length > 1) for (String operand : parts[1].split(",")) operands.add(operand.trim());
+            return new Line(Kind.INSTRUCTION, text, parts[0], Collections.unmodifiableList(operands));
+        }
+
+        public static Line of(String opcode, List<String> operands) {
+            String text = "\t" + opcode + (operands.isEmpty() ? "" : " " + String.join(", ", operands));
+            return new Line(Kind.INSTRUCTION, text, opcode, Collections.unmodifiableList(new ArrayList<>(operands)));
+        }
+
+        public static Line of(String opcode, String... operands) {
+            return of(opcode, Arrays.asList(operands));
+        }
+
+        public boolean is(String opcode) {
+            return this.kind == Kind.INSTRUCTION && this.name.equals(opcode);
+        }
+
+        /**
+         * Whether the first operand is the only register written,
+         * besides hi and lo.
+         */
+        public boolean writesFirst() {
+            return this.kind == Kind.INSTRUCTION && !this.operands.isEmpty()
+                && (DEST.contains(this.name) || MULTIPLY.contains(this.name) && this.operands.size() == 3);
+        }
+
+        /**
+         * Whether the instruction may not go on to the next.
+         */
+        public boolean isControl() {
+            return BRANCH.contains(this.name) || this.name.equals("j") || this.name.equals("jal")
+                || this.name.equals("jr") || this.name.equals("syscall");
+        }
+
+        /**
+         * The label a jump or branch goes to, or null.
+         */
+        public String target() {
+            if (this.kind != Kind.INSTRUCTION || this.operands.isEmpty()) return null;
+            return BRANCH.contains(this.name) || this.name.equals("j") ? this.operands.get(this.operands.size() - 1) : null;
+        }
+
+        /**
+         * The registers an instruction reads, or null if that isn't known.
+         */
+        public Set<String> uses() {
+            Set<String> uses = new HashSet<>();
+            if (this.writesFirst()) {
+                if (this.name.equals("mfhi")) uses.add("$hi");
+                if (this.name.equals("mflo")) uses.add("$lo");
+                registers(this.operands.subList(1, this.operands.size()), uses);
+            } else if (MULTIPLY.contains(this.name) || this.name.equals("sw") || this.name.equals("jr")) {
+                registers(this.operands, uses);
+            } else if (BRANCH.contains(this.name)) {
+                registers(this.operands.subList(0, this.operands.size() - 1), uses);
+            } else if (this.name.equals("jal")) {
+                uses.addAll(Arrays.asList("$a0", "$a1", "$a2", "$a3"));
+            } else if (this.name.equals("syscall")) {
+                uses.addAll(Arrays.asList("$v0", "$a0", "$a1"));
+            } else if (!this.name.equals("j")) {
+                return null;
+            }
+            return uses;
+        }
+
+        /**
+         * The registers an instruction writes.
+         */
+        public Set<String> defs() {
+            Set<String> defs = new HashSet<>();
+            if (this.writesFirst()) defs.add(this.operands.get(0));
+            if (MULTIPLY.contains(this.name)) defs.addAll(Arrays.asList("$hi", "$lo"));
+            if (this.name.equals("jal")) defs.addAll(Arrays.asList("$v0", "$ra"));
+            if (this.name.equals("syscall")) defs.add("$v0");
+            return defs;
+        }
+
+        private static void registers(List<String> operands, Set<String> registers) {
+            for (String operand : operands) {
+                Matcher address = ADDRESS.matcher(operand);
+                if (address.matches()) registers.add(address.group(1));
+                else if (REGISTER.matcher(operand).matches()) registers.add(operand);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return this.text;
+        }
+    }
+
+    private final Set<String> local;
+    private final Set<String> clobbered;
+    private final List<Rule> rules;
+    private final Map<String, Integer> removed = new LinkedHashMap<>();
+
+    /**
+     * @param local     the registers that hold nothing across a label, jump or return
+     * @param clobbered the registers that hold nothing across a call
+     * @param rules     the rules to run
+     */
+    public Peephole(Set<String> local, Set<String> clobbered, List<Rule> rules) {
+        this.local = local;
+        this.clobbered = clobbered;
+        this.rules = rules;
+        rules.forEach(rule -> this.removed.put(rule.name(), 0));
+    }
+
+    /**
+     * Whether a register can be given a value of the optimiser's choosing.
+     */
+    static boolean isGeneral(String register) {
+        return register.matches("\\$[tsav][0-9]");
+    }
+
+    /**
+     * The index of the next line after i that isn't a comment.
+     */
+    static int next(List<Line> code, int i) {
+        do i++; while (i < code.size() && code.get(i).kind == Line.Kind.COMMENT);
+        return i;
+    }
+
+    /**
+     * Whether the value in a register is never read from line i on.
+     */
+    public boolean isDead(List<Line> code, int i, String register) {
+        boolean exiting = false;
+        for (; i < code.size(); i++) {
+            Line line = code.get(i);
+            if (line.kind == Line.Kind.COMMENT) continue;
+            if (line.kind == Line.Kind.LABEL) return this.local.contains(register);
+            if (line.kind == Line.Kind.DIRECTIVE) return false;
+
+            Set<String> uses = line.uses();
+            if (uses == null || uses.contains(register)) return false;
+            switch (line.name) {
+                case "syscall":
+                    if (exiting) return true;
+                    break;
+                case "jal":
+                    if (this.clobbered.contains(register) || line.defs().contains(register)) return true;
+                    if (!register.matches("\\$s[0-9]")) return false;
+                    exiting = false;
+                    continue;
+                case "j":
+                case "jr":
+                    return this.local.contains(register);
+                default:
+                    if (BRANCH.contains(line.name) && !this.local.contains(register)) return false;
+            }
+            if (line.defs().contains(register)) return true;
+            if (line.defs().contains("$v0")) exiting = line.is("li") && line.operands.get(1).equals("10");
+        }
+        return false;
+    }
+
+    /**
+     * Optimises a program, adding what each rule removes to its count.
+     */
+    public String optimise(String assembly) {
+        List<Line> code = Arrays.stream(assembly.split("\n", -1)).map(Line::parse).collect(Collectors.toList());
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            int removed = 0;
+            for (Rule rule : this.rules) {
+                int count = rule.apply(this, code);
+                this.removed.merge(rule.name(), count, Integer::sum);
+                removed += count;
+            }
+            if (removed == 0) break;
+        }
+        return code.stream().map(line -> line.text).collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * How many instructions each rule has removed.
+     */
+    public Map<String, Integer> removed() {
+        return Collections.unmodifiableMap(this.removed);
+    }
+
+    public void report(PrintStream out) {
+        out.printf("%-24s %12s%n", "peephole rule", "removed");
+        this.removed.forEach((name, count) -> out.printf("%-24s %12d%n", name, count));
+    }
+
+    /**
+     * Drops a push that is popped again before the stack or the pushed
+     * register are touched, moving the register if it is popped elsewhere.
+     */
+    public static class CancelPushPop implements Rule {
+
+        @Override
+        public String name() {
+            return "push/pop cancellation";
+        }
+
+        /**
+         * The register pushed by the lines from i, or null.
+         */
+        private static String pushed(List<Line> code, int i) {
+            int store = next(code, i);
+            if (!code.get(i).text.trim().equals("addi $sp, $sp, -4") || store >= code.size()) return null;
+            Line line = code.get(store);
+            return line.is("sw") && line.operands.size() == 2 && line.operands.get(1).equals("0($sp)") ? line.operands.get(0) : null;
+        }
+
+        /**
+         * The register popped by the lines from i, or null.
+         */
+        private static String popped(List<Line> code, int i) {
+            int release = next(code, i);
+            Line line = code.get(i);
+            if (!line.is("lw") || line.operands.size() != 2 || !line.operands.get(1).equals("0($sp)") || release >= code.size()) return null;
+            return code.get(release).text.trim().equals("addi $sp, $sp, 4") ? line.operands.get(0) : null;
+        }
+
+        @Override
+        public int apply(Peephole peephole, List<Line> code) {
+            int removed = 0;
+            for (int i = 0; i < code.size(); i++) {
+                String pushed = pushed(code, i);
+                if (pushed == null) continue;
+                int store = next(code, i);
+                for (int j = next(code, store); j < code.size(); j = next(code, j)) {
+                    String popped = popped(code, j);
+                    if (popped != null) {
+                        code.remove(next(code, j));
+                        if (popped.equals(pushed)) code.remove(j);
+                        else code.set(j, Line.of("move", popped, pushed));
+                        code.remove(store);
+                        code.remove(i);
+                        removed += popped.equals(pushed) ? 4 : 3;
+                        i--;
+                        break;
+                    }
+                    Line line = code.get(j);
+                    if (line.kind != Line.Kind.INSTRUCTION || line.isControl() || line.uses() == null) break;
+                    if (line.uses().contains("$sp") || line.defs().contains("$sp") || line.defs().contains(pushed)) break;
+                }
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Drops moves of a register to itself, computes straight into the
+     * register a result is moved to next, and reads the source of a move
+     * instead of its destination until either changes.
+     */
+    public static class CoalesceMoves implements Rule {
+
+        @Override
+        public String name() {
+            return "move coalescing";
+        }
+
+        @Override
+        public int apply(Peephole peephole, List<Line> code) {
+            int removed = 0;
+            for (int i = 0; i < code.size(); i++) {
+                Line line = code.get(i);
+                if (!line.writesFirst()) continue;
+                String dest = line.operands.get(0);
+                if (line.is("move") && dest.equals(line.operands.get(1))) {
+                    code.remove(i--);
+                    removed++;
+                } else if (isGeneral(dest) && this.retarget(peephole, code, i)) {
+                    removed++;
+                } else if (line.is("move") && isGeneral(dest) && this.propagate(peephole, code, i)) {
+                    code.remove(i--);
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        /**
+         * Writes the result of line i to where the next line moves it.
+         */
+        private boolean retarget(Peephole peephole, List<Line> code, int i) {
+            Line line = code.get(i);
+            String dest = line.operands.get(0);
+            int j = next(code, i);
+            if (j >= code.size()) return false;
+            Line move = code.get(j);
+            if (!move.is("move") || !move.operands.get(1).equals(dest) || move.operands.get(0).equals(dest)) return false;
+            if (!isGeneral(move.operands.get(0)) || !peephole.isDead(code, j + 1, dest)) return false;
+
+            List<String> operands = new ArrayList<>(line.operands);
+            operands.set(0, move.operands.get(0));
+            code.set(i, Line.of(line.name, operands));
+            code.remove(j);
+            return true;
+        }
+
+        /**
+         * Rewrites the reads of the move at line i to its source,
+         * giving whether the move is then no longer needed.
+         */
+        private boolean propagate(Peephole peephole, List<Line> code, int i) {
+            String dest = code.get(i).operands.get(0);
+            String source = code.get(i).operands.get(1);
+            Map<Integer, Line> originals = new HashMap<>();
+            for (int j = next(code, i); j < code.size(); j = next(code, j)) {
+                Line line = code.get(j);
+                if (line.kind != Line.Kind.INSTRUCTION || line.uses() == null) break;
+                if (line.uses().contains(dest)) {
+                    if (!line.writesFirst() && !BRANCH.contains(line.name) && !line.is("sw") && !MULTIPLY.contains(line.name)) break;
+                    List<String> operands = new ArrayList<>(line.operands);
+                    int first = line.writesFirst() ? 1 : 0;
+                    int last = BRANCH.contains(line.name) ? operands.size() - 1 : operands.size();
+                    for (int k = first; k < last; k++) if (operands.get(k).equals(dest)) operands.set(k, source);
+                    Line rewritten = Line.of(line.name, operands);
+                    if (rewritten.uses().contains(dest)) break;
+                    originals.put(j, line);
+                    code.set(j, rewritten);
+                }
+                if (line.isControl() || line.defs().contains(dest) || line.defs().contains(source)) break;
+            }
+            if (peephole.isDead(code, i + 1, dest)) return true;
+            originals.forEach(code::set);
+            return false;
+        }
+    }
+
+    /**
+     * Drops jumps and branches to the label that follows them.
+     */
+    public static class RemoveJumpToNext implements Rule {
+
+        @Override
+        public String name() {
+            return "jump to next label";
+        }
+
+        @Override
+        public int apply(Peephole peephole, List<Line> code) {
+            int removed = 0;
+            for (int i = 0; i < code.size(); i++) {
+                String target = code.get(i).target();
+                if (target == null) continue;
+                for (int j = next(code, i); j < code.size() && code.get(j).kind == Line.Kind.LABEL; j = next(code, j)) {
+                    if (code.get(j).name.equals(target)) {
+                        code.remove(i--);
+                        removed++;
+                        break;
+                    }
+                }
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Drops loads of a value a register already holds: a constant,
+     * address or register it was last given within a block, or the
+     * word it was just stored to.
+     */
+    public static class RemoveRedundantLoads implements Rule {
+
+        @Override
+        public String name() {
+            return "redundant loads";
+        }
+
+        /**
+         * Forgets what a register holds, and which registers held it.
+         */
+        private static void kill(Map<String, String> known, String register) {
+            known.remove(register);
+            known.values().removeIf(register::equals);
+        }
+
+        @Override
+        public int apply(Peephole peephole, List<Line> code) {
+            int removed = 0;
+            // a register's constant as =value, address as &label, or a register it is a copy of
+            Map<String, String> known = new HashMap<>();
+            Line previous = null;
+            for (int i = 0; i < code.size(); i++) {
+                Line line = code.get(i);
+                if (line.kind == Line.Kind.COMMENT) continue;
+                if (line.kind != Line.Kind.INSTRUCTION || line.uses() == null || line.is("jal") || line.is("j") || line.is("jr")) {
+                    known.clear();
+                    previous = null;
+                    continue;
+                }
+
+                String value = null;
+                boolean redundant = false;
+                if (line.is("li") || line.is("la")) {
+                    value = (line.is("li") ? "=" : "&") + line.operands.get(1);
+                    redundant = value.equals(known.get(line.operands.get(0)));
+                } else if (line.is("move")) {
+                    String dest = line.operands.get(0);
+                    String source = line.operands.get(1);
+                    String held = known.get(source);
+                    value = held != null && !held.startsWith("$") ? held : source;
+                    redundant = value.equals(known.get(dest)) || dest.equals(held);
+                } else if (line.is("lw") && previous != null && previous.is("sw")) {
+                    redundant = previous.operands.equals(line.operands);
+                }
+                if (redundant) {
+                    code.remove(i--);
+                    removed++;
+                    continue;
+                }
+
+                for (String def : line.defs()) kill(known, def);
+                if (value != null && isGeneral(line.operands.get(0)) && !value.equals(line.operands.get(0))) {
+                    known.put(line.operands.get(0), value);
+                }
+                previous = line;
+            }
+            return removed;
+        }
+    }
+}
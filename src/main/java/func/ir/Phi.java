@@ -0,0 +1,50 @@
+package func.ir;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Picks a version of a variable depending on which
+ * predecessor control arrived from. Phis only exist
+ * between SSA construction and destruction.
+ */
+public class Phi extends Instruction {
+    public Variable target;
+    public final Map<BasicBlock, Operand> incoming;
+
+    public Phi(Variable target) {
+        this.target = target;
+        this.incoming = new LinkedHashMap<>();
+    }
+
+    @Override
+    public Variable def() {
+        return this.target;
+    }
+
+    @Override
+    public void setDef(Variable variable) {
+        this.target = variable;
+    }
+
+    @Override
+    public List<Operand> uses() {
+        return new ArrayList<>(this.incoming.values());
+    }
+
+    @Override
+    public void replaceUses(UnaryOperator<Operand> replace) {
+        this.incoming.replaceAll((block, operand) -> replace.apply(operand));
+    }
+
+    @Override
+    public String toString() {
+        return this.target + " = phi " + this.incoming.entrySet().stream()
+            .map(e -> "[" + e.getKey().label() + ": " + e.getValue() + "]")
+            .collect(Collectors.joining(", "));
+    }
+}
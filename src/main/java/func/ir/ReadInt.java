@@ -0,0 +1,39 @@
+package func.ir;
+
+import lombok.AllArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reads an integer from the user into a variable.
+ */
+@AllArgsConstructor
+public class ReadInt extends Instruction {
+    public Variable target;
+
+    @Override
+    public Variable def() {
+        return this.target;
+    }
+
+    @Override
+    public void setDef(Variable variable) {
+        this.target = variable;
+    }
+
+    @Override
+    public List<Operand> uses() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void replaceUses(UnaryOperator<Operand> replace) {
+    }
+
+    @Override
+    public String toString() {
+        return this.target + " = read";
+    }
+}
@@ -0,0 +1,39 @@
+package func.ir;
+
+import lombok.AllArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Leaves the method, returning a value if it has one.
+ */
+@AllArgsConstructor
+public class Return extends Terminator {
+    public Operand value;
+
+    @Override
+    public List<BasicBlock> successors() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void replaceSuccessor(BasicBlock from, BasicBlock to) {
+    }
+
+    @Override
+    public List<Operand> uses() {
+        return this.value == null ? Collections.emptyList() : Collections.singletonList(this.value);
+    }
+
+    @Override
+    public void replaceUses(UnaryOperator<Operand> replace) {
+        if (this.value != null) this.value = replace.apply(this.value);
+    }
+
+    @Override
+    public String toString() {
+        return this.value == null ? "return" : "return " + this.value;
+    }
+}
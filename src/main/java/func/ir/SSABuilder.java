@@ -0,0 +1,129 @@
+package func.ir;
+
+import java.util.*;
+
+/**
+ * Puts a {@link Function} into SSA form, following Cytron et al.
+ * with the "semi-pruned" refinement from Briggs et al.
+ * <p>
+ * Phis are only placed for variables that are read in some block
+ * before being assigned there, since any other variable cannot be
+ * live across a block boundary. They go on the iterated dominance
+ * frontier of the blocks assigning the variable, which for func is
+ * the join after an if and the header of a while.
+ * <p>
+ * Renaming then walks the dominator tree, keeping a stack of the
+ * reaching version of each variable. Parameters arrive as version
+ * zero, and any other variable read before it is assigned reads the
+ * constant zero it starts at.
+ */
+public class SSABuilder {
+    private final Function function;
+    private final DominatorTree dominators;
+    private final Map<Variable, Deque<Operand>> stacks;
+    private final Map<Variable, Integer> versions;
+
+    private SSABuilder(Function function) {
+        this.function = function;
+        this.function.update();
+        this.dominators = new DominatorTree(function);
+        this.stacks = new HashMap<>();
+        this.versions = new HashMap<>();
+    }
+
+    public static Function build(Function function) {
+        SSABuilder builder = new SSABuilder(function);
+        builder.insertPhis();
+        builder.rename();
+        return function;
+    }
+
+    private void insertPhis() {
+        Set<Variable> global = new HashSet<>();
+        Map<Variable, Set<BasicBlock>> assignedIn = new HashMap<>();
+
+        for (BasicBlock block : this.dominators.order()) {
+            Set<Variable> assigned = new HashSet<>();
+            for (Instruction instruction : block.instructions) {
+                for (Operand operand : instruction.uses()) {
+                    if (isSource(operand) && !assigned.contains(operand)) global.add((Variable) operand);
+                }
+                Variable def = instruction.def();
+                if (isSource(def)) {
+                    assigned.add(def);
+                    assignedIn.computeIfAbsent(def, v -> new HashSet<>()).add(block);
+                }
+            }
+            for (Operand operand : block.terminator.uses()) {
+                if (isSource(operand) && !assigned.contains(operand)) global.add((Variable) operand);
+            }
+        }
+
+        for (Variable variable : global) {
+            Set<BasicBlock> placed = new HashSet<>();
+            Deque<BasicBlock> work = new ArrayDeque<>(assignedIn.getOrDefault(variable, Collections.emptySet()));
+            while (!work.isEmpty()) {
+                for (BasicBlock frontier : this.dominators.frontier(work.pop())) {
+                    if (!placed.add(frontier)) continue;
+                    frontier.phis.add(new Phi(variable));
+                    work.push(frontier);
+                }
+            }
+        }
+    }
+
+    private static boolean isSource(Operand operand) {
+        return operand instanceof Variable && !((Variable) operand).temporary;
+    }
+
+    private void rename() {
+        for (Variable parameter : this.function.parameters) {
+            this.versions.put(parameter, 0);
+            this.stack(parameter).push(parameter.version(0));
+        }
+        this.rename(this.function.entry());
+    }
+
+    private Deque<Operand> stack(Variable variable) {
+        return this.stacks.computeIfAbsent(variable, v -> new ArrayDeque<>());
+    }
+
+    private Operand current(Operand operand) {
+        if (!isSource(operand)) return operand;
+        Deque<Operand> stack = this.stack((Variable) operand);
+        return stack.isEmpty() ? new Constant(0) : stack.peek();
+    }
+
+    private Variable define(Variable variable) {
+        int version = this.versions.merge(variable, 1, Integer::sum);
+        Variable versioned = variable.version(version);
+        this.stack(variable).push(versioned);
+        return versioned;
+    }
+
+    private void rename(BasicBlock block) {
+        List<Variable> defined = new ArrayList<>();
+
+        for (Phi phi : block.phis) {
+            defined.add(phi.target);
+            phi.target = this.define(phi.target);
+        }
+        for (Instruction instruction : block.instructions) {
+            instruction.replaceUses(this::current);
+            Variable def = instruction.def();
+            if (isSource(def)) {
+                defined.add(def);
+                instruction.setDef(this.define(def));
+            }
+        }
+        block.terminator.replaceUses(this::current);
+
+        for (BasicBlock successor : block.successors()) {
+            for (Phi phi : successor.phis) phi.incoming.put(block, this.current(phi.target.base()));
+        }
+
+        for (BasicBlock child : this.dominators.children(block)) this.rename(child);
+
+        defined.forEach(variable -> this.stacks.get(variable).pop());
+    }
+}
@@ -0,0 +1,146 @@
+package func.ir;
+
+import java.util.*;
+
+/**
+ * Takes a {@link Function} back out of SSA form so that it can
+ * be handed to a backend.
+ * <p>
+ * Every version of a variable goes back to the variable itself
+ * unless it interferes with (is live where it is assigned, or
+ * vice versa) a version already placed there, in which case it
+ * keeps its version and gets a home of its own. In the common case
+ * every version fits and the phis turn into copies of a variable
+ * onto itself, which are dropped.
+ * <p>
+ * The phis that remain become copies at the end of each predecessor.
+ * Edges from a block with more than one successor are split first, so
+ * that a copy only runs on the edge it belongs to. Homes are never
+ * shared between variables, so the copies on an edge cannot overwrite
+ * each other's sources and can run in any order.
+ */
+public class SSADestructor {
+    private final Function function;
+    private final Map<Variable, Set<Variable>> interference;
+
+    private SSADestructor(Function function) {
+        this.function = function;
+        this.interference = new HashMap<>();
+    }
+
+    public static Function destruct(Function function) {
+        SSADestructor destructor = new SSADestructor(function);
+        destructor.interfere(new Liveness(function));
+        destructor.rewrite(destructor.homes());
+        return function;
+    }
+
+    private void interfere(Variable a, Collection<Variable> live) {
+        if (a.version == Variable.UNVERSIONED) return;
+        for (Variable b : live) {
+            if (a.equals(b) || !a.name.equals(b.name) || b.version == Variable.UNVERSIONED) continue;
+            this.interference.computeIfAbsent(a, v -> new HashSet<>()).add(b);
+            this.interference.computeIfAbsent(b, v -> new HashSet<>()).add(a);
+        }
+    }
+
+    /**
+     * Finds which versions interfere by walking each block backwards
+     * from what is live out of it, checking what is live at each
+     * assignment. SSA guarantees that if two versions are ever live at
+     * once, one of them is live where the other is assigned.
+     */
+    private void interfere(Liveness liveness) {
+        for (BasicBlock block : this.function.blocks) {
+            Set<Variable> live = new HashSet<>(liveness.out(block));
+            addUses(live, block.terminator);
+            for (int i = block.instructions.size() - 1; i >= 0; i--) {
+                Instruction instruction = block.instructions.get(i);
+                Variable def = instruction.def();
+                if (def != null) {
+                    live.remove(def);
+                    this.interfere(def, live);
+                }
+                addUses(live, instruction);
+            }
+
+            Set<Variable> targets = new HashSet<>();
+            block.phis.forEach(phi -> targets.add(phi.target));
+            live.removeAll(targets);
+            live.addAll(targets);
+            for (Phi phi : block.phis) this.interfere(phi.target, live);
+        }
+
+        // parameters are all assigned on entry
+        Set<Variable> live = new HashSet<>(liveness.in(this.function.entry()));
+        this.function.parameters.forEach(parameter -> live.add(parameter.version(0)));
+        this.function.parameters.forEach(parameter -> this.interfere(parameter.version(0), live));
+    }
+
+    private static void addUses(Set<Variable> live, Instruction instruction) {
+        for (Operand operand : instruction.uses()) {
+            if (operand instanceof Variable) live.add((Variable) operand);
+        }
+    }
+
+    /**
+     * Decides where each version lives. Versions are placed oldest
+     * first, so a parameter always stays in the variable it arrived in.
+     */
+    private Map<Variable, Variable> homes() {
+        SortedSet<Variable> versions = new TreeSet<>(
+            Comparator.comparing((Variable v) -> v.name).thenComparingInt(v -> v.version)
+        );
+        this.function.parameters.forEach(parameter -> versions.add(parameter.version(0)));
+        for (BasicBlock block : this.function.blocks) {
+            block.phis.forEach(phi -> versions.add(phi.target));
+            for (Instruction instruction : block.instructions) {
+                if (instruction.def() != null && instruction.def().version != Variable.UNVERSIONED)
+                    versions.add(instruction.def());
+            }
+        }
+
+        Map<Variable, Variable> homes = new HashMap<>();
+        Map<Variable, Set<Variable>> placed = new HashMap<>();
+        for (Variable version : versions) {
+            Set<Variable> sharing = placed.computeIfAbsent(version.base(), v -> new HashSet<>());
+            Set<Variable> interfering = this.interference.getOrDefault(version, Collections.emptySet());
+            if (Collections.disjoint(sharing, interfering)) {
+                sharing.add(version);
+                homes.put(version, version.base());
+            } else {
+                homes.put(version, version);
+            }
+        }
+        return homes;
+    }
+
+    private static Operand home(Map<Variable, Variable> homes, Operand operand) {
+        Variable home = homes.get(operand);
+        return home != null ? home : operand;
+    }
+
+    private void rewrite(Map<Variable, Variable> homes) {
+        for (BasicBlock block : new ArrayList<>(this.function.blocks)) {
+            if (block.phis.isEmpty()) continue;
+            for (BasicBlock predecessor : new ArrayList<>(block.predecessors)) {
+                BasicBlock from = predecessor.successors().size() > 1
+                    ? this.function.splitEdge(predecessor, block)
+                    : predecessor;
+                for (Phi phi : block.phis) from.instructions.add(new Move(phi.target, phi.incoming.get(from)));
+            }
+            block.phis.clear();
+        }
+
+        for (BasicBlock block : this.function.blocks) {
+            for (Instruction instruction : block.instructions) {
+                instruction.replaceUses(operand -> home(homes, operand));
+                Variable def = instruction.def();
+                if (def != null && homes.containsKey(def)) instruction.setDef(homes.get(def));
+            }
+            block.terminator.replaceUses(operand -> home(homes, operand));
+            block.instructions.removeIf(instruction -> instruction instanceof Move &&
+                ((Move) instruction).target.equals(((Move) instruction).source));
+        }
+    }
+}
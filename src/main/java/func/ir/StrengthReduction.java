@@ -0,0 +1,128 @@
+package func.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MIPS sequences for multiplying and dividing by a constant without
+ * mult or div, both of which take many cycles.
+ * <p>
+ * Multiplying by a power of two is a shift, and by a sum or difference
+ * of two powers of two is two shifts and an add or subtract. Dividing
+ * by a power of two shifts after adding one less than the divisor to
+ * negative dividends, so the quotient rounds towards zero. Any other
+ * divisor uses the high word of a multiply by a magic number, as in
+ * Hacker's Delight, chapter 10.
+ * <p>
+ * Each sequence computes into a destination from an operand register,
+ * which may be the same, using one scratch register distinct from both.
+ */
+public final class StrengthReduction {
+
+    private StrengthReduction() {
+    }
+
+    /**
+     * The instructions setting dest to x * c, or null if a mult is as good.
+     */
+    public static List<String> times(String dest, String x, int c, String scratch) {
+        List<String> code = new ArrayList<>();
+        long magnitude = Math.abs((long) c);
+        if (c == 0) {
+            code.add("li " + dest + ", 0");
+            return code;
+        } else if (magnitude == 1) {
+            if (!dest.equals(x)) code.add("move " + dest + ", " + x);
+        } else if (Long.bitCount(magnitude) == 1) {
+            code.add("sll " + dest + ", " + x + ", " + Long.numberOfTrailingZeros(magnitude));
+        } else if (Long.bitCount(magnitude) == 2) {
+            int high = 63 - Long.numberOfLeadingZeros(magnitude);
+            int low = Long.numberOfTrailingZeros(magnitude);
+            code.add("sll " + scratch + ", " + x + ", " + high);
+            if (low > 0) code.add("sll " + dest + ", " + x + ", " + low);
+            code.add("addu " + dest + ", " + scratch + ", " + (low > 0 ? dest : x));
+        } else if (Long.bitCount(magnitude + Long.lowestOneBit(magnitude)) == 1 && magnitude + Long.lowestOneBit(magnitude) <= 1L << 31) {
+            int high = Long.numberOfTrailingZeros(magnitude + Long.lowestOneBit(magnitude));
+            int low = Long.numberOfTrailingZeros(magnitude);
+            code.add("sll " + scratch + ", " + x + ", " + high);
+            if (low > 0) code.add("sll " + dest + ", " + x + ", " + low);
+            code.add("subu " + dest + ", " + scratch + ", " + (low > 0 ? dest : x));
+        } else {
+            return null;
+        }
+        if (c < 0) code.add("subu " + dest + ", $zero, " + dest);
+        return code;
+    }
+
+    /**
+     * The instructions setting dest to x / c rounded towards zero,
+     * or null if c is zero and the division is left to fail.
+     */
+    public static List<String> divide(String dest, String x, int c, String scratch) {
+        List<String> code = new ArrayList<>();
+        long magnitude = Math.abs((long) c);
+        if (c == 0) {
+            return null;
+        } else if (magnitude == 1) {
+            code.add(c > 0 ? "move " + dest + ", " + x : "subu " + dest + ", $zero, " + x);
+            return code;
+        } else if (Long.bitCount(magnitude) == 1) {
+            int shift = Long.numberOfTrailingZeros(magnitude);
+            String bias = dest.equals(x) ? scratch : dest;
+            code.add("sra " + bias + ", " + x + ", 31");
+            code.add("srl " + bias + ", " + bias + ", " + (32 - shift));
+            code.add("addu " + bias + ", " + x + ", " + bias);
+            code.add("sra " + dest + ", " + bias + ", " + shift);
+            if (c < 0) code.add("subu " + dest + ", $zero, " + dest);
+            return code;
+        }
+
+        int[] magic = magic(c);
+        String q = dest.equals(x) ? scratch : dest;
+        String sign = dest.equals(x) ? dest : scratch;
+        code.add("li " + q + ", " + magic[0]);
+        code.add("mult " + x + ", " + q);
+        code.add("mfhi " + q);
+        if (c > 0 && magic[0] < 0) code.add("addu " + q + ", " + q + ", " + x);
+        if (c < 0 && magic[0] > 0) code.add("subu " + q + ", " + q + ", " + x);
+        if (magic[1] > 0) code.add("sra " + q + ", " + q + ", " + magic[1]);
+        code.add("srl " + sign + ", " + (c > 0 ? x : q) + ", 31");
+        code.add("addu " + dest + ", " + q + ", " + sign);
+        return code;
+    }
+
+    /**
+     * The magic number and shift for dividing by d, which is
+     * neither zero nor a power of two in magnitude.
+     */
+    static int[] magic(int d) {
+        final long mask = 0xffffffffL;
+        final long two31 = 0x80000000L;
+        long ad = Math.abs((long) d);
+        long t = two31 + ((d & mask) >>> 31);
+        long anc = t - 1 - t % ad;
+        int p = 31;
+        long q1 = two31 / anc, r1 = two31 - q1 * anc;
+        long q2 = two31 / ad, r2 = two31 - q2 * ad;
+        long delta;
+        do {
+            p++;
+            q1 = 2 * q1 & mask;
+            r1 = 2 * r1 & mask;
+            if (r1 >= anc) {
+                q1 = q1 + 1 & mask;
+                r1 = r1 - anc & mask;
+            }
+            q2 = 2 * q2 & mask;
+            r2 = 2 * r2 & mask;
+            if (r2 >= ad) {
+                q2 = q2 + 1 & mask;
+                r2 = r2 - ad & mask;
+            }
+            delta = ad - r2 & mask;
+        } while (q1 < delta || (q1 == delta && r1 == 0));
+
+        int m = (int) (q2 + 1);
+        return new int[]{d < 0 ? -m : m, p - 32};
+    }
+}
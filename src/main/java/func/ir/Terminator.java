@@ -0,0 +1,18 @@
+package func.ir;
+
+import java.util.List;
+
+/**
+ * The instruction that ends a {@link BasicBlock}
+ * and decides where control goes next.
+ */
+public abstract class Terminator extends Instruction {
+
+    public abstract List<BasicBlock> successors();
+
+    /**
+     * Redirects edges to one successor to another,
+     * for when an edge is split.
+     */
+    public abstract void replaceSuccessor(BasicBlock from, BasicBlock to);
+}
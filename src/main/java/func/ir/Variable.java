@@ -0,0 +1,51 @@
+package func.ir;
+
+import lombok.EqualsAndHashCode;
+
+/**
+ * A variable of the source program, or a temporary introduced
+ * when nested expressions are flattened into instructions.
+ * <p>
+ * In SSA form every definition of a variable gets its own
+ * version. Temporaries are only ever assigned once, in the
+ * block that uses them, so they are never versioned.
+ */
+@EqualsAndHashCode
+public class Variable implements Operand {
+    public static final int UNVERSIONED = -1;
+
+    public final String name;
+    public final int version;
+    public final boolean temporary;
+
+    private Variable(String name, int version, boolean temporary) {
+        this.name = name;
+        this.version = version;
+        this.temporary = temporary;
+    }
+
+    public static Variable named(String name) {
+        return new Variable(name, UNVERSIONED, false);
+    }
+
+    public static Variable temporary(int number) {
+        return new Variable("t" + number, UNVERSIONED, true);
+    }
+
+    public Variable version(int version) {
+        return new Variable(this.name, version, this.temporary);
+    }
+
+    /**
+     * The variable this is a version of.
+     */
+    public Variable base() {
+        return this.version == UNVERSIONED ? this : new Variable(this.name, UNVERSIONED, this.temporary);
+    }
+
+    @Override
+    public String toString() {
+        String name = this.temporary ? "%" + this.name : this.name;
+        return this.version == UNVERSIONED ? name : name + "." + this.version;
+    }
+}
@@ -0,0 +1,30 @@
+package func.ir;
+
+import lombok.AllArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Writes an integer out to the user.
+ */
+@AllArgsConstructor
+public class WriteInt extends Instruction {
+    public Operand value;
+
+    @Override
+    public List<Operand> uses() {
+        return Collections.singletonList(this.value);
+    }
+
+    @Override
+    public void replaceUses(UnaryOperator<Operand> replace) {
+        this.value = replace.apply(this.value);
+    }
+
+    @Override
+    public String toString() {
+        return "write " + this.value;
+    }
+}
@@ -0,0 +1,89 @@
+package func.passes;
+
+import func.syntax.Program;
+import func.visitors.CountNodes;
+import func.visitors.ProgramAnalyser;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The analyses the compiler knows how to compute.
+ */
+public class Analyses {
+
+    /**
+     * The semantic, assignment and type errors in the program.
+     */
+    public static final Analysis<ProgramAnalyser> DIAGNOSTICS = new Analysis<ProgramAnalyser>() {
+        @Override
+        public String name() {
+            return "diagnostics";
+        }
+
+        @Override
+        public ProgramAnalyser analyse(Program program, PassManager passes) {
+            ProgramAnalyser analyser = new ProgramAnalyser();
+            analyser.visit(program);
+            return analyser;
+        }
+    };
+
+    /**
+     * The same as {@link #DIAGNOSTICS}, checking methods concurrently.
+     */
+    public static final Analysis<ProgramAnalyser> PARALLEL_DIAGNOSTICS = new Analysis<ProgramAnalyser>() {
+        @Override
+        public String name() {
+            return "parallel diagnostics";
+        }
+
+        @Override
+        public ProgramAnalyser analyse(Program program, PassManager passes) {
+            ProgramAnalyser analyser = new ProgramAnalyser(ForkJoinPool.commonPool());
+            analyser.visit(program);
+            return analyser;
+        }
+    };
+
+    /**
+     * The number of nodes in the syntax tree.
+     */
+    public static final Analysis<Integer> NODE_COUNT = new Analysis<Integer>() {
+        @Override
+        public String name() {
+            return "node count";
+        }
+
+        @Override
+        public Integer analyse(Program program, PassManager passes) {
+            return new CountNodes().visit(program);
+        }
+    };
+
+    /**
+     * Which methods call which.
+     */
+    public static final Analysis<CallGraph> CALL_GRAPH = new Analysis<CallGraph>() {
+        @Override
+        public String name() {
+            return "call graph";
+        }
+
+        @Override
+        public CallGraph analyse(Program program, PassManager passes) {
+            return CallGraph.of(program);
+        }
+    };
+
+    /**
+     * Every analysis, for passes that change the tree too much to keep track.
+     */
+    public static final Analysis<?>[] ALL = {DIAGNOSTICS, PARALLEL_DIAGNOSTICS, NODE_COUNT, CALL_GRAPH};
+
+    /**
+     * The analyses of what is inside methods, for passes that rewrite
+     * their bodies without adding or dropping any calls to methods, so
+     * the call graph still holds.
+     */
+    public static final Analysis<?>[] BODIES = {DIAGNOSTICS, PARALLEL_DIAGNOSTICS, NODE_COUNT};
+}
@@ -0,0 +1,16 @@
+package func.passes;
+
+import func.syntax.Program;
+
+/**
+ * Facts computed from a program that passes can ask the
+ * {@link PassManager} for. The manager computes each analysis
+ * at most once until a pass invalidates it, so analyses are
+ * usually shared constants, as in {@link Analyses}.
+ */
+public interface Analysis<T> {
+
+    String name();
+
+    T analyse(Program program, PassManager passes);
+}
@@ -0,0 +1,160 @@
+package func.passes;
+
+import func.syntax.Identifier;
+import func.syntax.Method;
+import func.syntax.Program;
+import func.syntax.SymbolMap;
+import func.syntax.SymbolTable;
+import func.visitors.FindCalls;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Which methods of a program call which, by their index in the program.
+ * Calls to builtins and to methods that don't exist are left out.
+ */
+public class CallGraph {
+
+    private final SymbolTable symbols;
+    private final List<Method> methods;
+    private final SymbolMap<Integer> indices;
+    private final int[][] callees;
+    private final boolean[] recursive;
+
+    private CallGraph(Program program) {
+        this.symbols = program.symbols;
+        this.methods = new ArrayList<>(program.methods.methods);
+        this.indices = new SymbolMap<>();
+        for (int i = 0; i < this.methods.size(); i++) this.indices.put(this.symbols.symbol(this.methods.get(i).id), i);
+
+        this.callees = new int[this.methods.size()][];
+        this.recursive = new boolean[this.methods.size()];
+        for (int i = 0; i < this.methods.size(); i++) {
+            int caller = i;
+            List<Integer> callees = new ArrayList<>();
+            new FindCalls(call -> {
+                int callee = this.index(call.id);
+                if (callee == -1) return;
+                if (callee == caller) this.recursive[caller] = true;
+                if (!callees.contains(callee)) callees.add(callee);
+            }).visit(this.methods.get(i));
+            this.callees[i] = callees.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        this.findComponents();
+    }
+
+    public static CallGraph of(Program program) {
+        return new CallGraph(program);
+    }
+
+    public int size() {
+        return this.methods.size();
+    }
+
+    public Method method(int index) {
+        return this.methods.get(index);
+    }
+
+    /**
+     * The index of the method with the given name, or -1.
+     */
+    public int index(Identifier name) {
+        if (SymbolTable.isBuiltin(this.symbols.symbol(name))) return -1;
+        Integer index = this.indices.get(this.symbols.symbol(name));
+        return index != null ? index : -1;
+    }
+
+    public int[] callees(int method) {
+        return this.callees[method];
+    }
+
+    /**
+     * Whether a method can end up calling itself.
+     */
+    public boolean isRecursive(int method) {
+        return this.recursive[method];
+    }
+
+    /**
+     * The methods a method can end up calling, itself first, in reverse
+     * postorder, so each comes before the methods it calls unless they
+     * call back to it. Callees are taken in the order they are called.
+     */
+    public int[] reversePostorder(int root) {
+        boolean[] seen = new boolean[this.methods.size()];
+        int[] next = new int[this.methods.size()];
+        Deque<Integer> path = new ArrayDeque<>();
+        Deque<Integer> order = new ArrayDeque<>();
+        seen[root] = true;
+        path.push(root);
+        while (!path.isEmpty()) {
+            int v = path.peek();
+            // the last callee is finished first, so the first ends up first
+            if (next[v] < this.callees[v].length) {
+                int w = this.callees[v][this.callees[v].length - 1 - next[v]++];
+                if (!seen[w]) {
+                    seen[w] = true;
+                    path.push(w);
+                }
+                continue;
+            }
+            path.pop();
+            order.push(v);
+        }
+        return order.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Finds the strongly connected components with Tarjan's algorithm,
+     * keeping its stack on the heap since call chains can be long.
+     * Methods in a component with others are mutually recursive.
+     */
+    private void findComponents() {
+        int n = this.methods.size();
+        int[] order = new int[n];
+        int[] low = new int[n];
+        int[] next = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(order, -1);
+        Deque<Integer> stack = new ArrayDeque<>();
+        Deque<Integer> path = new ArrayDeque<>();
+        int counter = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (order[root] != -1) continue;
+            path.push(root);
+            while (!path.isEmpty()) {
+                int v = path.peek();
+                if (order[v] == -1) {
+                    order[v] = low[v] = counter++;
+                    stack.push(v);
+                    onStack[v] = true;
+                }
+                if (next[v] < this.callees[v].length) {
+                    int w = this.callees[v][next[v]++];
+                    if (order[w] == -1) path.push(w);
+                    else if (onStack[w]) low[v] = Math.min(low[v], order[w]);
+                    continue;
+                }
+
+                path.pop();
+                if (!path.isEmpty()) low[path.peek()] = Math.min(low[path.peek()], low[v]);
+                if (low[v] != order[v]) continue;
+
+                List<Integer> members = new ArrayList<>();
+                int w;
+                do {
+                    w = stack.pop();
+                    onStack[w] = false;
+                    members.add(w);
+                } while (w != v);
+                if (members.size() > 1) members.forEach(member -> this.recursive[member] = true);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package func.passes;
+
+import func.syntax.Builtin;
+import func.syntax.Condition;
+import func.syntax.Identifier;
+import func.syntax.Method;
+import func.syntax.Program;
+import func.syntax.SymbolMap;
+import func.syntax.SymbolTable;
+import func.syntax.exp.Expression;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs calls to the methods of a program at compile time.
+ * <p>
+ * A call is given up on if it reads or writes, divides by zero, calls
+ * more than {@link #MAX_DEPTH} deep or runs out of fuel, which each
+ * statement, loop iteration and call uses one of. Nothing else a method
+ * does can be seen outside it, so calls that finish can be replaced by
+ * their results. Results are kept, so calls made again with the same
+ * arguments, from the compiler or the program being run, cost nothing.
+ */
+public class Evaluator {
+
+    public static final int MAX_DEPTH = 500;
+
+    /**
+     * Thrown to give up on a call.
+     */
+    private static class Abandon extends RuntimeException {
+        Abandon() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Abandon ABANDON = new Abandon();
+
+    private final SymbolTable symbols;
+    private final SymbolMap<Method> methods = new SymbolMap<>();
+    private final int fuel;
+    private final Map<List<Integer>, Integer> results = new HashMap<>();
+
+    private int remaining;
+    private int depth;
+
+    private Evaluator(Program program, int fuel) {
+        this.symbols = program.symbols;
+        this.fuel = fuel;
+        program.methods.methods.forEach(method -> this.methods.put(this.symbols.symbol(method.id), method));
+    }
+
+    /**
+     * @param fuel how much fuel each call from the compiler gets
+     */
+    public static Evaluator of(Program program, int fuel) {
+        return new Evaluator(program, fuel);
+    }
+
+    /**
+     * The result of calling a method, or null if it can't be worked out.
+     */
+    public Integer call(Identifier name, List<Integer> arguments) {
+        if (this.fuel <= 0) return null;
+        List<Integer> key = key(this.symbols.symbol(name), arguments);
+        if (this.results.containsKey(key)) return this.results.get(key);
+
+        this.remaining = this.fuel;
+        this.depth = 0;
+        Integer result;
+        try {
+            result = this.invoke(name, arguments);
+        } catch (Abandon abandon) {
+            result = null;
+        }
+        this.results.put(key, result);
+        return result;
+    }
+
+    private static List<Integer> key(int symbol, List<Integer> arguments) {
+        List<Integer> key = new ArrayList<>(arguments.size() + 1);
+        key.add(symbol);
+        key.addAll(arguments);
+        return key;
+    }
+
+    private void step() {
+        if (--this.remaining < 0) throw ABANDON;
+    }
+
+    private int invoke(Identifier name, List<Integer> arguments) {
+        int symbol = this.symbols.symbol(name);
+        Method method = SymbolTable.isBuiltin(symbol) ? null : this.methods.get(symbol);
+        if (method == null || method.ret == null || method.statements == null) throw ABANDON;
+        if ((method.args != null ? method.args.identifiers.size() : 0) != arguments.size()) throw ABANDON;
+
+        List<Integer> key = key(symbol, arguments);
+        Integer known = this.results.get(key);
+        if (known != null) return known;
+        this.step();
+        if (++this.depth > MAX_DEPTH) throw ABANDON;
+
+        Map<Integer, Integer> frame = new HashMap<>();
+        for (int i = 0; i < arguments.size(); i++) frame.put(this.symbols.symbol(method.args.identifiers.get(i)), arguments.get(i));
+        this.execute(method.statements, frame);
+        int result = frame.getOrDefault(this.symbols.symbol(method.ret), 0);
+
+        this.depth--;
+        this.results.put(key, result);
+        return result;
+    }
+
+    private void execute(Statements statements, Map<Integer, Integer> frame) {
+        for (Statement statement : statements.statements) {
+            this.step();
+            if (statement instanceof Assign) {
+                Assign assign = (Assign) statement;
+                frame.put(this.symbols.symbol(assign.id), this.evaluate(assign.expression, frame));
+            } else if (statement instanceof If) {
+                If cmd = (If) statement;
+                if (this.test(cmd.cond, frame)) this.execute(cmd.then, frame);
+                else if (cmd.otherwise != null) this.execute(cmd.otherwise, frame);
+            } else if (statement instanceof While) {
+                While cmd = (While) statement;
+                while (this.test(cmd.cond, frame)) {
+                    this.step();
+                    this.execute(cmd.statements, frame);
+                }
+            } else {
+                // reads and writes can only happen at run time
+                throw ABANDON;
+            }
+        }
+    }
+
+    private boolean test(Condition condition, Map<Integer, Integer> frame) {
+        int left = this.evaluate(condition.exps.expressions.get(0), frame);
+        int right = this.evaluate(condition.exps.expressions.get(1), frame);
+        return condition.bop.test(left, right);
+    }
+
+    private int evaluate(Expression expression, Map<Integer, Integer> frame) {
+        if (expression instanceof IntExpression) return ((IntExpression) expression).integer;
+        FunctionExpression function = (FunctionExpression) expression;
+        if (function.expressions == null) return frame.getOrDefault(this.symbols.symbol(function.id), 0);
+
+        List<Integer> arguments = new ArrayList<>();
+        for (Expression argument : function.expressions.expressions) arguments.add(this.evaluate(argument, frame));
+        Builtin builtin = Builtin.of(function);
+        if (builtin == null) return this.invoke(function.id, arguments);
+
+        Integer value = builtin.apply(arguments.get(0), arguments.get(1));
+        if (value == null) throw ABANDON;
+        return value;
+    }
+}
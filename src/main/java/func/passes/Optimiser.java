@@ -0,0 +1,70 @@
+package func.passes;
+
+import func.visitors.EliminateDeadCode;
+import func.visitors.EliminateTailCalls;
+import func.visitors.HoistInvariants;
+import func.visitors.InlineMethods;
+import func.visitors.NumberValues;
+import func.visitors.PropagateConstants;
+import func.visitors.ReduceInductionVariables;
+import func.visitors.SpecialiseMethods;
+import func.visitors.UnrollLoops;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The passes run over the syntax tree by compile -O, in order.
+ */
+public class Optimiser {
+
+    public static final int INLINE_SIZE = 40;
+    public static final int INLINE_DEPTH = 3;
+    public static final int EVALUATION_FUEL = 1000000;
+    public static final int SPECIALISE_LIMIT = 4;
+    public static final int UNROLL_FACTOR = 4;
+
+    private final int inlineSize;
+    private final int inlineDepth;
+    private final int fuel;
+    private final int specialiseLimit;
+    private final int unrollFactor;
+
+    public Optimiser() {
+        this(INLINE_SIZE, INLINE_DEPTH, EVALUATION_FUEL, SPECIALISE_LIMIT, UNROLL_FACTOR);
+    }
+
+    /**
+     * @param inlineSize      the most nodes a method may have to be inlined
+     * @param inlineDepth     how many calls deep to inline
+     * @param fuel            how long a call may run for at compile time
+     * @param specialiseLimit how many copies of each method to specialise
+     * @param unrollFactor    how many times to unroll loops that aren't unrolled fully
+     */
+    public Optimiser(int inlineSize, int inlineDepth, int fuel, int specialiseLimit, int unrollFactor) {
+        this.inlineSize = inlineSize;
+        this.inlineDepth = inlineDepth;
+        this.fuel = fuel;
+        this.specialiseLimit = specialiseLimit;
+        this.unrollFactor = unrollFactor;
+    }
+
+    public List<Pass> passes() {
+        List<Pass> passes = new ArrayList<>();
+        passes.add(new VisitorPass("tail call elimination", EliminateTailCalls::new, Analyses.ALL));
+        passes.add(new VisitorPass("specialisation", () -> new SpecialiseMethods(this.specialiseLimit, this.fuel), Analyses.ALL));
+        passes.add(new VisitorPass("inlining", Collections.singletonList(Analyses.CALL_GRAPH),
+            manager -> new InlineMethods(this.inlineSize, this.inlineDepth, manager.get(Analyses.CALL_GRAPH)), Analyses.ALL));
+        passes.add(new VisitorPass("constant propagation", () -> new PropagateConstants(this.fuel), Analyses.ALL));
+        passes.add(new VisitorPass("loop unrolling", () -> new UnrollLoops(this.unrollFactor), Analyses.ALL));
+        // the unrolled copies of a loop's counter are constants again
+        passes.add(new VisitorPass("constant propagation", () -> new PropagateConstants(this.fuel), Analyses.ALL));
+        // these only move and drop builtin calls, so the call graph still holds
+        passes.add(new VisitorPass("value numbering", NumberValues::new, Analyses.BODIES));
+        passes.add(new VisitorPass("loop-invariant code motion", HoistInvariants::new, Analyses.BODIES));
+        passes.add(new VisitorPass("strength reduction", ReduceInductionVariables::new, Analyses.BODIES));
+        passes.add(new VisitorPass("dead code elimination", EliminateDeadCode::new, Analyses.BODIES));
+        return passes;
+    }
+}
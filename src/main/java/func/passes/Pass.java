@@ -0,0 +1,33 @@
+package func.passes;
+
+import func.syntax.Program;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A step of the compile pipeline run by a {@link PassManager}.
+ */
+public interface Pass {
+
+    String name();
+
+    /**
+     * The analyses computed before the pass runs.
+     */
+    default List<Analysis<?>> requires() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * The analyses that no longer hold once the pass has run.
+     */
+    default List<Analysis<?>> invalidates() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Runs the pass, returning the program to carry on with.
+     */
+    Program run(Program program, PassManager passes);
+}
@@ -0,0 +1,157 @@
+package func.passes;
+
+import func.syntax.Program;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Runs passes over a program, computing the analyses they require
+ * and caching them until a pass invalidates them.
+ * <p>
+ * When timing is on, every pass, every analysis computed and every
+ * other stage run through {@link #time} is recorded with its wall
+ * time, the bytes this thread allocated during it and the size of
+ * the tree afterwards. Allocation is only measured on JVMs that
+ * support it, and misses work done on other threads, such as that
+ * of the parallel parser.
+ */
+public class PassManager {
+    private final boolean timed;
+    private final Map<Analysis<?>, Object> cache;
+    private final List<Timing> timings;
+    private Program program;
+
+    public PassManager() {
+        this(false);
+    }
+
+    public PassManager(boolean timed) {
+        this.timed = timed;
+        this.cache = new HashMap<>();
+        this.timings = new ArrayList<>();
+    }
+
+    /**
+     * One line of the report.
+     */
+    private static class Timing {
+        final String name;
+        final long nanos;
+        final long bytes;
+        final int nodes;
+
+        Timing(String name, long nanos, long bytes, int nodes) {
+            this.name = name;
+            this.nanos = nanos;
+            this.bytes = bytes;
+            this.nodes = nodes;
+        }
+    }
+
+    public Program program() {
+        return this.program;
+    }
+
+    /**
+     * Starts over with a new program, forgetting every analysis.
+     */
+    public void setProgram(Program program) {
+        this.program = program;
+        this.cache.clear();
+    }
+
+    /**
+     * Gets the result of an analysis of the current program,
+     * computing it if it isn't cached.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Analysis<T> analysis) {
+        if (this.cache.containsKey(analysis)) return (T) this.cache.get(analysis);
+        T result = this.time(analysis.name(), () -> analysis.analyse(this.program, this));
+        this.cache.put(analysis, result);
+        return result;
+    }
+
+    public void invalidate(Analysis<?> analysis) {
+        this.cache.remove(analysis);
+    }
+
+    public void run(Pass... passes) {
+        for (Pass pass : passes) this.run(pass);
+    }
+
+    public void run(Pass pass) {
+        pass.requires().forEach(this::get);
+        this.time(pass.name(), () -> {
+            Program result = pass.run(this.program, this);
+            pass.invalidates().forEach(this::invalidate);
+            this.program = result;
+            return result;
+        });
+    }
+
+    /**
+     * Runs some work, recording how long it takes if timing is on. For
+     * stages of the pipeline that are not passes, such as parsing or
+     * code generation.
+     */
+    public <T> T time(String name, Supplier<T> work) {
+        if (!this.timed) return work.get();
+
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        T result = work.get();
+        long nanos = System.nanoTime() - start;
+        long allocated = bytes < 0 ? -1 : allocatedBytes() - bytes;
+
+        Program program = result instanceof Program ? (Program) result : this.program;
+        int nodes = program == null ? -1 : this.nodes(program);
+        this.timings.add(new Timing(name, nanos, allocated, nodes));
+        return result;
+    }
+
+    /**
+     * Counts the nodes of a program without recording it as a stage,
+     * reusing the cached count for the current program.
+     */
+    private int nodes(Program program) {
+        if (program != this.program) return Analyses.NODE_COUNT.analyse(program, this);
+        Integer nodes = (Integer) this.cache.get(Analyses.NODE_COUNT);
+        if (nodes == null) {
+            nodes = Analyses.NODE_COUNT.analyse(program, this);
+            this.cache.put(Analyses.NODE_COUNT, nodes);
+        }
+        return nodes;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+            if (sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled())
+                return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Prints what was recorded, one stage per line in the order they ran.
+     */
+    public void report(PrintStream out) {
+        out.printf("%-24s %12s %16s %12s%n", "pass", "time (ms)", "allocated (KB)", "nodes");
+        long nanos = 0;
+        long bytes = 0;
+        for (Timing timing : this.timings) {
+            out.printf("%-24s %12.2f %16s %12s%n", timing.name, timing.nanos / 1e6,
+                timing.bytes < 0 ? "-" : String.format("%,d", timing.bytes >> 10),
+                timing.nodes < 0 ? "-" : String.format("%,d", timing.nodes));
+            nanos += timing.nanos;
+            bytes += Math.max(0, timing.bytes);
+        }
+        out.printf("%-24s %12.2f %16s%n", "total", nanos / 1e6, String.format("%,d", bytes >> 10));
+    }
+}
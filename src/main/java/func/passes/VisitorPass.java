@@ -0,0 +1,58 @@
+package func.passes;
+
+import func.syntax.ASTVisitor;
+import func.syntax.Program;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs an {@link ASTVisitor} over the program as a pass. If the
+ * visitor gives back a program, that is what the pipeline carries
+ * on with, otherwise the program is assumed to be changed in place.
+ */
+public class VisitorPass implements Pass {
+    private final String name;
+    private final List<Analysis<?>> requires;
+    private final Function<PassManager, ? extends ASTVisitor<?>> visitor;
+    private final List<Analysis<?>> invalidates;
+
+    public VisitorPass(String name, Supplier<? extends ASTVisitor<?>> visitor, Analysis<?>... invalidates) {
+        this(name, Collections.emptyList(), passes -> visitor.get(), invalidates);
+    }
+
+    /**
+     * A pass whose visitor is made from the analyses it requires,
+     * which are computed before the visitor is asked for.
+     */
+    public VisitorPass(String name, List<Analysis<?>> requires, Function<PassManager, ? extends ASTVisitor<?>> visitor, Analysis<?>... invalidates) {
+        this.name = name;
+        this.requires = requires;
+        this.visitor = visitor;
+        this.invalidates = Arrays.asList(invalidates);
+    }
+
+    @Override
+    public String name() {
+        return this.name;
+    }
+
+    @Override
+    public List<Analysis<?>> requires() {
+        return this.requires;
+    }
+
+    @Override
+    public List<Analysis<?>> invalidates() {
+        return this.invalidates;
+    }
+
+    @Override
+    public Program run(Program program, PassManager passes) {
+        Object result = this.visitor.apply(passes).visit(program);
+        return result instanceof Program ? (Program) result : program;
+    }
+}
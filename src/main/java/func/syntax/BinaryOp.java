@@ -3,6 +3,22 @@ package func.syntax;
 public enum BinaryOp {
     Eq, Less, LessEq, NEq;
 
+    /**
+     * Whether the comparison holds for the given operands.
+     */
+    public boolean test(int left, int right) {
+        switch (this) {
+            case Eq:
+                return left == right;
+            case Less:
+                return left < right;
+            case LessEq:
+                return left <= right;
+            default:
+                return left != right;
+        }
+    }
+
     public String toString() {
         switch (this) {
             case Eq:
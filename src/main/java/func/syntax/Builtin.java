@@ -0,0 +1,82 @@
+package func.syntax;
+
+import func.syntax.exp.Expression;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+
+/**
+ * The builtin arithmetic functions. Arithmetic is on 32 bit
+ * integers, wrapping on overflow and rounding division towards
+ * zero, as both the MIPS and the Java backends do.
+ */
+public enum Builtin {
+    PLUS, MINUS, TIMES, DIVIDE;
+
+    /**
+     * The builtin with the given name, or null.
+     */
+    public static Builtin of(String name) {
+        switch (name) {
+            case "plus":
+                return PLUS;
+            case "minus":
+                return MINUS;
+            case "times":
+                return TIMES;
+            case "divide":
+                return DIVIDE;
+        }
+        return null;
+    }
+
+    /**
+     * The builtin an expression applies, or null if it isn't a builtin call.
+     */
+    public static Builtin of(Expression expression) {
+        if (!(expression instanceof FunctionExpression)) return null;
+        FunctionExpression function = (FunctionExpression) expression;
+        if (function.expressions == null || function.expressions.expressions.size() != 2) return null;
+        return of(function.id.name);
+    }
+
+    /**
+     * Whether an expression can be evaluated, dropped or repeated without
+     * changing what the program does. Calls to methods may read, write or
+     * never return, and a division may fail unless its divisor is a
+     * constant other than zero.
+     */
+    public static boolean isPure(Expression expression) {
+        if (!(expression instanceof FunctionExpression)) return true;
+        FunctionExpression function = (FunctionExpression) expression;
+        if (function.expressions == null) return true;
+        Builtin builtin = of(expression);
+        if (builtin == null) return false;
+        if (builtin == DIVIDE) {
+            Expression divisor = function.expressions.expressions.get(1);
+            if (!(divisor instanceof IntExpression) || ((IntExpression) divisor).integer == 0) return false;
+        }
+        return function.expressions.expressions.stream().allMatch(Builtin::isPure);
+    }
+
+    /**
+     * Applies the builtin, or gives null for a division by zero,
+     * which is left for the program to fail on at run time.
+     */
+    public Integer apply(int x, int y) {
+        switch (this) {
+            case PLUS:
+                return x + y;
+            case MINUS:
+                return x - y;
+            case TIMES:
+                return x * y;
+            default:
+                return y == 0 ? null : x / y;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.name().toLowerCase();
+    }
+}
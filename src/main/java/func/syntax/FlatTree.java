@@ -0,0 +1,358 @@
+package func.syntax;
+
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.*;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * A compact AST stored in an arena of primitive columns rather
+ * than as a graph of objects. Every node is a row of four ints:
+ * its kind, its first child, its next sibling and a payload (the
+ * symbol of an identifier, the value of a literal or the operator
+ * of a condition). Nodes are laid out in pre-order, so walking a
+ * method reads its rows front to back.
+ * <p>
+ * Children are positional, so a missing part of the grammar (a
+ * method without vars, say) is kept as an {@link Kind#EMPTY} node
+ * rather than a null. A statement the parser couldn't recognise, which
+ * it leaves as a null so that errors can still be reported, is kept as
+ * an {@link Kind#INVALID} node and materialised back to a null.
+ * <p>
+ * The visitors run over the object AST, so {@link #program()} gives
+ * a view whose methods are materialised the first time they are read.
+ * The view holds on to them so every pass works on the same objects,
+ * which means that once a pass has read every method the whole object
+ * tree exists alongside the columns. They are released with the view.
+ */
+public class FlatTree {
+
+    public enum Kind {
+        EMPTY, METHOD, ARGUMENTS, IDENTIFIER, STATEMENTS, ASSIGN, IF, WHILE,
+        READ, WRITE, CONDITION, EXPRESSIONS, INT, CALL, INVALID
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final BinaryOp[] OPERATORS = BinaryOp.values();
+
+    /**
+     * Marks a node with no first child or next sibling.
+     */
+    public static final int NONE = -1;
+
+    private final SymbolTable symbols;
+    private int[] kinds;
+    private int[] children;
+    private int[] siblings;
+    private int[] payloads;
+    private int size;
+
+    private int[] methods;
+    private int methodCount;
+
+    public FlatTree(SymbolTable symbols) {
+        this.symbols = symbols;
+        this.kinds = new int[1024];
+        this.children = new int[1024];
+        this.siblings = new int[1024];
+        this.payloads = new int[1024];
+        this.methods = new int[16];
+    }
+
+    /**
+     * Flattens a whole program.
+     */
+    public static FlatTree of(Program program) {
+        FlatTree tree = new FlatTree(program.symbols);
+        program.methods.methods.forEach(tree::add);
+        tree.trim();
+        return tree;
+    }
+
+    /**
+     * Flattens a method onto the end of the tree. Paired with
+     * {@link func.Parser#program(java.util.function.Consumer)}
+     * the parser only holds the objects of one method at a time.
+     */
+    public void add(Method method) {
+        if (this.methodCount == this.methods.length)
+            this.methods = Arrays.copyOf(this.methods, Math.max(16, this.methodCount * 2));
+        this.methods[this.methodCount++] = new Flattener().method(method);
+    }
+
+    /**
+     * Shrinks the columns to fit once the tree is built.
+     */
+    public void trim() {
+        this.kinds = Arrays.copyOf(this.kinds, this.size);
+        this.children = Arrays.copyOf(this.children, this.size);
+        this.siblings = Arrays.copyOf(this.siblings, this.size);
+        this.payloads = Arrays.copyOf(this.payloads, this.size);
+        this.methods = Arrays.copyOf(this.methods, this.methodCount);
+    }
+
+    public SymbolTable symbols() {
+        return this.symbols;
+    }
+
+    /**
+     * The number of nodes, including empty ones.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public int methodCount() {
+        return this.methodCount;
+    }
+
+    /**
+     * The bytes held by the columns, excluding the symbol table.
+     */
+    public long retainedBytes() {
+        return 4L * (this.kinds.length + this.children.length + this.siblings.length + this.payloads.length + this.methods.length);
+    }
+
+    public Kind kind(int node) {
+        return KINDS[this.kinds[node]];
+    }
+
+    public int firstChild(int node) {
+        return this.children[node];
+    }
+
+    public int nextSibling(int node) {
+        return this.siblings[node];
+    }
+
+    public int payload(int node) {
+        return this.payloads[node];
+    }
+
+    /**
+     * The root node of the i-th method.
+     */
+    public int method(int index) {
+        return this.methods[index];
+    }
+
+    /**
+     * A program whose methods are materialised from the tree the first
+     * time each is read. The view keeps them, so passes that change a
+     * method in place or key on its identity see the same objects, and
+     * they are released along with it; each call gives a fresh view.
+     * The list itself is read-only: passes that add or drop methods
+     * give the program a new one.
+     */
+    public Program program() {
+        Method[] materialised = new Method[this.methodCount];
+        List<Method> methods = new AbstractList<Method>() {
+            @Override
+            public Method get(int index) {
+                if (materialised[index] == null) materialised[index] = materialiseMethod(FlatTree.this.methods[index]);
+                return materialised[index];
+            }
+
+            @Override
+            public int size() {
+                return FlatTree.this.methodCount;
+            }
+        };
+        return new Program(new Methods(methods), this.symbols);
+    }
+
+    private int node(Kind kind, int payload) {
+        if (this.size == this.kinds.length) {
+            int capacity = Math.max(16, this.size * 2);
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.children = Arrays.copyOf(this.children, capacity);
+            this.siblings = Arrays.copyOf(this.siblings, capacity);
+            this.payloads = Arrays.copyOf(this.payloads, capacity);
+        }
+        this.kinds[this.size] = kind.ordinal();
+        this.children[this.size] = NONE;
+        this.siblings[this.size] = NONE;
+        this.payloads[this.size] = payload;
+        return this.size++;
+    }
+
+    /**
+     * Builds nodes in pre-order: each part adds its own node before
+     * its children, and gives back its index. Only methods and what
+     * they contain are flattened, so it takes parts of a method rather
+     * than visiting any node of the tree.
+     */
+    private class Flattener {
+
+        int method(Method method) {
+            return this.link(node(Kind.METHOD, 0), this.identifier(method.id), this.arguments(method.args),
+                this.arguments(method.vars), this.statements(method.statements), this.identifier(method.ret));
+        }
+
+        /**
+         * Chains children, added after their parent, as its children.
+         */
+        private int link(int parent, int... children) {
+            for (int i = 0; i < children.length; i++) {
+                if (i == 0) FlatTree.this.children[parent] = children[i];
+                else FlatTree.this.siblings[children[i - 1]] = children[i];
+            }
+            return parent;
+        }
+
+        private <T> int list(Kind kind, List<T> items, ToIntFunction<T> flatten) {
+            int parent = node(kind, items.size());
+            int previous = NONE;
+            for (T item : items) {
+                int child = flatten.applyAsInt(item);
+                if (previous == NONE) FlatTree.this.children[parent] = child;
+                else FlatTree.this.siblings[previous] = child;
+                previous = child;
+            }
+            return parent;
+        }
+
+        private int empty() {
+            return node(Kind.EMPTY, 0);
+        }
+
+        private int identifier(Identifier identifier) {
+            return identifier == null ? this.empty() : node(Kind.IDENTIFIER, symbols.symbol(identifier));
+        }
+
+        private int arguments(Arguments arguments) {
+            return arguments == null ? this.empty() : this.list(Kind.ARGUMENTS, arguments.identifiers, this::identifier);
+        }
+
+        private int statements(Statements statements) {
+            return statements == null ? this.empty() : this.list(Kind.STATEMENTS, statements.statements, this::statement);
+        }
+
+        private int statement(Statement statement) {
+            if (statement == null) return node(Kind.INVALID, 0);
+            if (statement instanceof Assign) {
+                Assign cmd = (Assign) statement;
+                return this.link(node(Kind.ASSIGN, 0), this.identifier(cmd.id), this.expression(cmd.expression));
+            } else if (statement instanceof If) {
+                If cmd = (If) statement;
+                return this.link(node(Kind.IF, 0), this.condition(cmd.cond), this.statements(cmd.then), this.statements(cmd.otherwise));
+            } else if (statement instanceof While) {
+                While cmd = (While) statement;
+                return this.link(node(Kind.WHILE, 0), this.condition(cmd.cond), this.statements(cmd.statements));
+            } else if (statement instanceof Read) {
+                return this.link(node(Kind.READ, 0), this.identifier(((Read) statement).id));
+            }
+            return this.link(node(Kind.WRITE, 0), this.expression(((Write) statement).exp));
+        }
+
+        private int condition(Condition condition) {
+            if (condition == null) return this.empty();
+            return this.link(node(Kind.CONDITION, condition.bop == null ? NONE : condition.bop.ordinal()), this.expressions(condition.exps));
+        }
+
+        private int expressions(Expressions expressions) {
+            return expressions == null ? this.empty() : this.list(Kind.EXPRESSIONS, expressions.expressions, this::expression);
+        }
+
+        private int expression(Expression expression) {
+            if (expression == null) return this.empty();
+            if (expression instanceof IntExpression) return node(Kind.INT, ((IntExpression) expression).integer);
+            FunctionExpression function = (FunctionExpression) expression;
+            return this.link(node(Kind.CALL, 0), this.identifier(function.id), this.expressions(function.expressions));
+        }
+    }
+
+    private Method materialiseMethod(int node) {
+        int id = this.children[node];
+        int args = this.siblings[id];
+        int vars = this.siblings[args];
+        int statements = this.siblings[vars];
+        int ret = this.siblings[statements];
+        return new Method(
+            this.identifier(id),
+            this.arguments(args),
+            this.arguments(vars),
+            this.statements(statements),
+            this.identifier(ret)
+        );
+    }
+
+    private Identifier identifier(int node) {
+        if (this.kinds[node] == Kind.EMPTY.ordinal()) return null;
+        int symbol = this.payloads[node];
+        return new Identifier(this.symbols.name(symbol), symbol);
+    }
+
+    private Arguments arguments(int node) {
+        if (this.kinds[node] == Kind.EMPTY.ordinal()) return null;
+        List<Identifier> identifiers = new ArrayList<>(this.payloads[node]);
+        for (int child = this.children[node]; child != NONE; child = this.siblings[child]) {
+            identifiers.add(this.identifier(child));
+        }
+        return new Arguments(identifiers);
+    }
+
+    private Statements statements(int node) {
+        if (this.kinds[node] == Kind.EMPTY.ordinal()) return null;
+        List<Statement> statements = new ArrayList<>(this.payloads[node]);
+        for (int child = this.children[node]; child != NONE; child = this.siblings[child]) {
+            statements.add(this.statement(child));
+        }
+        return new Statements(statements);
+    }
+
+    private Statement statement(int node) {
+        int first = this.children[node];
+        switch (KINDS[this.kinds[node]]) {
+            case ASSIGN:
+                return new Assign(this.identifier(first), this.expression(this.siblings[first]));
+            case IF:
+                int then = this.siblings[first];
+                return new If(this.condition(first), this.statements(then), this.statements(this.siblings[then]));
+            case WHILE:
+                return new While(this.condition(first), this.statements(this.siblings[first]));
+            case READ:
+                return new Read(this.identifier(first));
+            case WRITE:
+                return new Write(this.expression(first));
+            default:
+                return null;
+        }
+    }
+
+    private Condition condition(int node) {
+        if (this.kinds[node] == Kind.EMPTY.ordinal()) return null;
+        int operator = this.payloads[node];
+        return new Condition(operator == NONE ? null : OPERATORS[operator], this.expressions(this.children[node]));
+    }
+
+    private Expressions expressions(int node) {
+        if (this.kinds[node] == Kind.EMPTY.ordinal()) return null;
+        List<Expression> expressions = new ArrayList<>(this.payloads[node]);
+        for (int child = this.children[node]; child != NONE; child = this.siblings[child]) {
+            expressions.add(this.expression(child));
+        }
+        return new Expressions(expressions);
+    }
+
+    private Expression expression(int node) {
+        switch (KINDS[this.kinds[node]]) {
+            case INT:
+                return new IntExpression(this.payloads[node]);
+            case CALL:
+                int id = this.children[node];
+                return new FunctionExpression(this.identifier(id), this.expressions(this.siblings[id]));
+            default:
+                return null;
+        }
+    }
+}
@@ -1,15 +1,71 @@
 package func.syntax;
 
 import func.visitors.ASTPrinter;
-import lombok.AllArgsConstructor;
-import lombok.EqualsAndHashCode;
 
-@AllArgsConstructor
-@EqualsAndHashCode(callSuper = false)
+import java.util.Objects;
+
 public class Identifier extends AST {
 
+    public static final int UNRESOLVED = -1;
+
+    /**
+     * The slot and depth of an identifier that has not been bound,
+     * or that doesn't refer to anything.
+     */
+    public static final int UNBOUND = -1;
+
+    /**
+     * The depth of a method's arguments and variables.
+     */
+    public static final int LOCAL = 0;
+
+    /**
+     * The depth of methods and builtins.
+     */
+    public static final int GLOBAL = 1;
+
     public String name;
 
+    /**
+     * The id of this identifier's name in the {@link SymbolTable}
+     * of the program, or {@link #UNRESOLVED} until it is interned.
+     */
+    public int symbol;
+
+    /**
+     * Where this identifier was bound by {@link func.visitors.ResolveBindings}.
+     * Locals are numbered by their position in the method's arguments
+     * and variables, and globals by their symbol.
+     */
+    public int slot = UNBOUND;
+    public int depth = UNBOUND;
+
+    public Identifier(String name, int symbol) {
+        this.name = name;
+        this.symbol = symbol;
+    }
+
+    public Identifier(String name) {
+        this(name, UNRESOLVED);
+    }
+
+    /**
+     * Identifiers are compared by name. Ids are only meaningful
+     * within one table, so lookups that want them key on the id
+     * directly, as {@link SymbolMap} and {@link SymbolSet} do.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Identifier)) return false;
+        return Objects.equals(this.name, ((Identifier) o).name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(this.name);
+    }
+
     @Override
     public String toString() {
         ASTPrinter p = new ASTPrinter();
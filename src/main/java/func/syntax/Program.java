@@ -6,6 +6,11 @@ import lombok.AllArgsConstructor;
 @AllArgsConstructor
 public class Program extends AST {
     public Methods methods;
+    public SymbolTable symbols;
+
+    public Program(Methods methods) {
+        this(methods, new SymbolTable());
+    }
 
     @Override
     public String toString() {
@@ -0,0 +1,48 @@
+package func.syntax;
+
+import java.util.Arrays;
+
+/**
+ * A map from symbol ids to values backed by arrays indexed by id.
+ * Like {@link SymbolSet}, entries are stamped with a generation
+ * so the map can be cleared in constant time.
+ */
+public class SymbolMap<V> {
+
+    private Object[] values;
+    private int[] generations;
+    private int generation;
+
+    public SymbolMap() {
+        this.values = new Object[64];
+        this.generations = new int[64];
+        this.generation = 1;
+    }
+
+    public void put(int symbol, V value) {
+        if (symbol >= this.values.length) {
+            int capacity = Math.max(symbol + 1, this.values.length * 2);
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.generations = Arrays.copyOf(this.generations, capacity);
+        }
+        this.values[symbol] = value;
+        this.generations[symbol] = this.generation;
+    }
+
+    public boolean containsKey(int symbol) {
+        return symbol >= 0 && symbol < this.values.length && this.generations[symbol] == this.generation;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int symbol) {
+        return this.containsKey(symbol) ? (V) this.values[symbol] : null;
+    }
+
+    public void clear() {
+        if (++this.generation == Integer.MAX_VALUE) {
+            Arrays.fill(this.generations, 0);
+            Arrays.fill(this.values, null);
+            this.generation = 1;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package func.syntax;
+
+import java.util.Arrays;
+
+/**
+ * A set of symbol ids backed by an array indexed by id.
+ * <p>
+ * Each slot is stamped with the generation it was added in,
+ * so clearing is constant time and a single set can be reused
+ * for every method without being reallocated.
+ */
+public class SymbolSet {
+
+    private int[] generations;
+    private int generation;
+
+    public SymbolSet() {
+        this.generations = new int[64];
+        this.generation = 1;
+    }
+
+    public void add(int symbol) {
+        if (symbol >= this.generations.length)
+            this.generations = Arrays.copyOf(this.generations, Math.max(symbol + 1, this.generations.length * 2));
+        this.generations[symbol] = this.generation;
+    }
+
+    public boolean contains(int symbol) {
+        return symbol >= 0 && symbol < this.generations.length && this.generations[symbol] == this.generation;
+    }
+
+    public void clear() {
+        if (++this.generation == Integer.MAX_VALUE) {
+            Arrays.fill(this.generations, 0);
+            this.generation = 1;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package func.syntax;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns identifier names to dense integer ids for a single
+ * compilation. Passes compare identifiers by id and keep their
+ * per-symbol state in arrays indexed by it rather than hashing
+ * names over and over.
+ * <p>
+ * The builtins are always interned first so that they have
+ * the same ids in every table.
+ * <p>
+ * Tables may be shared by parsers on several threads. Looking
+ * up a known name takes no lock; only new names are assigned
+ * under one, so ids stay dense but their order then depends
+ * on which thread got there first.
+ */
+public class SymbolTable {
+
+    public static final String[] BUILTINS = {"plus", "minus", "times", "divide"};
+
+    private final Map<String, Integer> ids;
+    private volatile String[] names;
+    private int size;
+
+    public SymbolTable() {
+        this.ids = new ConcurrentHashMap<>();
+        this.names = new String[64];
+        this.size = 0;
+        for (String builtin : BUILTINS) this.intern(builtin);
+    }
+
+    /**
+     * Gets the id of a name, assigning the next free one if it is new.
+     */
+    public int intern(String name) {
+        Integer id = this.ids.get(name);
+        if (id != null) return id;
+        synchronized (this) {
+            id = this.ids.get(name);
+            if (id != null) return id;
+            String[] names = this.names;
+            if (this.size == names.length) names = Arrays.copyOf(names, this.size * 2);
+            names[this.size] = name;
+            this.names = names;
+            this.ids.put(name, this.size);
+            return this.size++;
+        }
+    }
+
+    /**
+     * Creates an identifier for the given name. Identifiers
+     * for the same name share a single copy of the string.
+     */
+    public Identifier identifier(String name) {
+        int symbol = this.intern(name);
+        return new Identifier(this.names[symbol], symbol);
+    }
+
+    /**
+     * Gets the id of an identifier, interning it first if
+     * it was built by hand rather than by the parser.
+     */
+    public int symbol(Identifier identifier) {
+        if (identifier.symbol == Identifier.UNRESOLVED) identifier.symbol = this.intern(identifier.name);
+        return identifier.symbol;
+    }
+
+    public String name(int symbol) {
+        return this.names[symbol];
+    }
+
+    /**
+     * The number of symbols, and so the exclusive upper bound on ids.
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    public static boolean isBuiltin(int symbol) {
+        return symbol >= 0 && symbol < BUILTINS.length;
+    }
+
+    public static List<Identifier> builtins() {
+        List<Identifier> builtins = new ArrayList<>();
+        for (int i = 0; i < BUILTINS.length; i++) builtins.add(new Identifier(BUILTINS[i], i));
+        return builtins;
+    }
+}
@@ -8,39 +8,70 @@ import func.syntax.exp.IntExpression;
 import func.syntax.statement.*;
 import func.syntax.statement.rw.Read;
 import func.syntax.statement.rw.Write;
-import lombok.AllArgsConstructor;
-import lombok.RequiredArgsConstructor;
 
-@AllArgsConstructor
-@RequiredArgsConstructor
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Pretty-prints an AST as func source. By default the text is
+ * collected and given by {@link #toString()}, but it can also be
+ * streamed straight to any {@link Appendable}, such as a Writer,
+ * without ever holding the whole program in memory.
+ */
 public class ASTPrinter implements ASTVisitor<Void> {
 
+    private static final String SPACES = "                                ";
+
     final int indentation = 4;
     private int depth = 0;
-    private StringBuilder builder = new StringBuilder();
+    private final Appendable out;
+
+    public ASTPrinter() {
+        this(new StringBuilder());
+    }
+
+    public ASTPrinter(Appendable out) {
+        this.out = out;
+    }
 
     public String toString() {
-        return builder.toString();
+        return out.toString();
     }
 
-    private StringBuilder indent(Object toAdd) {
-        this.builder.append(new String(new char[this.indentation * this.depth]).replace("\0", " "));
-        this.builder.append(toAdd);
-        return this.builder;
+    private ASTPrinter append(CharSequence text) {
+        try {
+            this.out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    private ASTPrinter indent(CharSequence toAdd) {
+        int spaces = this.indentation * this.depth;
+        try {
+            for (; spaces > SPACES.length(); spaces -= SPACES.length()) this.out.append(SPACES);
+            this.out.append(SPACES, 0, spaces);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this.append(toAdd);
     }
 
     @Override
     public Void visit(Assign assign) {
         indent("");
         visit(assign.id);
-        builder.append(" := ");
+        append(" := ");
         visit(assign.expression);
         return null;
     }
 
     @Override
     public Void visit(If anIf) {
-        indent("if ").append(anIf.cond).append("\n");
+        indent("if ");
+        visit(anIf.cond);
+        append("\n");
         indent("then\n");
         depth += 1;
         visit(anIf.then);
@@ -59,7 +90,7 @@ public class ASTPrinter implements ASTVisitor<Void> {
     public Void visit(While aWhile) {
         indent("while ");
         visit(aWhile.cond);
-        builder.append("\n");
+        append("\n");
         indent("begin\n");
         depth += 1;
         visit(aWhile.statements);
@@ -89,18 +120,18 @@ public class ASTPrinter implements ASTVisitor<Void> {
 
     @Override
     public Void visit(Expressions expressions) {
+        String separator = "";
         for (Expression expression : expressions.expressions) {
+            append(separator);
             visit(expression);
-            builder.append(", ");
+            separator = ", ";
         }
-        if (expressions.expressions.size() > 0)
-            builder.delete(builder.length() - 2, builder.length());
         return null;
     }
 
     @Override
     public Void visit(IntExpression intExpression) {
-        builder.append(intExpression.integer);
+        append(String.valueOf(intExpression.integer));
         return null;
     }
 
@@ -108,9 +139,9 @@ public class ASTPrinter implements ASTVisitor<Void> {
     public Void visit(FunctionExpression functionExpression) {
         visit(functionExpression.id);
         if (functionExpression.expressions != null) {
-            builder.append("(");
+            append("(");
             visit(functionExpression.expressions);
-            builder.append(")");
+            append(")");
         }
         return null;
     }
@@ -119,76 +150,79 @@ public class ASTPrinter implements ASTVisitor<Void> {
     public Void visit(Statements statements) {
         for (Statement statement : statements.statements) {
             if (statement == null)
-                builder.append("<invalid>");
+                append("<invalid>");
             else
                 statement.accept(this);
-            this.builder.append(";\n");
+            this.append(";\n");
         }
         return null;
     }
 
     public Void visit(BinaryOp eq) {
-        builder.append(eq);
+        append(eq.toString());
         return null;
     }
 
     @Override
     public Void visit(Arguments arguments) {
+        String separator = "";
         for (Identifier identifier : arguments.identifiers) {
+            append(separator);
             visit(identifier);
-            builder.append(", ");
+            separator = ", ";
         }
-        builder.delete(builder.length() - 2, builder.length());
         return null;
     }
 
     @Override
     public Void visit(Condition condition) {
         visit(condition.bop);
-        builder.append("(");
+        append("(");
         visit(condition.exps);
-        builder.append(")");
+        append(")");
         return null;
     }
 
     @Override
     public Void visit(Identifier identifier) {
-        builder.append(identifier.name);
+        append(identifier.name);
         return null;
     }
 
     @Override
     public Void visit(Method method) {
-        builder.append("method ");
+        append("method ");
         this.visit(method.id);
-        builder.append("(");
+        append("(");
         if (method.args != null) this.visit(method.args);
-        builder.append(")");
+        append(")");
         if (method.vars != null) {
-            builder.append(" vars ");
+            append(" vars ");
             this.visit(method.vars);
         }
-        builder.append("\n");
-        builder.append("begin\n");
+        append("\n");
+        append("begin\n");
         this.depth += 1;
         this.visit(method.statements);
         if (method.ret != null) {
             indent("return ");
             this.visit(method.ret);
-            builder.append(";\n");
+            append(";\n");
         }
         this.depth -= 1;
-        builder.append("endmethod");
+        append("endmethod");
         return null;
     }
 
     @Override
     public Void visit(Methods methods) {
+        String separator = "";
         for (Method method : methods.methods) {
+            append(separator);
             visit(method);
-            builder.append(";\n\n");
+            append(";\n");
+            separator = "\n";
         }
-        builder.delete(builder.length() - 1, builder.length());
         return null;
     }
 
@@ -10,20 +10,25 @@ import func.syntax.statement.*;
 import func.syntax.statement.rw.Read;
 import func.syntax.statement.rw.Write;
 
-import java.util.*;
-import java.util.stream.Collectors;
-
-import static func.Func.builtins;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
 
 /**
  * Analyses the syntax tree and finds all the places where vars are used before they are assigned to.
  */
 public class AssignmentAnalyser implements ASTVisitor<Boolean> {
 
-    private final List<Identifier> globalScope = new ArrayList<>(builtins);
-    private Set<Identifier> assigned;
+    private SymbolTable symbols = new SymbolTable();
+    private final SymbolSet globalScope = new SymbolSet();
+    private final SymbolSet assigned = new SymbolSet();
     private final List<SemanticError> errors = new LinkedList<>();
 
+    private boolean isAssigned(Identifier identifier) {
+        int symbol = symbols.symbol(identifier);
+        return globalScope.contains(symbol) || assigned.contains(symbol);
+    }
+
     private SemanticError error(String message, AST... nodes) {
         SemanticError e = new SemanticError(message, nodes);
         this.errors.add(e);
@@ -43,7 +48,7 @@ public class AssignmentAnalyser implements ASTVisitor<Boolean> {
             }
         }
         cmd.expression.accept(this);
-        assigned.add(cmd.id);
+        assigned.add(symbols.symbol(cmd.id));
         return errors.isEmpty();
     }
 
@@ -66,7 +71,7 @@ public class AssignmentAnalyser implements ASTVisitor<Boolean> {
 
     @Override
     public Boolean visit(Read cmd) {
-        this.assigned.add(cmd.id);
+        this.assigned.add(symbols.symbol(cmd.id));
         return errors.isEmpty();
     }
 
@@ -91,7 +96,7 @@ public class AssignmentAnalyser implements ASTVisitor<Boolean> {
 
     @Override
     public Boolean visit(FunctionExpression functionExpression) {
-        if (!assigned.contains(functionExpression.id))
+        if (!isAssigned(functionExpression.id))
             error("Identifier used before being assigned", functionExpression.id);
         if (functionExpression.expressions != null)
             functionExpression.expressions.accept(this);
@@ -118,14 +123,14 @@ public class AssignmentAnalyser implements ASTVisitor<Boolean> {
 
     @Override
     public Boolean visit(Identifier identifier) {
-        if (!assigned.contains(identifier)) error("Identifier used before being assigned", identifier);
+        if (!isAssigned(identifier)) error("Identifier used before being assigned", identifier);
         return errors.isEmpty();
     }
 
     @Override
     public Boolean visit(Method method) {
-        this.assigned = new HashSet<>(globalScope);
-        if (method.args != null) assigned.addAll(method.args.identifiers);
+        this.assigned.clear();
+        if (method.args != null) method.args.identifiers.forEach(i -> assigned.add(symbols.symbol(i)));
 
         if (method.statements != null)
             for (Statement s : method.statements.statements) {
@@ -140,12 +145,14 @@ public class AssignmentAnalyser implements ASTVisitor<Boolean> {
 
     @Override
     public Boolean visit(Methods methods) {
-        this.globalScope.addAll(methods.methods.stream().map(method -> method.id).collect(Collectors.toList()));
+        for (int i = 0; i < SymbolTable.BUILTINS.length; i++) this.globalScope.add(i);
+        methods.methods.forEach(method -> this.globalScope.add(symbols.symbol(method.id)));
         return methods.methods.stream().allMatch(m -> m.accept(this));
     }
 
     @Override
     public Boolean visit(Program program) {
+        this.symbols = program.symbols;
         return program.methods.accept(this);
     }
 }
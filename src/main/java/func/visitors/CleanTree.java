@@ -9,14 +9,11 @@ import func.syntax.statement.*;
 import func.syntax.statement.rw.Read;
 import func.syntax.statement.rw.Write;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Map;
-import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
-import static func.Func.builtins;
-
 /**
  * Prunes the syntax tree, removing dead code.
  * <p>
@@ -25,6 +22,9 @@ import static func.Func.builtins;
  * assignments or
  */
 public class CleanTree implements ASTVisitor<AST> {
+
+    private SymbolTable symbols = new SymbolTable();
+
     @Override
     public AST visit(Assign cmd) {
         cmd.expression = (Expression) cmd.expression.accept(this);
@@ -70,28 +70,15 @@ public class CleanTree implements ASTVisitor<AST> {
     @Override
     public Expression visit(FunctionExpression functionExpression) {
         // calculate constants
-        if (functionExpression.expressions != null && builtins.contains(functionExpression.id)) {
+        if (functionExpression.expressions != null && SymbolTable.isBuiltin(symbols.symbol(functionExpression.id))) {
             if (functionExpression.expressions.expressions.stream().anyMatch(x -> !(x instanceof IntExpression)))
                 return functionExpression;
-            BiFunction<Integer, Integer, Integer> op = null;
-            switch (functionExpression.id.name) {
-                case "plus":
-                    op = (x, y) -> x + y;
-                    break;
-                case "minus":
-                    op = (x, y) -> x - y;
-                    break;
-                case "times":
-                    op = (x, y) -> x * y;
-                    break;
-                case "divide":
-                    op = (x, y) -> x * y;
-                    break;
-            }
-            return new IntExpression(op.apply(
+            Integer value = Builtin.of(functionExpression.id.name).apply(
                 ((IntExpression) functionExpression.expressions.expressions.get(0)).integer,
                 ((IntExpression) functionExpression.expressions.expressions.get(1)).integer
-            ));
+            );
+            // division by zero is left for run time
+            return value != null ? new IntExpression(value) : functionExpression;
         }
         return functionExpression;
     }
@@ -130,11 +117,12 @@ public class CleanTree implements ASTVisitor<AST> {
 
     /**
      * Cleans duplicate functions from the tree
-     * and puts the main method first.
+     * and puts the main method first, keeping
+     * the others in the order they are written.
      */
     @Override
     public Methods visit(Methods methods) {
-        Map<String, Method> methodNames = new HashMap<>();
+        Map<String, Method> methodNames = new LinkedHashMap<>();
         Method main = null;
         for (Method m : methods.methods) {
             if (m.id.name.equals("main")) main = m;
@@ -150,6 +138,7 @@ public class CleanTree implements ASTVisitor<AST> {
 
     @Override
     public Program visit(Program program) {
+        this.symbols = program.symbols;
         program.methods = this.visit(program.methods);
         return program;
     }
@@ -0,0 +1,143 @@
+package func.visitors;
+
+import func.syntax.*;
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies a syntax tree, optionally renaming variables on the way.
+ * <p>
+ * Only identifiers that name variables are renamed: the targets of
+ * assignments and reads, variables read in expressions, arguments,
+ * declarations and returns. The names of called methods are kept.
+ */
+public class CopyTree implements ASTVisitor<AST> {
+
+    private final SymbolTable symbols;
+    private final SymbolMap<Identifier> renames;
+
+    public CopyTree(SymbolTable symbols) {
+        this(symbols, new SymbolMap<>());
+    }
+
+    /**
+     * @param renames the new name of each variable, by the symbol of its old one
+     */
+    public CopyTree(SymbolTable symbols, SymbolMap<Identifier> renames) {
+        this.symbols = symbols;
+        this.renames = renames;
+    }
+
+    private Identifier variable(Identifier identifier) {
+        if (identifier == null) return null;
+        Identifier renamed = this.renames.get(this.symbols.symbol(identifier));
+        return renamed != null ? renamed : new Identifier(identifier.name, identifier.symbol);
+    }
+
+    public Expression copy(Expression expression) {
+        return (Expression) expression.accept(this);
+    }
+
+    @Override
+    public Assign visit(Assign cmd) {
+        return new Assign(this.variable(cmd.id), this.copy(cmd.expression));
+    }
+
+    @Override
+    public If visit(If cmd) {
+        return new If(this.visit(cmd.cond), this.visit(cmd.then), cmd.otherwise != null ? this.visit(cmd.otherwise) : null);
+    }
+
+    @Override
+    public While visit(While cmd) {
+        return new While(this.visit(cmd.cond), this.visit(cmd.statements));
+    }
+
+    @Override
+    public Read visit(Read cmd) {
+        return new Read(this.variable(cmd.id));
+    }
+
+    @Override
+    public Write visit(Write cmd) {
+        return new Write(this.copy(cmd.exp));
+    }
+
+    @Override
+    public Expressions visit(Expressions expressions) {
+        List<Expression> copies = new ArrayList<>();
+        for (Expression expression : expressions.expressions) copies.add(this.copy(expression));
+        return new Expressions(copies);
+    }
+
+    @Override
+    public IntExpression visit(IntExpression intExpression) {
+        return new IntExpression(intExpression.integer);
+    }
+
+    @Override
+    public FunctionExpression visit(FunctionExpression functionExpression) {
+        if (functionExpression.expressions == null) return new FunctionExpression(this.variable(functionExpression.id), null);
+        Identifier id = new Identifier(functionExpression.id.name, functionExpression.id.symbol);
+        return new FunctionExpression(id, this.visit(functionExpression.expressions));
+    }
+
+    @Override
+    public Statements visit(Statements statements) {
+        List<Statement> copies = new ArrayList<>();
+        for (Statement statement : statements.statements) copies.add((Statement) statement.accept(this));
+        return new Statements(copies);
+    }
+
+    @Override
+    public Arguments visit(Arguments arguments) {
+        List<Identifier> copies = new ArrayList<>();
+        for (Identifier identifier : arguments.identifiers) copies.add(this.variable(identifier));
+        return new Arguments(copies);
+    }
+
+    @Override
+    public Condition visit(Condition condition) {
+        return new Condition(condition.bop, this.visit(condition.exps));
+    }
+
+    @Override
+    public Identifier visit(Identifier identifier) {
+        return this.variable(identifier);
+    }
+
+    @Override
+    public Method visit(Method method) {
+        return new Method(
+            new Identifier(method.id.name, method.id.symbol),
+            method.args != null ? this.visit(method.args) : null,
+            method.vars != null ? this.visit(method.vars) : null,
+            method.statements != null ? this.visit(method.statements) : null,
+            this.variable(method.ret)
+        );
+    }
+
+    @Override
+    public Methods visit(Methods methods) {
+        List<Method> copies = new ArrayList<>();
+        for (Method method : methods.methods) copies.add(this.visit(method));
+        return new Methods(copies);
+    }
+
+    @Override
+    public Program visit(Program program) {
+        return new Program(this.visit(program.methods), program.symbols);
+    }
+}
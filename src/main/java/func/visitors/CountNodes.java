@@ -0,0 +1,105 @@
+package func.visitors;
+
+import func.syntax.*;
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+/**
+ * Counts the nodes in a syntax tree.
+ */
+public class CountNodes implements ASTVisitor<Integer> {
+
+    private int count(AST node) {
+        return node == null ? 0 : node.accept(this);
+    }
+
+    @Override
+    public Integer visit(Assign cmd) {
+        return 1 + count(cmd.id) + count(cmd.expression);
+    }
+
+    @Override
+    public Integer visit(If cmd) {
+        return 1 + count(cmd.cond) + count(cmd.then) + count(cmd.otherwise);
+    }
+
+    @Override
+    public Integer visit(While cmd) {
+        return 1 + count(cmd.cond) + count(cmd.statements);
+    }
+
+    @Override
+    public Integer visit(Read cmd) {
+        return 1 + count(cmd.id);
+    }
+
+    @Override
+    public Integer visit(Write cmd) {
+        return 1 + count(cmd.exp);
+    }
+
+    @Override
+    public Integer visit(Expressions expressions) {
+        int count = 1;
+        for (Expression expression : expressions.expressions) count += count(expression);
+        return count;
+    }
+
+    @Override
+    public Integer visit(IntExpression intExpression) {
+        return 1;
+    }
+
+    @Override
+    public Integer visit(FunctionExpression functionExpression) {
+        return 1 + count(functionExpression.id) + count(functionExpression.expressions);
+    }
+
+    @Override
+    public Integer visit(Statements statements) {
+        int count = 1;
+        for (Statement statement : statements.statements) count += count(statement);
+        return count;
+    }
+
+    @Override
+    public Integer visit(Arguments arguments) {
+        return 1 + arguments.identifiers.size();
+    }
+
+    @Override
+    public Integer visit(Condition condition) {
+        return 1 + count(condition.exps);
+    }
+
+    @Override
+    public Integer visit(Identifier identifier) {
+        return 1;
+    }
+
+    @Override
+    public Integer visit(Method method) {
+        return 1 + count(method.id) + count(method.args) + count(method.vars) + count(method.statements) + count(method.ret);
+    }
+
+    @Override
+    public Integer visit(Methods methods) {
+        int count = 1;
+        for (Method method : methods.methods) count += count(method);
+        return count;
+    }
+
+    @Override
+    public Integer visit(Program program) {
+        return 1 + count(program.methods);
+    }
+}
@@ -0,0 +1,217 @@
+package func.visitors;
+
+import func.syntax.*;
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Removes assignments whose values are never read, then the
+ * variables that are no longer used at all.
+ * <p>
+ * Liveness is found by walking each method backwards from its
+ * return. An assignment to a dead variable is removed if its value
+ * is pure, which covers stores overwritten before they are read and
+ * builtins whose results go unused. Reads, writes and calls to
+ * methods are left alone, since they may do input or output, as
+ * are loops, which may never end. An if is removed once both its
+ * branches are empty.
+ * <p>
+ * A method's variables are numbered and live sets kept as bit masks,
+ * so methods with more than 64 variables are left as they are.
+ */
+public class EliminateDeadCode implements ASTVisitor<AST> {
+
+    private static final int MAX_VARIABLES = Long.SIZE;
+
+    private SymbolTable symbols = new SymbolTable();
+
+    /**
+     * The index of each of the current method's variables, by symbol.
+     */
+    private final SymbolMap<Integer> indices = new SymbolMap<>();
+
+    /**
+     * The variables live at the current point of the backwards walk.
+     */
+    private long live;
+
+    /**
+     * Whether the walk rewrites the tree, or is only finding
+     * the variables live at the head of a loop.
+     */
+    private boolean rewrite = true;
+
+    private long bit(Identifier identifier) {
+        Integer index = this.indices.get(this.symbols.symbol(identifier));
+        return index != null ? 1L << index : 0;
+    }
+
+    /**
+     * The variables an expression reads.
+     */
+    private long uses(Expression expression) {
+        if (!(expression instanceof FunctionExpression)) return 0;
+        FunctionExpression function = (FunctionExpression) expression;
+        if (function.expressions == null) return this.bit(function.id);
+        long uses = 0;
+        for (Expression argument : function.expressions.expressions) uses |= this.uses(argument);
+        return uses;
+    }
+
+    private long uses(Condition condition) {
+        return this.uses(condition.exps.expressions.get(0)) | this.uses(condition.exps.expressions.get(1));
+    }
+
+    private static boolean isPure(Condition condition) {
+        return condition.exps.expressions.stream().allMatch(Builtin::isPure);
+    }
+
+    @Override
+    public AST visit(Assign cmd) {
+        long def = this.bit(cmd.id);
+        if (def != 0 && (this.live & def) == 0 && Builtin.isPure(cmd.expression)) return null;
+        this.live = this.live & ~def | this.uses(cmd.expression);
+        return cmd;
+    }
+
+    @Override
+    public AST visit(If cmd) {
+        long out = this.live;
+        Statements then = this.visit(cmd.then);
+        long live = this.live;
+        this.live = out;
+        Statements otherwise = cmd.otherwise != null ? this.visit(cmd.otherwise) : null;
+        this.live |= live | this.uses(cmd.cond);
+
+        if (!this.rewrite) return cmd;
+        cmd.then = then;
+        cmd.otherwise = otherwise;
+        boolean empty = then.statements.isEmpty() && (otherwise == null || otherwise.statements.isEmpty());
+        return empty && isPure(cmd.cond) ? null : cmd;
+    }
+
+    @Override
+    public AST visit(While cmd) {
+        boolean rewrite = this.rewrite;
+        this.rewrite = false;
+        long head = this.live | this.uses(cmd.cond);
+        while (true) {
+            this.live = head;
+            this.visit(cmd.statements);
+            long next = head | this.live;
+            if (next == head) break;
+            head = next;
+        }
+        this.rewrite = rewrite;
+
+        this.live = head;
+        if (this.rewrite) cmd.statements = this.visit(cmd.statements);
+        this.live = head;
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Read cmd) {
+        this.live &= ~this.bit(cmd.id);
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Write cmd) {
+        this.live |= this.uses(cmd.exp);
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Expressions expressions) {
+        return expressions;
+    }
+
+    @Override
+    public AST visit(IntExpression intExpression) {
+        return intExpression;
+    }
+
+    @Override
+    public AST visit(FunctionExpression functionExpression) {
+        return functionExpression;
+    }
+
+    /**
+     * Walks a list of statements backwards, dropping the dead ones.
+     */
+    @Override
+    public Statements visit(Statements statements) {
+        List<Statement> kept = new ArrayList<>();
+        for (int i = statements.statements.size() - 1; i >= 0; i--) {
+            AST result = statements.statements.get(i).accept(this);
+            if (result != null) kept.add((Statement) result);
+        }
+        if (!this.rewrite) return statements;
+        Collections.reverse(kept);
+        return new Statements(kept);
+    }
+
+    @Override
+    public AST visit(Arguments arguments) {
+        return arguments;
+    }
+
+    @Override
+    public AST visit(Condition condition) {
+        return condition;
+    }
+
+    @Override
+    public AST visit(Identifier identifier) {
+        return identifier;
+    }
+
+    @Override
+    public Method visit(Method method) {
+        List<Identifier> variables = method.variables();
+        if (variables.size() > MAX_VARIABLES || method.statements == null) return method;
+
+        this.indices.clear();
+        for (int i = 0; i < variables.size(); i++) this.indices.put(this.symbols.symbol(variables.get(i)), i);
+
+        this.rewrite = true;
+        this.live = method.ret != null ? this.bit(method.ret) : 0;
+        method.statements = this.visit(method.statements);
+
+        if (method.vars != null) {
+            long used = method.ret != null ? this.bit(method.ret) : 0;
+            used |= new ExtractIdentifiers().visit(method.statements).stream().mapToLong(this::bit).reduce(0, (a, b) -> a | b);
+            List<Identifier> vars = new ArrayList<>();
+            for (Identifier var : method.vars.identifiers) if ((used & this.bit(var)) != 0) vars.add(var);
+            method.vars = new Arguments(vars);
+        }
+        return method;
+    }
+
+    @Override
+    public Methods visit(Methods methods) {
+        methods.methods.forEach(this::visit);
+        return methods;
+    }
+
+    @Override
+    public Program visit(Program program) {
+        this.symbols = program.symbols;
+        this.visit(program.methods);
+        return program;
+    }
+}
@@ -0,0 +1,123 @@
+package func.visitors;
+
+import func.passes.CallGraph;
+import func.syntax.*;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes the methods that can't be reached from main.
+ * <p>
+ * The methods left are put in reverse postorder of the calls from
+ * main, so main comes first and every other method follows the first
+ * method to call it, close to it, with callees in the order they are
+ * called. The order depends only on the program, not on hashing.
+ */
+public class EliminateDeadMethods implements ASTVisitor<AST> {
+
+    private final CallGraph graph;
+
+    public EliminateDeadMethods() {
+        this(null);
+    }
+
+    /**
+     * @param graph the call graph of the program to be visited,
+     *              or null to build one
+     */
+    public EliminateDeadMethods(CallGraph graph) {
+        this.graph = graph;
+    }
+
+    @Override
+    public AST visit(Assign cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(If cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(While cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Read cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Write cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Expressions expressions) {
+        return expressions;
+    }
+
+    @Override
+    public AST visit(IntExpression intExpression) {
+        return intExpression;
+    }
+
+    @Override
+    public AST visit(FunctionExpression functionExpression) {
+        return functionExpression;
+    }
+
+    @Override
+    public AST visit(Statements statements) {
+        return statements;
+    }
+
+    @Override
+    public AST visit(Arguments arguments) {
+        return arguments;
+    }
+
+    @Override
+    public AST visit(Condition condition) {
+        return condition;
+    }
+
+    @Override
+    public AST visit(Identifier identifier) {
+        return identifier;
+    }
+
+    @Override
+    public AST visit(Method method) {
+        return method;
+    }
+
+    @Override
+    public AST visit(Methods methods) {
+        return methods;
+    }
+
+    @Override
+    public Program visit(Program program) {
+        Method main = program.mainMethod();
+        if (main == null) return program;
+
+        CallGraph graph = this.graph != null ? this.graph : CallGraph.of(program);
+        List<Method> methods = new ArrayList<>();
+        for (int method : graph.reversePostorder(graph.index(main.id))) methods.add(graph.method(method));
+        program.methods.methods = methods;
+        return program;
+    }
+}
@@ -0,0 +1,334 @@
+package func.visitors;
+
+import func.syntax.*;
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns calls a method makes to itself in tail position into loops,
+ * so they run without growing the stack.
+ * <p>
+ * A tail call assigns the method's own result to its return variable
+ * as the last thing the method does, possibly at the end of a branch.
+ * It is replaced by assigning the call's arguments to the parameters
+ * and going round again. A method whose body is a single if with the
+ * tail call ending one branch becomes a while over that branch followed
+ * by the other. Anything else is wrapped in a while on a fresh flag
+ * variable that each tail call sets.
+ * <p>
+ * Arguments that read parameters assigned before them are first saved
+ * to temporaries. If more than one argument may have an effect, such as
+ * a call, every argument is instead evaluated into a temporary in the
+ * order the call gives them, before any parameter is assigned. A method
+ * is left as it is if the flag and temporaries would take it past
+ * {@link ProgramAnalyser#MAX_VARIABLES}.
+ */
+public class EliminateTailCalls implements ASTVisitor<AST> {
+
+    private SymbolTable symbols = new SymbolTable();
+
+    private Method method;
+    private final List<Assign> tails = new ArrayList<>();
+    private final List<Identifier> temporaries = new ArrayList<>();
+    private final SymbolSet names = new SymbolSet();
+
+    private boolean isTailCall(Statement statement) {
+        if (!(statement instanceof Assign)) return false;
+        Assign assign = (Assign) statement;
+        if (this.symbols.symbol(assign.id) != this.symbols.symbol(this.method.ret)) return false;
+        if (!(assign.expression instanceof FunctionExpression)) return false;
+        FunctionExpression call = (FunctionExpression) assign.expression;
+        return call.expressions != null
+            && this.symbols.symbol(call.id) == this.symbols.symbol(this.method.id)
+            && call.expressions.expressions.size() == this.method.args.identifiers.size();
+    }
+
+    /**
+     * Collects the tail calls at the end of some statements.
+     */
+    private void findTails(Statements statements) {
+        if (statements == null || statements.statements.isEmpty()) return;
+        Statement last = statements.statements.get(statements.statements.size() - 1);
+        if (this.isTailCall(last)) this.tails.add((Assign) last);
+        else if (last instanceof If) {
+            this.findTails(((If) last).then);
+            this.findTails(((If) last).otherwise);
+        }
+    }
+
+    private boolean reads(Expression expression, Identifier variable) {
+        int symbol = this.symbols.symbol(variable);
+        return expression.accept(new ExtractIdentifiers()).stream().anyMatch(id -> this.symbols.symbol(id) == symbol);
+    }
+
+    /**
+     * Assigns a tail call's arguments to the parameters as if all at once,
+     * ordering the assignments so each parameter is overwritten after the
+     * last argument that reads it, and saving a parameter to a temporary
+     * where they read each other in a cycle. Arguments are all evaluated
+     * in order into temporaries first when several may have effects.
+     */
+    private List<Statement> assignArguments(FunctionExpression call) {
+        List<Identifier> parameters = new ArrayList<>(this.method.args.identifiers);
+        List<Expression> arguments = new ArrayList<>(call.expressions.expressions);
+        for (int i = parameters.size() - 1; i >= 0; i--) {
+            Expression argument = arguments.get(i);
+            if (argument instanceof FunctionExpression && ((FunctionExpression) argument).expressions == null
+                && this.symbols.symbol(((FunctionExpression) argument).id) == this.symbols.symbol(parameters.get(i))) {
+                parameters.remove(i);
+                arguments.remove(i);
+            }
+        }
+
+        List<Statement> statements = new ArrayList<>();
+        // arguments with effects have to run in the order they are given
+        if (arguments.stream().filter(argument -> !Builtin.isPure(argument)).count() > 1) {
+            for (int i = 0; i < arguments.size(); i++) statements.add(new Assign(this.temporary(i), arguments.get(i)));
+            for (int i = 0; i < parameters.size(); i++) {
+                statements.add(new Assign(parameters.get(i), new FunctionExpression(this.temporary(i), null)));
+            }
+            return statements;
+        }
+
+        int temporaries = 0;
+        while (!parameters.isEmpty()) {
+            int next = -1;
+            for (int i = 0; i < parameters.size() && next == -1; i++) {
+                boolean read = false;
+                for (int j = 0; j < arguments.size() && !read; j++) {
+                    read = j != i && this.reads(arguments.get(j), parameters.get(i));
+                }
+                if (!read) next = i;
+            }
+
+            if (next == -1) {
+                Identifier parameter = parameters.get(0);
+                Identifier temporary = this.temporary(temporaries++);
+                statements.add(new Assign(temporary, new FunctionExpression(parameter, null)));
+                SymbolMap<Identifier> renames = new SymbolMap<>();
+                renames.put(this.symbols.symbol(parameter), temporary);
+                CopyTree copy = new CopyTree(this.symbols, renames);
+                for (int j = 1; j < arguments.size(); j++) arguments.set(j, copy.copy(arguments.get(j)));
+                next = 0;
+            }
+
+            statements.add(new Assign(parameters.remove(next), arguments.remove(next)));
+        }
+        return statements;
+    }
+
+    private Identifier temporary(int index) {
+        if (index < this.temporaries.size()) return this.temporaries.get(index);
+        Identifier temporary = this.fresh(this.method.id.name + "_tmp");
+        this.temporaries.add(temporary);
+        return temporary;
+    }
+
+    private Identifier fresh(String name) {
+        Identifier identifier = this.symbols.identifier(name);
+        for (int i = 2; this.names.contains(this.symbols.symbol(identifier)); i++) {
+            identifier = this.symbols.identifier(name + i);
+        }
+        this.names.add(this.symbols.symbol(identifier));
+        return identifier;
+    }
+
+    /**
+     * Replaces the tail calls in some statements with assignments
+     * to the parameters followed by restart.
+     */
+    private Statements replaceTails(Statements statements, List<Statement> restart) {
+        if (statements == null || statements.statements.isEmpty()) return statements;
+        List<Statement> replaced = new ArrayList<>(statements.statements);
+        Statement last = replaced.remove(replaced.size() - 1);
+        if (this.tails.contains(last)) {
+            replaced.addAll(this.assignArguments((FunctionExpression) ((Assign) last).expression));
+            replaced.addAll(restart);
+        } else if (last instanceof If) {
+            If cmd = (If) last;
+            replaced.add(new If(cmd.cond, this.replaceTails(cmd.then, restart), this.replaceTails(cmd.otherwise, restart)));
+        } else {
+            replaced.add(last);
+        }
+        return new Statements(replaced);
+    }
+
+    /**
+     * The condition that holds when another doesn't, or null
+     * if it can't be negated without reordering side effects.
+     */
+    private static Condition negate(Condition condition) {
+        Expression left = condition.exps.expressions.get(0);
+        Expression right = condition.exps.expressions.get(1);
+        switch (condition.bop) {
+            case Eq:
+                return new Condition(BinaryOp.NEq, condition.exps);
+            case NEq:
+                return new Condition(BinaryOp.Eq, condition.exps);
+            default:
+                if (!Builtin.isPure(left) || !Builtin.isPure(right)) return null;
+                BinaryOp bop = condition.bop == BinaryOp.Less ? BinaryOp.LessEq : BinaryOp.Less;
+                return new Condition(bop, new Expressions(right, left));
+        }
+    }
+
+    /**
+     * Makes a method that is a single if with one branch ending in
+     * a tail call into a loop over that branch, or null if it isn't.
+     */
+    private Statements loopBranch(Statements body) {
+        if (body.statements.size() != 1 || !(body.statements.get(0) instanceof If) || this.tails.size() != 1) return null;
+        If cmd = (If) body.statements.get(0);
+        if (cmd.otherwise == null) return null;
+
+        Statements loop, exit;
+        Condition cond;
+        if (this.isTail(cmd.then)) {
+            loop = cmd.then;
+            exit = cmd.otherwise;
+            cond = cmd.cond;
+        } else if (this.isTail(cmd.otherwise)) {
+            loop = cmd.otherwise;
+            exit = cmd.then;
+            cond = negate(cmd.cond);
+            if (cond == null) return null;
+        } else {
+            return null;
+        }
+
+        List<Statement> statements = new ArrayList<>();
+        statements.add(new While(cond, this.replaceTails(loop, new ArrayList<>())));
+        statements.addAll(exit.statements);
+        return new Statements(statements);
+    }
+
+    private boolean isTail(Statements statements) {
+        return statements.statements.get(statements.statements.size() - 1) == this.tails.get(0);
+    }
+
+    @Override
+    public AST visit(Assign cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(If cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(While cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Read cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Write cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Expressions expressions) {
+        return expressions;
+    }
+
+    @Override
+    public AST visit(IntExpression intExpression) {
+        return intExpression;
+    }
+
+    @Override
+    public AST visit(FunctionExpression functionExpression) {
+        return functionExpression;
+    }
+
+    @Override
+    public AST visit(Statements statements) {
+        return statements;
+    }
+
+    @Override
+    public AST visit(Arguments arguments) {
+        return arguments;
+    }
+
+    @Override
+    public AST visit(Condition condition) {
+        return condition;
+    }
+
+    @Override
+    public AST visit(Identifier identifier) {
+        return identifier;
+    }
+
+    @Override
+    public Method visit(Method method) {
+        if (method.ret == null || method.args == null || method.statements == null) return method;
+        this.method = method;
+        this.tails.clear();
+        this.findTails(method.statements);
+        if (this.tails.isEmpty()) return method;
+
+        this.temporaries.clear();
+        this.names.clear();
+        method.variables().forEach(variable -> this.names.add(this.symbols.symbol(variable)));
+        this.names.add(this.symbols.symbol(method.id));
+
+        Statements body = this.loopBranch(method.statements);
+        Identifier flag = null;
+        if (body == null) {
+            flag = this.fresh(method.id.name + "_loop");
+            List<Statement> restart = new ArrayList<>();
+            restart.add(new Assign(flag, new IntExpression(1)));
+
+            List<Statement> loop = new ArrayList<>();
+            loop.add(new Assign(flag, new IntExpression(0)));
+            loop.addAll(this.replaceTails(method.statements, restart).statements);
+
+            List<Statement> statements = new ArrayList<>();
+            statements.add(new Assign(flag, new IntExpression(1)));
+            Condition cond = new Condition(BinaryOp.Eq, new Expressions(new FunctionExpression(flag, null), new IntExpression(1)));
+            statements.add(new While(cond, new Statements(loop)));
+            body = new Statements(statements);
+        }
+
+        List<Identifier> vars = method.vars != null ? new ArrayList<>(method.vars.identifiers) : new ArrayList<>();
+        if (flag != null) vars.add(flag);
+        vars.addAll(this.temporaries);
+        if (method.args.identifiers.size() + vars.size() > ProgramAnalyser.MAX_VARIABLES) return method;
+
+        method.statements = body;
+        method.vars = new Arguments(vars);
+        return method;
+    }
+
+    @Override
+    public Methods visit(Methods methods) {
+        methods.methods.forEach(this::visit);
+        return methods;
+    }
+
+    @Override
+    public Program visit(Program program) {
+        this.symbols = program.symbols;
+        this.visit(program.methods);
+        return program;
+    }
+}
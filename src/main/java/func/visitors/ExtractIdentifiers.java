@@ -32,7 +32,7 @@ public class ExtractIdentifiers implements ASTVisitor<List<Identifier>> {
         ArrayList<Identifier> list = new ArrayList<>();
         list.addAll(cmd.cond.accept(this));
         list.addAll(cmd.then.accept(this));
-        list.addAll(cmd.otherwise.accept(this));
+        if (cmd.otherwise != null) list.addAll(cmd.otherwise.accept(this));
         return list;
     }
 
@@ -0,0 +1,120 @@
+package func.visitors;
+
+import func.syntax.*;
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.function.Consumer;
+
+/**
+ * Hands every call in a syntax tree, builtins included, to a
+ * consumer, arguments before the call they are passed to.
+ */
+public class FindCalls implements ASTVisitor<Void> {
+
+    private final Consumer<FunctionExpression> consumer;
+
+    public FindCalls(Consumer<FunctionExpression> consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    public Void visit(Assign cmd) {
+        cmd.expression.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(If cmd) {
+        this.visit(cmd.cond);
+        this.visit(cmd.then);
+        if (cmd.otherwise != null) this.visit(cmd.otherwise);
+        return null;
+    }
+
+    @Override
+    public Void visit(While cmd) {
+        this.visit(cmd.cond);
+        this.visit(cmd.statements);
+        return null;
+    }
+
+    @Override
+    public Void visit(Read cmd) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Write cmd) {
+        cmd.exp.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expressions expressions) {
+        for (Expression expression : expressions.expressions) expression.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(IntExpression intExpression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionExpression functionExpression) {
+        if (functionExpression.expressions == null) return null;
+        this.visit(functionExpression.expressions);
+        this.consumer.accept(functionExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(Statements statements) {
+        for (Statement statement : statements.statements) statement.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(Arguments arguments) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Condition condition) {
+        this.visit(condition.exps);
+        return null;
+    }
+
+    @Override
+    public Void visit(Identifier identifier) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Method method) {
+        if (method.statements != null) this.visit(method.statements);
+        return null;
+    }
+
+    @Override
+    public Void visit(Methods methods) {
+        methods.methods.forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Program program) {
+        this.visit(program.methods);
+        return null;
+    }
+}
@@ -0,0 +1,307 @@
+package func.visitors;
+
+import func.syntax.*;
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves builtin calls whose operands don't change in a loop out of it.
+ * <p>
+ * An expression in a while, including in its condition and in loops
+ * nested in it, is invariant if it is pure and reads no variable the
+ * loop assigns or reads into. The largest such expressions that call
+ * a builtin are assigned to temporaries just before the loop and read
+ * from them inside it, with equal expressions sharing a temporary.
+ * Being pure, they can be evaluated even if the loop never runs.
+ * <p>
+ * Outer loops are done first, so each expression is hoisted as far
+ * as it can go, and within a loop the most deeply nested expressions
+ * are hoisted first. A temporary is free again after its loop, so loops
+ * that follow each other reuse them, but hoisting stops once the
+ * method would need more than {@link ProgramAnalyser#MAX_VARIABLES}.
+ */
+public class HoistInvariants implements ASTVisitor<AST> {
+
+    private SymbolTable symbols = new SymbolTable();
+
+    /**
+     * The names that a temporary can't take.
+     */
+    private final List<Identifier> methods = new ArrayList<>();
+    private final SymbolSet names = new SymbolSet();
+
+    /**
+     * The temporaries made so far in the current method,
+     * and how many of them are held by the enclosing loops.
+     */
+    private final List<Identifier> temporaries = new ArrayList<>();
+    private int held;
+    private int budget;
+
+    /**
+     * The variables the current loop assigns, its hoisted expressions
+     * by their printed form, and the assignments that compute them.
+     */
+    private SymbolSet assigned;
+    private Map<String, Identifier> hoisted;
+    private List<Statement> preheader;
+
+    /**
+     * How many loops deep an expression must be to be hoisted, so the
+     * temporaries go first to the expressions evaluated most often.
+     */
+    private int threshold;
+
+    private Identifier temporary() {
+        int index = this.held + this.hoisted.size();
+        if (index < this.temporaries.size()) return this.temporaries.get(index);
+        if (this.temporaries.size() >= this.budget) return null;
+
+        Identifier identifier = this.symbols.identifier("inv");
+        for (int i = 2; this.names.contains(this.symbols.symbol(identifier)); i++) {
+            identifier = this.symbols.identifier("inv" + i);
+        }
+        this.names.add(this.symbols.symbol(identifier));
+        this.temporaries.add(identifier);
+        return identifier;
+    }
+
+    private boolean isInvariant(Expression expression) {
+        if (!(expression instanceof FunctionExpression)) return true;
+        FunctionExpression function = (FunctionExpression) expression;
+        if (function.expressions == null) return !this.assigned.contains(this.symbols.symbol(function.id));
+        return function.expressions.expressions.stream().allMatch(this::isInvariant);
+    }
+
+    /**
+     * An expression with its invariant parts read from temporaries,
+     * if it is nested in at least as many loops as the threshold.
+     */
+    private Expression hoist(Expression expression, int depth) {
+        if (!(expression instanceof FunctionExpression) || depth < this.threshold) return expression;
+        FunctionExpression function = (FunctionExpression) expression;
+        if (function.expressions == null) return expression;
+
+        if (Builtin.of(expression) != null && Builtin.isPure(expression) && this.isInvariant(expression)) {
+            String key = expression.toString();
+            Identifier temporary = this.hoisted.get(key);
+            if (temporary == null && (temporary = this.temporary()) != null) {
+                this.hoisted.put(key, temporary);
+                this.preheader.add(new Assign(temporary, expression));
+            }
+            if (temporary != null) return new FunctionExpression(temporary, null);
+        }
+
+        List<Expression> arguments = new ArrayList<>();
+        for (Expression argument : function.expressions.expressions) arguments.add(this.hoist(argument, depth));
+        return new FunctionExpression(function.id, new Expressions(arguments));
+    }
+
+    private Condition hoist(Condition condition, int depth) {
+        Expression left = this.hoist(condition.exps.expressions.get(0), depth);
+        Expression right = this.hoist(condition.exps.expressions.get(1), depth);
+        return new Condition(condition.bop, new Expressions(left, right));
+    }
+
+    /**
+     * Hoists from a loop's statements, including those of nested loops,
+     * which count for their depth. A loop's condition is as deep as its body.
+     */
+    private Statements hoist(Statements statements, int depth) {
+        List<Statement> hoisted = new ArrayList<>();
+        for (Statement statement : statements.statements) {
+            if (statement instanceof Assign) {
+                Assign assign = (Assign) statement;
+                hoisted.add(new Assign(assign.id, this.hoist(assign.expression, depth)));
+            } else if (statement instanceof Write) {
+                hoisted.add(new Write(this.hoist(((Write) statement).exp, depth)));
+            } else if (statement instanceof If) {
+                If cmd = (If) statement;
+                Statements otherwise = cmd.otherwise != null ? this.hoist(cmd.otherwise, depth) : null;
+                hoisted.add(new If(this.hoist(cmd.cond, depth), this.hoist(cmd.then, depth), otherwise));
+            } else if (statement instanceof While) {
+                While cmd = (While) statement;
+                hoisted.add(new While(this.hoist(cmd.cond, depth + 1), this.hoist(cmd.statements, depth + 1)));
+            } else {
+                hoisted.add(statement);
+            }
+        }
+        return new Statements(hoisted);
+    }
+
+    /**
+     * How many loops deep some statements go.
+     */
+    private static int depth(Statements statements) {
+        int depth = 0;
+        for (Statement statement : statements.statements) {
+            if (statement instanceof If) {
+                If cmd = (If) statement;
+                depth = Math.max(depth, depth(cmd.then));
+                if (cmd.otherwise != null) depth = Math.max(depth, depth(cmd.otherwise));
+            } else if (statement instanceof While) {
+                depth = Math.max(depth, depth(((While) statement).statements) + 1);
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * The variables some statements assign or read into.
+     */
+    private void assigned(Statements statements, SymbolSet assigned) {
+        for (Statement statement : statements.statements) {
+            if (statement instanceof Assign) assigned.add(this.symbols.symbol(((Assign) statement).id));
+            else if (statement instanceof Read) assigned.add(this.symbols.symbol(((Read) statement).id));
+            else if (statement instanceof If) {
+                this.assigned(((If) statement).then, assigned);
+                if (((If) statement).otherwise != null) this.assigned(((If) statement).otherwise, assigned);
+            } else if (statement instanceof While) {
+                this.assigned(((While) statement).statements, assigned);
+            }
+        }
+    }
+
+    @Override
+    public AST visit(Assign cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(If cmd) {
+        cmd.then = this.visit(cmd.then);
+        if (cmd.otherwise != null) cmd.otherwise = this.visit(cmd.otherwise);
+        return cmd;
+    }
+
+    /**
+     * Hoists out of a loop, giving back the loop with the
+     * assignments to its temporaries before it.
+     */
+    @Override
+    public Statements visit(While cmd) {
+        SymbolSet assigned = this.assigned;
+        Map<String, Identifier> hoisted = this.hoisted;
+        List<Statement> preheader = this.preheader;
+
+        this.assigned = new SymbolSet();
+        this.assigned(cmd.statements, this.assigned);
+        this.hoisted = new HashMap<>();
+        this.preheader = new ArrayList<>();
+        While loop = cmd;
+        for (this.threshold = depth(cmd.statements) + 1; this.threshold > 0; this.threshold--) {
+            loop = new While(this.hoist(loop.cond, 1), this.hoist(loop.statements, 1));
+        }
+
+        int held = this.held;
+        this.held += this.hoisted.size();
+        List<Statement> statements = new ArrayList<>(this.preheader);
+        this.assigned = assigned;
+        this.hoisted = hoisted;
+        this.preheader = preheader;
+
+        loop.statements = this.visit(loop.statements);
+        this.held = held;
+        statements.add(loop);
+        return new Statements(statements);
+    }
+
+    @Override
+    public AST visit(Read cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Write cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Expressions expressions) {
+        return expressions;
+    }
+
+    @Override
+    public AST visit(IntExpression intExpression) {
+        return intExpression;
+    }
+
+    @Override
+    public AST visit(FunctionExpression functionExpression) {
+        return functionExpression;
+    }
+
+    @Override
+    public Statements visit(Statements statements) {
+        List<Statement> visited = new ArrayList<>();
+        for (Statement statement : statements.statements) {
+            AST result = statement.accept(this);
+            if (result instanceof Statements) visited.addAll(((Statements) result).statements);
+            else visited.add((Statement) result);
+        }
+        return new Statements(visited);
+    }
+
+    @Override
+    public AST visit(Arguments arguments) {
+        return arguments;
+    }
+
+    @Override
+    public AST visit(Condition condition) {
+        return condition;
+    }
+
+    @Override
+    public AST visit(Identifier identifier) {
+        return identifier;
+    }
+
+    @Override
+    public Method visit(Method method) {
+        if (method.statements == null) return method;
+        List<Identifier> variables = method.variables();
+        this.temporaries.clear();
+        this.held = 0;
+        this.budget = ProgramAnalyser.MAX_VARIABLES - variables.size();
+        this.names.clear();
+        this.methods.forEach(name -> this.names.add(this.symbols.symbol(name)));
+        variables.forEach(variable -> this.names.add(this.symbols.symbol(variable)));
+
+        method.statements = this.visit(method.statements);
+        if (!this.temporaries.isEmpty()) {
+            List<Identifier> vars = method.vars != null ? new ArrayList<>(method.vars.identifiers) : new ArrayList<>();
+            vars.addAll(this.temporaries);
+            method.vars = new Arguments(vars);
+        }
+        return method;
+    }
+
+    @Override
+    public Methods visit(Methods methods) {
+        methods.methods.forEach(this::visit);
+        return methods;
+    }
+
+    @Override
+    public Program visit(Program program) {
+        this.symbols = program.symbols;
+        program.methods.methods.forEach(method -> this.methods.add(method.id));
+        this.visit(program.methods);
+        return program;
+    }
+}
@@ -0,0 +1,271 @@
+package func.visitors;
+
+import func.passes.CallGraph;
+import func.syntax.*;
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Inlines calls to small methods that are not recursive.
+ * <p>
+ * A call is inlined where it is the whole of an assignment or
+ * a write, as in {@code x := f(a, b)}. Its arguments are assigned
+ * to copies of the method's parameters, followed by a copy of the
+ * method's body and an assignment or write of its return variable.
+ * The copied variables are renamed after the method to keep them
+ * apart from the caller's, and are shared by every call to that
+ * method in the caller, since one copy of the body always finishes
+ * before the next starts.
+ * <p>
+ * Calls within inlined bodies are inlined in turn, up to a depth.
+ * A call is left as it is if inlining it would take the caller past
+ * {@link ProgramAnalyser#MAX_VARIABLES}, so every variable still gets
+ * a register. Methods are copied as they were before any inlining,
+ * so the order they are visited in doesn't matter.
+ */
+public class InlineMethods implements ASTVisitor<AST> {
+
+    private final int size;
+    private final int depth;
+
+    private SymbolTable symbols = new SymbolTable();
+    private CallGraph graph;
+    private int[] sizes;
+
+    /**
+     * The method being inlined into and the variables it has gained.
+     */
+    private Method caller;
+    private final SymbolSet names = new SymbolSet();
+    private final List<Identifier> added = new ArrayList<>();
+    private final List<SymbolMap<Identifier>> renames = new ArrayList<>();
+    private int level;
+
+    /**
+     * @param size  the most nodes a method's body may have to be inlined
+     * @param depth how many calls deep to inline
+     */
+    public InlineMethods(int size, int depth) {
+        this(size, depth, null);
+    }
+
+    /**
+     * @param graph the call graph of the program to be visited,
+     *              or null to build one
+     */
+    public InlineMethods(int size, int depth, CallGraph graph) {
+        this.size = size;
+        this.depth = depth;
+        this.graph = graph;
+    }
+
+    /**
+     * The method a call can be inlined from, or -1.
+     */
+    private int inlinable(Expression expression) {
+        if (!(expression instanceof FunctionExpression) || this.level >= this.depth) return -1;
+        FunctionExpression call = (FunctionExpression) expression;
+        if (call.expressions == null) return -1;
+
+        int callee = this.graph.index(call.id);
+        if (callee == -1 || this.graph.isRecursive(callee) || this.sizes[callee] > this.size) return -1;
+        Method method = this.graph.method(callee);
+        int parameters = method.args != null ? method.args.identifiers.size() : 0;
+        if (method.ret == null || method.statements == null || parameters != call.expressions.expressions.size()) return -1;
+        return this.rename(callee) != null ? callee : -1;
+    }
+
+    /**
+     * The caller's names for a method's variables, choosing them the first
+     * time, or null if the caller has no room for them.
+     */
+    private SymbolMap<Identifier> rename(int callee) {
+        while (this.renames.size() <= callee) this.renames.add(null);
+        if (this.renames.get(callee) != null) return this.renames.get(callee);
+
+        Method method = this.graph.method(callee);
+        List<Identifier> variables = method.variables();
+        if (this.caller.variables().size() + this.added.size() + variables.size() > ProgramAnalyser.MAX_VARIABLES) return null;
+
+        SymbolMap<Identifier> renames = new SymbolMap<>();
+        for (Identifier variable : variables) {
+            Identifier renamed = this.fresh(method.id.name + "_" + variable.name);
+            renames.put(this.symbols.symbol(variable), renamed);
+            this.added.add(renamed);
+        }
+        this.renames.set(callee, renames);
+        return renames;
+    }
+
+    /**
+     * A name that is neither one of the caller's variables nor a method.
+     */
+    private Identifier fresh(String name) {
+        Identifier identifier = this.symbols.identifier(name);
+        for (int i = 2; this.names.contains(this.symbols.symbol(identifier)) || this.graph.index(identifier) != -1; i++) {
+            identifier = this.symbols.identifier(name + i);
+        }
+        this.names.add(this.symbols.symbol(identifier));
+        return identifier;
+    }
+
+    /**
+     * Replaces a call with its method's body, handing the value
+     * it returns to the statement made by result.
+     */
+    private Statements inline(int callee, FunctionExpression call, Function<Expression, Statement> result) {
+        Method method = this.graph.method(callee);
+        SymbolMap<Identifier> renames = this.renames.get(callee);
+        CopyTree copy = new CopyTree(this.symbols, renames);
+
+        List<Statement> statements = new ArrayList<>();
+        if (method.args != null) {
+            for (int i = 0; i < method.args.identifiers.size(); i++) {
+                Identifier parameter = renames.get(this.symbols.symbol(method.args.identifiers.get(i)));
+                statements.add(new Assign(parameter, call.expressions.expressions.get(i)));
+            }
+        }
+
+        this.level++;
+        statements.addAll(this.visit(copy.visit(method.statements)).statements);
+        this.level--;
+
+        Identifier ret = renames.get(this.symbols.symbol(method.ret));
+        statements.add(result.apply(new FunctionExpression(ret, null)));
+        return new Statements(statements);
+    }
+
+    @Override
+    public AST visit(Assign cmd) {
+        int callee = this.inlinable(cmd.expression);
+        if (callee == -1) return cmd;
+        return this.inline(callee, (FunctionExpression) cmd.expression, value -> new Assign(cmd.id, value));
+    }
+
+    @Override
+    public AST visit(If cmd) {
+        return new If(cmd.cond, this.visit(cmd.then), cmd.otherwise != null ? this.visit(cmd.otherwise) : null);
+    }
+
+    @Override
+    public AST visit(While cmd) {
+        return new While(cmd.cond, this.visit(cmd.statements));
+    }
+
+    @Override
+    public AST visit(Read cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Write cmd) {
+        int callee = this.inlinable(cmd.exp);
+        if (callee == -1) return cmd;
+        return this.inline(callee, (FunctionExpression) cmd.exp, Write::new);
+    }
+
+    @Override
+    public AST visit(Expressions expressions) {
+        return expressions;
+    }
+
+    @Override
+    public AST visit(IntExpression intExpression) {
+        return intExpression;
+    }
+
+    @Override
+    public AST visit(FunctionExpression functionExpression) {
+        return functionExpression;
+    }
+
+    /**
+     * Walks a list of statements, splicing in inlined bodies.
+     */
+    @Override
+    public Statements visit(Statements statements) {
+        List<Statement> inlined = new ArrayList<>();
+        for (Statement statement : statements.statements) {
+            AST result = statement.accept(this);
+            if (result instanceof Statements) inlined.addAll(((Statements) result).statements);
+            else inlined.add((Statement) result);
+        }
+        return new Statements(inlined);
+    }
+
+    @Override
+    public AST visit(Arguments arguments) {
+        return arguments;
+    }
+
+    @Override
+    public AST visit(Condition condition) {
+        return condition;
+    }
+
+    @Override
+    public AST visit(Identifier identifier) {
+        return identifier;
+    }
+
+    /**
+     * Inlines calls into a method, giving back its new body
+     * without changing the method itself.
+     */
+    @Override
+    public Statements visit(Method method) {
+        this.caller = method;
+        this.names.clear();
+        this.added.clear();
+        this.renames.clear();
+        this.level = 0;
+        method.variables().forEach(variable -> this.names.add(this.symbols.symbol(variable)));
+        return method.statements != null ? this.visit(method.statements) : null;
+    }
+
+    @Override
+    public Methods visit(Methods methods) {
+        List<Statements> bodies = new ArrayList<>();
+        List<List<Identifier>> variables = new ArrayList<>();
+        for (Method method : methods.methods) {
+            bodies.add(this.visit(method));
+            variables.add(new ArrayList<>(this.added));
+        }
+
+        for (int i = 0; i < methods.methods.size(); i++) {
+            Method method = methods.methods.get(i);
+            if (variables.get(i).isEmpty()) continue;
+            method.statements = bodies.get(i);
+            List<Identifier> vars = method.vars != null ? new ArrayList<>(method.vars.identifiers) : new ArrayList<>();
+            vars.addAll(variables.get(i));
+            method.vars = new Arguments(vars);
+        }
+        return methods;
+    }
+
+    @Override
+    public Program visit(Program program) {
+        this.symbols = program.symbols;
+        if (this.graph == null) this.graph = CallGraph.of(program);
+        this.sizes = new int[this.graph.size()];
+        for (int i = 0; i < this.graph.size(); i++) {
+            Statements statements = this.graph.method(i).statements;
+            this.sizes[i] = statements != null ? new CountNodes().visit(statements) : 0;
+        }
+        this.visit(program.methods);
+        return program;
+    }
+}
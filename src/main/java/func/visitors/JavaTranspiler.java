@@ -165,7 +165,7 @@ public class JavaTranspiler implements ASTVisitor<String> {
         context.put("type", method.args != null ? "Integer" : "void");
         context.put("name", visit(method.id));
         context.put("args", method.args != null ? visit(method.args) : "");
-        context.put("vars", method.vars.identifiers.stream().map(x -> "Integer " + x + ";").collect(Collectors.joining("\n")));
+        context.put("vars", method.vars.identifiers.stream().map(x -> "Integer " + x + " = 0;").collect(Collectors.joining("\n")));
         context.put("statements", visit(method.statements));
         context.put("ret", method.ret != null ? "return " + visit(method.ret) + ";" : "");
         try {
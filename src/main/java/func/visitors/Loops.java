@@ -0,0 +1,67 @@
+package func.visitors;
+
+import func.syntax.Builtin;
+import func.syntax.SymbolTable;
+import func.syntax.exp.Expression;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the variables that loops step by a constant, for the passes
+ * that work out what a loop does with them.
+ */
+final class Loops {
+
+    private Loops() {
+    }
+
+    /**
+     * The step of a statement that moves a variable by a constant, or null.
+     */
+    static Integer step(SymbolTable symbols, Statement statement, int symbol) {
+        if (!(statement instanceof Assign) || symbols.symbol(((Assign) statement).id) != symbol) return null;
+        Expression expression = ((Assign) statement).expression;
+        Builtin builtin = Builtin.of(expression);
+        if (builtin != Builtin.PLUS && builtin != Builtin.MINUS) return null;
+
+        List<Expression> operands = ((FunctionExpression) expression).expressions.expressions;
+        for (int i = 0; i < 2; i++) {
+            if (builtin == Builtin.MINUS && i == 1) break;
+            if (isVariable(symbols, operands.get(i), symbol) && operands.get(1 - i) instanceof IntExpression) {
+                int step = ((IntExpression) operands.get(1 - i)).integer;
+                return builtin == Builtin.PLUS ? step : -step;
+            }
+        }
+        return null;
+    }
+
+    static boolean isVariable(SymbolTable symbols, Expression expression, int symbol) {
+        return expression instanceof FunctionExpression && ((FunctionExpression) expression).expressions == null
+            && symbols.symbol(((FunctionExpression) expression).id) == symbol;
+    }
+
+    /**
+     * Counts the assignments and reads into each variable.
+     */
+    static void count(SymbolTable symbols, Statements statements, Map<Integer, Integer> assignments) {
+        for (Statement statement : statements.statements) {
+            if (statement instanceof Assign) assignments.merge(symbols.symbol(((Assign) statement).id), 1, Integer::sum);
+            else if (statement instanceof Read) assignments.merge(symbols.symbol(((Read) statement).id), 1, Integer::sum);
+            else if (statement instanceof If) {
+                count(symbols, ((If) statement).then, assignments);
+                if (((If) statement).otherwise != null) count(symbols, ((If) statement).otherwise, assignments);
+            } else if (statement instanceof While) {
+                count(symbols, ((While) statement).statements, assignments);
+            }
+        }
+    }
+}
@@ -3,8 +3,9 @@ package func.visitors;
 import com.github.jknack.handlebars.Handlebars;
 import com.github.jknack.handlebars.Template;
 import com.github.jknack.handlebars.io.ClassPathTemplateLoader;
-import func.Frame;
 import func.errors.SemanticError;
+import func.ir.Peephole;
+import func.ir.StrengthReduction;
 import func.syntax.*;
 import func.syntax.exp.Expression;
 import func.syntax.exp.Expressions;
@@ -19,11 +20,16 @@ import func.syntax.statement.rw.Write;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 
-import static func.Func.builtins;
-
+/**
+ * Compiles the syntax tree to MIPS assembly. Each of a method's
+ * arguments and variables lives in the callee saved register
+ * matching the slot {@link ResolveBindings} gave it.
+ */
 public class MIPSCompiler implements ASTVisitor<Void> {
 
     private final List<SemanticError> errors = new LinkedList<>();
@@ -88,11 +94,18 @@ public class MIPSCompiler implements ASTVisitor<Void> {
     private int registerDestination;
 
     private int labelCounter;
-    private Frame frame;
     private StringBuilder builder;
 
+    /**
+     * A peephole optimiser for the output. Only the EVAL registers are
+     * known to hold nothing across labels, as an expression being
+     * evaluated may keep them and the argument registers over a call.
+     */
+    public static Peephole peephole() {
+        return new Peephole(new HashSet<>(Arrays.asList(Registers.EVAL)), Collections.emptySet(), Peephole.rules());
+    }
+
     public MIPSCompiler() {
-        this.frame = new Frame(Registers.get(Registers.CALLEE[0]));
         this.labelCounter = 0;
         this.builder = new StringBuilder();
     }
@@ -121,10 +134,21 @@ public class MIPSCompiler implements ASTVisitor<Void> {
         builder.append("\taddi $sp, $sp, 4\n"); // increment it by a word
     }
 
+    /**
+     * The register holding a local variable.
+     */
+    private static int register(Identifier variable) {
+        return Registers.get(Registers.CALLEE[0]) + variable.slot;
+    }
+
+    private static boolean isLocal(Identifier identifier) {
+        return identifier.depth == Identifier.LOCAL;
+    }
+
     @Override
     public Void visit(Assign cmd) {
-        if (!frame.exists(cmd.id)) error("Assigned variable not present in stack", cmd.id);
-        registerDestination = frame.find(cmd.id);
+        if (!isLocal(cmd.id)) error("Assigned variable not present in stack", cmd.id);
+        registerDestination = register(cmd.id);
         cmd.expression.accept(this);
         return null;
     }
@@ -162,7 +186,7 @@ public class MIPSCompiler implements ASTVisitor<Void> {
 
     @Override
     public Void visit(Read cmd) {
-        if (!frame.exists(cmd.id))
+        if (!isLocal(cmd.id))
             error("Variable to be read does not exist.");
 
         // print the input prompt
@@ -172,7 +196,7 @@ public class MIPSCompiler implements ASTVisitor<Void> {
         // read the input
         builder.append("\tli $v0, ").append(SysCalls.READ_INT).append("\n");
         builder.append("\tsyscall\n");
-        builder.append("\tmove ").append(Registers.fromNumber(frame.find(cmd.id))).append(",").append("$v0").append("\n");
+        builder.append("\tmove ").append(Registers.fromNumber(register(cmd.id))).append(",").append("$v0").append("\n");
         return null;
     }
 
@@ -207,10 +231,10 @@ public class MIPSCompiler implements ASTVisitor<Void> {
     @Override
     public Void visit(FunctionExpression functionExpression) {
         if (functionExpression.expressions != null) {
-            if (builtins.contains(functionExpression.id)) handleBuiltin(functionExpression);
+            if (SymbolTable.isBuiltin(functionExpression.id.slot)) handleBuiltin(functionExpression);
             else handleFunction(functionExpression);
         } else {
-            builder.append("\tmove ").append(Registers.fromNumber(registerDestination)).append(", ").append(Registers.fromNumber(frame.find(functionExpression.id))).append("\n");
+            builder.append("\tmove ").append(Registers.fromNumber(registerDestination)).append(", ").append(Registers.fromNumber(register(functionExpression.id))).append("\n");
         }
         return null;
     }
@@ -229,6 +253,8 @@ public class MIPSCompiler implements ASTVisitor<Void> {
     }
 
     private void handleBuiltin(FunctionExpression functionExpression) {
+        if (handleConstantBuiltin(functionExpression)) return;
+
         String command = null;
         int originalDest = registerDestination;
 
@@ -260,6 +286,35 @@ public class MIPSCompiler implements ASTVisitor<Void> {
             .append("\n");
     }
 
+    /**
+     * Multiplies or divides by a constant without mult or div where
+     * {@link StrengthReduction} has a shorter sequence. The other operand
+     * is evaluated into the destination's own eval register, if it is one,
+     * so the sequence only needs the other as scratch.
+     */
+    private boolean handleConstantBuiltin(FunctionExpression functionExpression) {
+        Builtin builtin = Builtin.of(functionExpression);
+        List<Expression> operands = functionExpression.expressions.expressions;
+        int constant = operands.get(1) instanceof IntExpression ? 1 : builtin == Builtin.TIMES && operands.get(0) instanceof IntExpression ? 0 : -1;
+        if (constant == -1 || (builtin != Builtin.TIMES && builtin != Builtin.DIVIDE)) return false;
+
+        int c = ((IntExpression) operands.get(constant)).integer;
+        String dest = Registers.fromNumber(registerDestination);
+        String x = dest.equals(Registers.EVAL[1]) ? Registers.EVAL[1] : Registers.EVAL[0];
+        String scratch = x.equals(Registers.EVAL[0]) ? Registers.EVAL[1] : Registers.EVAL[0];
+        List<String> code = builtin == Builtin.TIMES
+            ? StrengthReduction.times(dest, x, c, scratch)
+            : StrengthReduction.divide(dest, x, c, scratch);
+        if (code == null) return false;
+
+        int originalDest = registerDestination;
+        registerDestination = Registers.get(x);
+        operands.get(1 - constant).accept(this);
+        registerDestination = originalDest;
+        code.forEach(line -> builder.append("\t").append(line).append("\n"));
+        return true;
+    }
+
     @Override
     public Void visit(Statements statements) {
         statements.statements.forEach(x -> x.accept(this));
@@ -311,10 +366,6 @@ public class MIPSCompiler implements ASTVisitor<Void> {
         builder.append(method.id.name).append(":\n");
         int registers = method.variables().size();
 
-        // create a new frame and add the registers
-        frame = frame.push();
-        method.variables().forEach(frame::register);
-
         // store previous s-registers
         if (!method.id.name.equals("main")) {
             builder.append("\t# function ").append(method.id.name).append(" load\n");
@@ -333,8 +384,7 @@ public class MIPSCompiler implements ASTVisitor<Void> {
         this.visit(method.statements);
 
         if (method.ret != null) {
-            int register = frame.find(method.ret);
-            builder.append("\tmove ").append(Registers.RETURN[0]).append(", ").append(Registers.fromNumber(register)).append("\n");
+            builder.append("\tmove ").append(Registers.RETURN[0]).append(", ").append(Registers.fromNumber(register(method.ret))).append("\n");
         }
 
         // load previous s-registers
@@ -352,7 +402,6 @@ public class MIPSCompiler implements ASTVisitor<Void> {
         } else {
             builder.append("\tjr $ra\n");
         }
-        frame = frame.pop();
         return null;
     }
 
@@ -364,6 +413,8 @@ public class MIPSCompiler implements ASTVisitor<Void> {
 
     @Override
     public Void visit(Program program) {
+        // bind here rather than trust slots left by an earlier pass, which may have rewritten the tree since
+        program.accept(new ResolveBindings());
         program.methods.accept(this);
         Handlebars handlebars = new Handlebars(new ClassPathTemplateLoader("/asm", ".asm"));
         try {
@@ -0,0 +1,396 @@
+package func.visitors;
+
+import func.syntax.*;
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reuses the results of builtin calls computed earlier, by value numbering.
+ * <p>
+ * Each variable, constant and builtin call is given a number standing for
+ * its value, so that calls on operands with the same values get the same
+ * number. Copying a variable copies its number, and assigning a call to a
+ * method or reading into a variable gives it a new one, since nothing is
+ * known of the value. Methods can't see their callers' variables, so a call
+ * changes no other variable.
+ * <p>
+ * A call whose value a variable still holds is replaced by that variable.
+ * A value that was computed but not stored, say in a write or a condition,
+ * is saved to a temporary just before the statement that computed it, as
+ * long as the method stays within {@link ProgramAnalyser#MAX_VARIABLES}.
+ * <p>
+ * Numbers flow forwards through each method. Both branches of an if start
+ * from the numbers after its condition, and a loop starts from the numbers
+ * before it with the variables it assigns made unknown, so values computed
+ * before either can be reused within, but not those computed inside after.
+ */
+public class NumberValues implements ASTVisitor<AST> {
+
+    /**
+     * Where a value was computed without being stored.
+     */
+    private static class Site {
+        final Statement statement;
+        final Expression expression;
+        final Consumer<Expression> replace;
+
+        Site(Statement statement, Expression expression, Consumer<Expression> replace) {
+            this.statement = statement;
+            this.expression = expression;
+            this.replace = replace;
+        }
+    }
+
+    /**
+     * The numbers at a point in a method.
+     */
+    private static class Values {
+        final Map<Integer, Integer> variables;
+        final Map<Integer, List<Identifier>> holders;
+        final Map<Integer, Site> sites;
+
+        Values() {
+            this.variables = new HashMap<>();
+            this.holders = new HashMap<>();
+            this.sites = new HashMap<>();
+        }
+
+        Values(Values values) {
+            this.variables = new HashMap<>(values.variables);
+            this.holders = new HashMap<>();
+            values.holders.forEach((value, holders) -> this.holders.put(value, new ArrayList<>(holders)));
+            this.sites = new HashMap<>(values.sites);
+        }
+    }
+
+    private SymbolTable symbols = new SymbolTable();
+    private final List<Identifier> methods = new ArrayList<>();
+    private final SymbolSet names = new SymbolSet();
+
+    /**
+     * The number of each builtin call on numbered operands, and of each constant.
+     */
+    private final Map<String, Integer> table = new HashMap<>();
+    private int next;
+
+    private Values values = new Values();
+    private Statement statement;
+    private final List<Integer> recorded = new ArrayList<>();
+    private final Map<Statement, List<Statement>> before = new IdentityHashMap<>();
+    private final Map<Site, Identifier> saved = new IdentityHashMap<>();
+    private final List<Identifier> temporaries = new ArrayList<>();
+    private int budget;
+
+    private int number(String key) {
+        return this.table.computeIfAbsent(key, k -> this.next++);
+    }
+
+    /**
+     * Gives a variable a value, or a new one if value is null.
+     */
+    private void assign(Identifier variable, Integer value) {
+        int symbol = this.symbols.symbol(variable);
+        Integer old = this.values.variables.get(symbol);
+        if (old != null) this.values.holders.get(old).removeIf(holder -> this.symbols.symbol(holder) == symbol);
+        if (value == null) value = this.next++;
+        this.values.variables.put(symbol, value);
+        this.values.holders.computeIfAbsent(value, v -> new ArrayList<>()).add(variable);
+    }
+
+    private Identifier holder(int value) {
+        List<Identifier> holders = this.values.holders.get(value);
+        return holders != null && !holders.isEmpty() ? holders.get(0) : null;
+    }
+
+    private Identifier temporary() {
+        if (this.temporaries.size() >= this.budget) return null;
+        Identifier identifier = this.symbols.identifier("cse");
+        for (int i = 2; this.names.contains(this.symbols.symbol(identifier)); i++) {
+            identifier = this.symbols.identifier("cse" + i);
+        }
+        this.names.add(this.symbols.symbol(identifier));
+        this.temporaries.add(identifier);
+        return identifier;
+    }
+
+    /**
+     * The value of an expression, or null if it calls a method.
+     */
+    private Integer value(Expression expression) {
+        if (expression instanceof IntExpression) return this.number("#" + ((IntExpression) expression).integer);
+        FunctionExpression function = (FunctionExpression) expression;
+        if (function.expressions == null) {
+            int symbol = this.symbols.symbol(function.id);
+            if (!this.values.variables.containsKey(symbol)) this.assign(function.id, null);
+            return this.values.variables.get(symbol);
+        }
+
+        Builtin builtin = Builtin.of(expression);
+        if (builtin == null) return null;
+        Integer left = this.value(function.expressions.expressions.get(0));
+        Integer right = this.value(function.expressions.expressions.get(1));
+        if (left == null || right == null) return null;
+        if ((builtin == Builtin.PLUS || builtin == Builtin.TIMES) && left > right) {
+            Integer swap = left;
+            left = right;
+            right = swap;
+        }
+        return this.number(builtin + "(" + left + ", " + right + ")");
+    }
+
+    /**
+     * Numbers an expression, replacing the largest builtin calls whose
+     * values are held by a variable or can be saved where they were
+     * computed, and noting where the others are computed.
+     */
+    private Integer number(Expression expression, Consumer<Expression> replace) {
+        Integer value = this.value(expression);
+        if (Builtin.of(expression) == null || value == null) {
+            this.replace(expression);
+            return value;
+        }
+
+        Identifier holder = this.holder(value);
+        Site site = this.values.sites.get(value);
+        if (holder == null && site != null) holder = this.save(site);
+        if (holder != null) {
+            replace.accept(new FunctionExpression(holder, null));
+            return value;
+        }
+
+        this.replace(expression);
+        if (this.statement != null && Builtin.isPure(expression)) {
+            this.values.sites.put(value, new Site(this.statement, expression, replace));
+            this.recorded.add(value);
+        }
+        return value;
+    }
+
+    /**
+     * Numbers the arguments of a call.
+     */
+    private void replace(Expression expression) {
+        if (!(expression instanceof FunctionExpression) || ((FunctionExpression) expression).expressions == null) return;
+        List<Expression> arguments = ((FunctionExpression) expression).expressions.expressions;
+        for (int i = 0; i < arguments.size(); i++) {
+            int index = i;
+            this.number(arguments.get(i), argument -> arguments.set(index, argument));
+        }
+    }
+
+    /**
+     * The temporary a value is saved to where it was computed,
+     * saving it the first time.
+     */
+    private Identifier save(Site site) {
+        Identifier temporary = this.saved.get(site);
+        if (temporary != null) return temporary;
+        if ((temporary = this.temporary()) == null) return null;
+
+        this.before.computeIfAbsent(site.statement, s -> new ArrayList<>())
+            .add(new Assign(temporary, new CopyTree(this.symbols).copy(site.expression)));
+        site.replace.accept(new FunctionExpression(temporary, null));
+        this.saved.put(site, temporary);
+        return temporary;
+    }
+
+    /**
+     * Numbers an expression computed by a statement, where values
+     * not stored can be saved if the statement is given.
+     */
+    private Integer number(Statement statement, Expression expression, Consumer<Expression> replace) {
+        this.statement = statement;
+        this.recorded.clear();
+        Integer value = this.number(expression, replace);
+        this.statement = null;
+        return value;
+    }
+
+    private void number(Statement statement, Condition condition) {
+        List<Expression> operands = condition.exps.expressions;
+        this.number(statement, operands.get(0), operand -> operands.set(0, operand));
+        this.number(statement, operands.get(1), operand -> operands.set(1, operand));
+    }
+
+    /**
+     * Makes the values of the variables some statements assign unknown.
+     */
+    private void forget(Statements statements) {
+        for (Statement statement : statements.statements) {
+            if (statement instanceof Assign) this.assign(((Assign) statement).id, null);
+            else if (statement instanceof Read) this.assign(((Read) statement).id, null);
+            else if (statement instanceof If) {
+                this.forget(((If) statement).then);
+                if (((If) statement).otherwise != null) this.forget(((If) statement).otherwise);
+            } else if (statement instanceof While) {
+                this.forget(((While) statement).statements);
+            }
+        }
+    }
+
+    /**
+     * Puts the saved values before the statements that compute them.
+     */
+    private Statements splice(Statements statements) {
+        List<Statement> spliced = new ArrayList<>();
+        for (Statement statement : statements.statements) {
+            spliced.addAll(this.before.getOrDefault(statement, new ArrayList<>()));
+            if (statement instanceof If) {
+                If cmd = (If) statement;
+                cmd.then = this.splice(cmd.then);
+                if (cmd.otherwise != null) cmd.otherwise = this.splice(cmd.otherwise);
+            } else if (statement instanceof While) {
+                ((While) statement).statements = this.splice(((While) statement).statements);
+            }
+            spliced.add(statement);
+        }
+        return new Statements(spliced);
+    }
+
+    @Override
+    public AST visit(Assign cmd) {
+        Integer value = this.number(cmd, cmd.expression, expression -> cmd.expression = expression);
+        Integer old = this.values.variables.get(this.symbols.symbol(cmd.id));
+        if (value != null && value.equals(old) && !this.before.containsKey(cmd)) {
+            this.recorded.forEach(this.values.sites::remove);
+            return null;
+        }
+        this.assign(cmd.id, value);
+        return cmd;
+    }
+
+    @Override
+    public AST visit(If cmd) {
+        this.number(cmd, cmd.cond);
+        Values values = this.values;
+        this.values = new Values(values);
+        cmd.then = this.visit(cmd.then);
+        if (cmd.otherwise != null) {
+            this.values = new Values(values);
+            cmd.otherwise = this.visit(cmd.otherwise);
+        }
+
+        this.values = values;
+        this.forget(cmd.then);
+        if (cmd.otherwise != null) this.forget(cmd.otherwise);
+        return cmd;
+    }
+
+    @Override
+    public AST visit(While cmd) {
+        this.forget(cmd.statements);
+        this.number(null, cmd.cond);
+        Values values = this.values;
+        this.values = new Values(values);
+        cmd.statements = this.visit(cmd.statements);
+        this.values = values;
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Read cmd) {
+        this.assign(cmd.id, null);
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Write cmd) {
+        this.number(cmd, cmd.exp, expression -> cmd.exp = expression);
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Expressions expressions) {
+        return expressions;
+    }
+
+    @Override
+    public AST visit(IntExpression intExpression) {
+        return intExpression;
+    }
+
+    @Override
+    public AST visit(FunctionExpression functionExpression) {
+        return functionExpression;
+    }
+
+    @Override
+    public Statements visit(Statements statements) {
+        List<Statement> kept = new ArrayList<>();
+        for (Statement statement : statements.statements) {
+            AST result = statement.accept(this);
+            if (result != null) kept.add((Statement) result);
+        }
+        return new Statements(kept);
+    }
+
+    @Override
+    public AST visit(Arguments arguments) {
+        return arguments;
+    }
+
+    @Override
+    public AST visit(Condition condition) {
+        return condition;
+    }
+
+    @Override
+    public AST visit(Identifier identifier) {
+        return identifier;
+    }
+
+    @Override
+    public Method visit(Method method) {
+        if (method.statements == null) return method;
+        List<Identifier> variables = method.variables();
+        this.values = new Values();
+        this.before.clear();
+        this.saved.clear();
+        this.temporaries.clear();
+        this.budget = ProgramAnalyser.MAX_VARIABLES - variables.size();
+        this.names.clear();
+        this.methods.forEach(name -> this.names.add(this.symbols.symbol(name)));
+        for (Identifier variable : variables) {
+            this.names.add(this.symbols.symbol(variable));
+            this.assign(variable, null);
+        }
+
+        method.statements = this.splice(this.visit(method.statements));
+        if (!this.temporaries.isEmpty()) {
+            List<Identifier> vars = method.vars != null ? new ArrayList<>(method.vars.identifiers) : new ArrayList<>();
+            vars.addAll(this.temporaries);
+            method.vars = new Arguments(vars);
+        }
+        return method;
+    }
+
+    @Override
+    public Methods visit(Methods methods) {
+        methods.methods.forEach(this::visit);
+        return methods;
+    }
+
+    @Override
+    public Program visit(Program program) {
+        this.symbols = program.symbols;
+        program.methods.methods.forEach(method -> this.methods.add(method.id));
+        this.visit(program.methods);
+        return program;
+    }
+}
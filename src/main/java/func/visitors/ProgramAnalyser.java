@@ -0,0 +1,501 @@
+package func.visitors;
+
+import func.errors.SemanticError;
+import func.syntax.*;
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs the checks of the {@link SemanticAnalyser}, {@link AssignmentAnalyser}
+ * and {@link TypeChecker} in a single walk over each method, sharing one set
+ * of per-method symbol tables between them.
+ * <p>
+ * The diagnostics are the same as running the three one after the other,
+ * down to their order: the semantic checks stop at the first method with
+ * an error, as do the assignment checks, and only the first while loop
+ * whose condition is never updated is reported. Unlike the separate passes,
+ * an if without an else is not a crash.
+ * <p>
+ * Given a {@link ForkJoinPool}, methods are checked concurrently once the
+ * globals are known. Each task walks its methods with an analyser of its
+ * own, sharing only the read-only globals, and always runs every check.
+ * The per-method errors are then merged in source order, dropping those
+ * a sequential walk would have stopped short of, so the diagnostics are
+ * the same either way.
+ */
+public class ProgramAnalyser implements ASTVisitor<Void> {
+
+    /**
+     * The most arguments a method can take, one per argument register.
+     */
+    public static final int MAX_ARGUMENTS = 4;
+
+    /**
+     * The most arguments and variables a method can have between them.
+     * Passes that add variables must keep within it.
+     */
+    public static final int MAX_VARIABLES = 7;
+
+    /**
+     * The fewest methods worth handing to a task of their own.
+     */
+    private static final int MIN_METHODS = 64;
+
+    private final ForkJoinPool pool;
+    private SymbolTable symbols = new SymbolTable();
+
+    private final List<SemanticError> semanticErrors = new LinkedList<>();
+    private final List<SemanticError> assignmentErrors = new LinkedList<>();
+    private final List<SemanticError> typeErrors = new LinkedList<>();
+
+    /**
+     * The builtins and methods, for scope and assignment checks.
+     */
+    private final SymbolSet globalScope;
+
+    /**
+     * What each global refers to, for type checks.
+     */
+    private final SymbolMap<AST> globals;
+
+    private Method method;
+    private boolean checkScope;
+    private boolean checkAssignment;
+    private final SymbolSet declared = new SymbolSet();
+    private final SymbolSet used = new SymbolSet();
+    private final SymbolSet assigned = new SymbolSet();
+    private final SymbolMap<AST> locals = new SymbolMap<>();
+
+    /**
+     * How deep in if and while bodies the walk is; the loop
+     * condition check only looks at top level loops.
+     */
+    private int depth;
+    private List<Identifier> condition;
+    private While unupdatedLoop;
+    private int unupdatedLoopIndex;
+
+    public ProgramAnalyser() {
+        this((ForkJoinPool) null);
+    }
+
+    /**
+     * Creates an analyser that checks methods on the given pool,
+     * or one after the other if it is null.
+     */
+    public ProgramAnalyser(ForkJoinPool pool) {
+        this.pool = pool;
+        this.globalScope = new SymbolSet();
+        this.globals = new SymbolMap<>();
+    }
+
+    /**
+     * Creates an analyser for a task, sharing the globals of its parent.
+     */
+    private ProgramAnalyser(ProgramAnalyser parent) {
+        this.pool = null;
+        this.symbols = parent.symbols;
+        this.globalScope = parent.globalScope;
+        this.globals = parent.globals;
+    }
+
+    public List<SemanticError> getSemanticErrors() {
+        return Collections.unmodifiableList(this.semanticErrors);
+    }
+
+    public List<SemanticError> getAssignmentErrors() {
+        return Collections.unmodifiableList(this.assignmentErrors);
+    }
+
+    public List<SemanticError> getTypeErrors() {
+        return Collections.unmodifiableList(this.typeErrors);
+    }
+
+    private static void error(List<SemanticError> errors, String message, AST... nodes) {
+        errors.add(new SemanticError(message, nodes));
+    }
+
+    /**
+     * Checks an identifier is in scope and that it has been assigned.
+     */
+    private void use(Identifier identifier, boolean read) {
+        if (identifier == null) return; // left behind by syntax error recovery
+        int symbol = this.symbols.symbol(identifier);
+        if (this.condition != null) this.condition.add(identifier);
+        this.used.add(symbol);
+
+        boolean global = this.globalScope.contains(symbol);
+        if (this.checkScope && !global && !this.declared.contains(symbol))
+            error(this.semanticErrors, "Identifier doesn't exist in scope.", this.method, identifier);
+        if (read && this.checkAssignment && !global && !this.assigned.contains(symbol))
+            error(this.assignmentErrors, "Identifier used before being assigned", identifier);
+    }
+
+    private AST find(Identifier variable) {
+        int symbol = this.symbols.symbol(variable);
+        AST v = this.locals.get(symbol);
+        if (v != null) return v;
+        return this.globals.get(symbol);
+    }
+
+    /**
+     * Records the type of an assignment, checking it matches
+     * whatever was assigned to the variable before.
+     */
+    private void assignType(Identifier id, AST srcType) {
+        AST destType = this.find(id);
+        if (destType != null && srcType != null && srcType.getClass() != destType.getClass()) {
+            error(this.typeErrors, "Assigning wrong type to variable:", id, srcType);
+        }
+        this.locals.put(this.symbols.symbol(id), srcType);
+    }
+
+    /**
+     * Checks that a call is made to a function with the
+     * right number of arguments, none of which are functions.
+     */
+    private void checkCall(FunctionExpression functionExpression) {
+        AST ast = this.find(functionExpression.id);
+        if (!(ast instanceof Method)) {
+            error(this.typeErrors, "Trying to call a non-function: ", ast);
+            return;
+        }
+
+        Method m = (Method) ast;
+        int arguments = functionExpression.expressions.expressions.size();
+        int parameters = m.args != null ? m.args.identifiers.size() : 0;
+        if (arguments != parameters) {
+            error(this.typeErrors, "Attempting to call function with " + arguments + " arguments, expected " + parameters + ":", m);
+        }
+
+        for (Expression e : functionExpression.expressions.expressions) {
+            if (e instanceof FunctionExpression) {
+                FunctionExpression funcArg = (FunctionExpression) e;
+                if (funcArg.expressions == null && !(this.find(funcArg.id) instanceof IntExpression)) {
+                    error(this.typeErrors, "Functions may only accept int types", m, funcArg);
+                }
+            }
+        }
+    }
+
+    private void statements(Statements statements) {
+        if (statements == null) return;
+        this.depth++;
+        this.visit(statements);
+        this.depth--;
+    }
+
+    @Override
+    public Void visit(Assign cmd) {
+        this.use(cmd.id, false);
+
+        AST srcType = null;
+        if (cmd.expression instanceof FunctionExpression) {
+            FunctionExpression f = (FunctionExpression) cmd.expression;
+            if (this.checkAssignment && cmd.id.equals(f.id) && f.expressions == null) {
+                error(this.assignmentErrors, "Variable assigned to itself", cmd);
+            }
+            if (f.expressions != null) {
+                this.checkCall(f);
+                srcType = new IntExpression(-1);
+            } else {
+                srcType = this.find(f.id);
+            }
+        } else if (cmd.expression instanceof IntExpression) {
+            srcType = cmd.expression;
+        }
+
+        cmd.expression.accept(this);
+        this.assigned.add(this.symbols.symbol(cmd.id));
+        this.assignType(cmd.id, srcType);
+        return null;
+    }
+
+    @Override
+    public Void visit(If cmd) {
+        if (cmd.cond != null) cmd.cond.accept(this);
+        this.statements(cmd.then);
+        this.statements(cmd.otherwise);
+        return null;
+    }
+
+    @Override
+    public Void visit(While cmd) {
+        boolean topLevel = this.depth == 0;
+        if (topLevel) this.condition = new ArrayList<>();
+        cmd.cond.accept(this);
+
+        if (topLevel && this.unupdatedLoop == null) {
+            SymbolSet updated = new SymbolSet();
+            for (Statement statement : cmd.statements.statements) {
+                if (statement instanceof Assign) updated.add(this.symbols.symbol(((Assign) statement).id));
+            }
+            if (this.condition.stream().noneMatch(i -> updated.contains(this.symbols.symbol(i))))
+                this.unupdatedLoop = cmd;
+        }
+        this.condition = null;
+
+        this.statements(cmd.statements);
+        return null;
+    }
+
+    @Override
+    public Void visit(Read cmd) {
+        this.use(cmd.id, false);
+        this.assigned.add(this.symbols.symbol(cmd.id));
+        this.assignType(cmd.id, new IntExpression(-1));
+        return null;
+    }
+
+    @Override
+    public Void visit(Write cmd) {
+        if (cmd.exp == null) return null;
+        cmd.exp.accept(this);
+        if (cmd.exp instanceof FunctionExpression) {
+            FunctionExpression fe = (FunctionExpression) cmd.exp;
+            if (fe.expressions == null && !(this.find(fe.id) instanceof IntExpression))
+                error(this.typeErrors, "The write keyword may only accept integer types", cmd);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Expressions expressions) {
+        for (Expression exp : expressions.expressions) if (exp != null) exp.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(IntExpression intExpression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionExpression functionExpression) {
+        this.use(functionExpression.id, true);
+        if (functionExpression.expressions != null) functionExpression.expressions.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(Statements statements) {
+        for (Statement statement : statements.statements) {
+            if (this.depth == 0 && this.unupdatedLoop == null) this.unupdatedLoopIndex++;
+            if (statement != null) statement.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Arguments arguments) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Condition condition) {
+        condition.exps.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(Identifier identifier) {
+        this.use(identifier, true);
+        return null;
+    }
+
+    @Override
+    public Void visit(Method method) {
+        this.method = method;
+        this.checkScope = this.semanticErrors.isEmpty();
+        this.checkAssignment = this.assignmentErrors.isEmpty();
+        this.declared.clear();
+        this.used.clear();
+        this.assigned.clear();
+        this.locals.clear();
+        this.unupdatedLoop = null;
+        this.unupdatedLoopIndex = -1;
+
+        List<Identifier> declaredIdentifiers = method.variables();
+        declaredIdentifiers.removeIf(Objects::isNull);
+        declaredIdentifiers.forEach(i -> this.declared.add(this.symbols.symbol(i)));
+        if (method.args != null) {
+            method.args.identifiers.stream().filter(Objects::nonNull).forEach(i -> {
+                this.assigned.add(this.symbols.symbol(i));
+                this.locals.put(this.symbols.symbol(i), new IntExpression(-1));
+            });
+        }
+
+        // top level statements are walked at depth zero
+        this.depth = -1;
+        this.statements(method.statements);
+        this.depth = 0;
+
+        if (method.ret != null) {
+            this.visit(method.ret);
+            if (!(this.find(method.ret) instanceof IntExpression))
+                error(this.typeErrors, "Attempting to return a non-int value", method, method.ret);
+        }
+
+        if (this.checkScope) this.checkDeclarations(method, declaredIdentifiers);
+        return null;
+    }
+
+    /**
+     * The checks on a method's declarations, which need
+     * to know every identifier the method uses.
+     */
+    private void checkDeclarations(Method method, List<Identifier> declaredIdentifiers) {
+        for (Identifier declared : declaredIdentifiers) {
+            if (!this.used.contains(this.symbols.symbol(declared)))
+                error(this.semanticErrors, "Identifier is not used in scope", method, declared);
+        }
+
+        if (method.vars != null && method.args != null) {
+            SymbolSet args = new SymbolSet();
+            method.args.identifiers.forEach(i -> args.add(this.symbols.symbol(i)));
+            List<AST> elems = new LinkedList<>();
+            elems.add(method);
+            SymbolSet seen = new SymbolSet();
+            for (Identifier i : method.vars.identifiers) {
+                int symbol = this.symbols.symbol(i);
+                if (args.contains(symbol) && !seen.contains(symbol)) {
+                    seen.add(symbol);
+                    elems.add(i);
+                }
+            }
+            if (elems.size() > 1)
+                error(this.semanticErrors, "Must not declare the same identifier in both the args and the vars.", elems.toArray(new AST[]{}));
+        }
+
+        int variables = 0;
+        if (method.args != null) {
+            variables += method.args.identifiers.size();
+            if (variables > MAX_ARGUMENTS) error(this.semanticErrors, "Cannot declare functions with more than 4 arguments.", method);
+        }
+
+        if (method.vars != null) {
+            variables += method.vars.identifiers.size();
+            if (variables > MAX_VARIABLES)
+                error(this.semanticErrors, "Cannot declare functions with more than 8 total vars.", method);
+        }
+
+        // the loop check stops at the first error, so it is only reached
+        // past the first statement if nothing else has been reported
+        if (this.unupdatedLoop != null && (this.semanticErrors.isEmpty() || this.unupdatedLoopIndex == 0))
+            error(this.semanticErrors, "Condition not updated in loop: ", this.unupdatedLoop.cond);
+    }
+
+    @Override
+    public Void visit(Methods methods) {
+        for (int i = 0; i < SymbolTable.BUILTINS.length; i++) this.globalScope.add(i);
+        for (String builtin : SymbolTable.BUILTINS) {
+            this.globals.put(this.symbols.intern(builtin), new Method(new Identifier(builtin), new Arguments(new Identifier("x"), new Identifier("y")), null, null, null));
+        }
+        for (Method method : methods.methods) {
+            this.globalScope.add(this.symbols.symbol(method.id));
+            this.globals.put(this.symbols.symbol(method.id), method);
+        }
+
+        if (this.pool == null || methods.methods.size() < 2 * MIN_METHODS) {
+            methods.methods.forEach(this::visit);
+            return null;
+        }
+
+        int range = Math.max(MIN_METHODS, methods.methods.size() / (this.pool.getParallelism() * 4));
+        for (Errors errors : this.pool.invoke(new Check(methods.methods, 0, methods.methods.size(), range))) {
+            if (this.semanticErrors.isEmpty()) this.semanticErrors.addAll(errors.semantic);
+            if (this.assignmentErrors.isEmpty()) this.assignmentErrors.addAll(errors.assignment);
+            this.typeErrors.addAll(errors.type);
+        }
+        return null;
+    }
+
+    /**
+     * The errors found in a single method.
+     */
+    private static class Errors {
+        final List<SemanticError> semantic;
+        final List<SemanticError> assignment;
+        final List<SemanticError> type;
+
+        Errors(ProgramAnalyser analyser) {
+            this.semantic = new ArrayList<>(analyser.semanticErrors);
+            this.assignment = new ArrayList<>(analyser.assignmentErrors);
+            this.type = new ArrayList<>(analyser.typeErrors);
+        }
+    }
+
+    /**
+     * Checks a range of methods, splitting it in half until it is
+     * small enough, giving back the errors of each method in order.
+     */
+    private class Check extends RecursiveTask<List<Errors>> {
+        private final List<Method> methods;
+        private final int from;
+        private final int to;
+        private final int range;
+
+        Check(List<Method> methods, int from, int to, int range) {
+            this.methods = methods;
+            this.from = from;
+            this.to = to;
+            this.range = range;
+        }
+
+        @Override
+        protected List<Errors> compute() {
+            if (this.to - this.from > this.range) {
+                int middle = (this.from + this.to) >>> 1;
+                Check left = new Check(this.methods, this.from, middle, this.range);
+                left.fork();
+                List<Errors> right = new Check(this.methods, middle, this.to, this.range).compute();
+                List<Errors> errors = left.join();
+                errors.addAll(right);
+                return errors;
+            }
+
+            // the errors are cleared after every method, so each is checked in full
+            ProgramAnalyser analyser = new ProgramAnalyser(ProgramAnalyser.this);
+            List<Errors> errors = new ArrayList<>(this.to - this.from);
+            for (Method method : this.methods.subList(this.from, this.to)) {
+                analyser.visit(method);
+                errors.add(new Errors(analyser));
+                analyser.semanticErrors.clear();
+                analyser.assignmentErrors.clear();
+                analyser.typeErrors.clear();
+            }
+            return errors;
+        }
+    }
+
+    @Override
+    public Void visit(Program program) {
+        this.symbols = program.symbols;
+        this.visit(program.methods);
+
+        Optional<Method> main = program.methods.methods.stream().filter(method -> method.id.name.equals("main")).findFirst();
+        if (main.isPresent()) {
+            Method m = main.get();
+            if (m.args != null)
+                error(this.semanticErrors, "Main function must have no arguments.", m.args);
+            if (m.ret != null)
+                error(this.semanticErrors, "Main function must have no return value.", m.ret);
+        } else {
+            error(this.semanticErrors, "Program must have a main function.");
+        }
+        return null;
+    }
+}
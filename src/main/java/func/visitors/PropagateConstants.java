@@ -0,0 +1,361 @@
+package func.visitors;
+
+import func.passes.Evaluator;
+import func.syntax.*;
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Propagates constants through each method, folding the builtins
+ * applied to them and resolving branches they decide.
+ * <p>
+ * The walk keeps the value of each variable known to be constant
+ * at the current point. Branches of an if are walked separately and
+ * only the constants they agree on survive, and a branch that can't
+ * be taken doesn't count. Loops are walked without rewriting until
+ * the constants at their head stop changing, then once more to
+ * rewrite the body. Comparing a variable for equality also tells
+ * its value on the side where the comparison holds.
+ * <p>
+ * An if whose condition is decided is replaced by the branch it
+ * takes, and a while whose condition is false on entry is removed.
+ * <p>
+ * Calls to methods whose arguments are all known are run by an
+ * {@link Evaluator} with the given fuel, and replaced by their
+ * results if they finish without reading or writing.
+ */
+public class PropagateConstants implements ASTVisitor<AST> {
+
+    /**
+     * The variables known to be constant, by symbol, or null
+     * where the code can't be reached.
+     */
+    private Map<Integer, Integer> constants;
+
+    /**
+     * Whether the walk rewrites the tree, or is only finding
+     * the constants at the head of a loop.
+     */
+    private boolean rewrite = true;
+
+    private SymbolTable symbols = new SymbolTable();
+    private final int fuel;
+    private Evaluator evaluator;
+
+    public PropagateConstants() {
+        this(0);
+    }
+
+    /**
+     * @param fuel how long a call may run for at compile time, or 0 to leave calls
+     */
+    public PropagateConstants(int fuel) {
+        this.fuel = fuel;
+    }
+
+    private static Map<Integer, Integer> copy(Map<Integer, Integer> constants) {
+        return constants == null ? null : new HashMap<>(constants);
+    }
+
+    /**
+     * The constants that hold whichever way control came.
+     */
+    private static Map<Integer, Integer> meet(Map<Integer, Integer> a, Map<Integer, Integer> b) {
+        if (a == null) return copy(b);
+        if (b == null) return copy(a);
+        Map<Integer, Integer> both = new HashMap<>(a);
+        both.entrySet().removeIf(e -> !e.getValue().equals(b.get(e.getKey())));
+        return both;
+    }
+
+    /**
+     * The value of an expression, if it is known.
+     */
+    private Integer value(Expression expression) {
+        if (expression instanceof IntExpression) return ((IntExpression) expression).integer;
+        FunctionExpression function = (FunctionExpression) expression;
+        if (function.expressions == null) return this.constants.get(this.symbols.symbol(function.id));
+
+        Builtin builtin = Builtin.of(function);
+        if (builtin == null) return this.call(function, this::value);
+        Integer left = this.value(function.expressions.expressions.get(0));
+        Integer right = this.value(function.expressions.expressions.get(1));
+        return left != null && right != null ? builtin.apply(left, right) : null;
+    }
+
+    /**
+     * The result of a call to a method, if its arguments are known
+     * and it can be run at compile time.
+     */
+    private Integer call(FunctionExpression function, Function<Expression, Integer> value) {
+        if (SymbolTable.isBuiltin(this.symbols.symbol(function.id))) return null;
+        List<Integer> arguments = new ArrayList<>();
+        for (Expression argument : function.expressions.expressions) {
+            Integer known = value.apply(argument);
+            if (known == null) return null;
+            arguments.add(known);
+        }
+        return this.evaluator.call(function.id, arguments);
+    }
+
+    /**
+     * Whether a condition holds, if it is known.
+     */
+    private Boolean test(Condition condition) {
+        Integer left = this.value(condition.exps.expressions.get(0));
+        Integer right = this.value(condition.exps.expressions.get(1));
+        return left != null && right != null ? condition.bop.test(left, right) : null;
+    }
+
+    /**
+     * Records what a comparison says about a variable on the side where
+     * the variable and the other operand are equal.
+     */
+    private void refine(Condition condition, boolean holds) {
+        if (this.constants == null || (condition.bop == BinaryOp.Eq) != holds) return;
+        if (condition.bop != BinaryOp.Eq && condition.bop != BinaryOp.NEq) return;
+        Expression left = condition.exps.expressions.get(0);
+        Expression right = condition.exps.expressions.get(1);
+        this.refine(left, this.value(right));
+        this.refine(right, this.value(left));
+    }
+
+    private void refine(Expression expression, Integer value) {
+        if (value == null || !(expression instanceof FunctionExpression)) return;
+        FunctionExpression variable = (FunctionExpression) expression;
+        if (variable.expressions == null) this.constants.put(this.symbols.symbol(variable.id), value);
+    }
+
+    /**
+     * Substitutes known constants into an expression and folds it.
+     */
+    private Expression fold(Expression expression) {
+        if (expression instanceof IntExpression) return expression;
+        FunctionExpression function = (FunctionExpression) expression;
+        if (function.expressions == null) {
+            Integer value = this.constants.get(this.symbols.symbol(function.id));
+            return value != null ? new IntExpression(value) : expression;
+        }
+
+        List<Expression> arguments = new ArrayList<>();
+        for (Expression argument : function.expressions.expressions) arguments.add(this.fold(argument));
+        FunctionExpression folded = new FunctionExpression(function.id, new Expressions(arguments));
+
+        Builtin builtin = Builtin.of(folded);
+        if (builtin == null) {
+            Integer value = this.call(folded, argument -> argument instanceof IntExpression ? ((IntExpression) argument).integer : null);
+            return value != null ? new IntExpression(value) : folded;
+        }
+        Expression left = arguments.get(0);
+        Expression right = arguments.get(1);
+        Integer x = left instanceof IntExpression ? ((IntExpression) left).integer : null;
+        Integer y = right instanceof IntExpression ? ((IntExpression) right).integer : null;
+        if (x != null && y != null) {
+            Integer value = builtin.apply(x, y);
+            return value != null ? new IntExpression(value) : folded;
+        }
+        return identity(builtin, left, x, right, y, folded);
+    }
+
+    /**
+     * Simplifies a builtin applied to its identity or to zero.
+     */
+    private static Expression identity(Builtin builtin, Expression left, Integer x, Expression right, Integer y, Expression folded) {
+        switch (builtin) {
+            case PLUS:
+                if (y != null && y == 0) return left;
+                if (x != null && x == 0) return right;
+                break;
+            case MINUS:
+                if (y != null && y == 0) return left;
+                break;
+            case TIMES:
+                if (y != null && y == 1) return left;
+                if (x != null && x == 1) return right;
+                if (y != null && y == 0 && Builtin.isPure(left)) return right;
+                if (x != null && x == 0 && Builtin.isPure(right)) return left;
+                break;
+            case DIVIDE:
+                if (y != null && y == 1) return left;
+                break;
+        }
+        return folded;
+    }
+
+    private Condition fold(Condition condition) {
+        List<Expression> operands = new ArrayList<>();
+        for (Expression operand : condition.exps.expressions) operands.add(this.fold(operand));
+        return new Condition(condition.bop, new Expressions(operands));
+    }
+
+    @Override
+    public AST visit(Assign cmd) {
+        Integer value = this.value(cmd.expression);
+        if (this.rewrite) cmd.expression = this.fold(cmd.expression);
+        int symbol = this.symbols.symbol(cmd.id);
+        if (value != null) this.constants.put(symbol, value);
+        else this.constants.remove(symbol);
+        return cmd;
+    }
+
+    @Override
+    public AST visit(If cmd) {
+        Boolean holds = this.test(cmd.cond);
+        if (holds != null) {
+            Statements taken = holds ? cmd.then : cmd.otherwise;
+            this.refine(cmd.cond, holds);
+            return taken != null ? this.visit(taken) : null;
+        }
+
+        if (this.rewrite) cmd.cond = this.fold(cmd.cond);
+        Map<Integer, Integer> before = copy(this.constants);
+        this.refine(cmd.cond, true);
+        cmd.then = this.visit(cmd.then);
+        Map<Integer, Integer> then = this.constants;
+
+        this.constants = before;
+        this.refine(cmd.cond, false);
+        if (cmd.otherwise != null) cmd.otherwise = this.visit(cmd.otherwise);
+        this.constants = meet(then, this.constants);
+        return cmd;
+    }
+
+    @Override
+    public AST visit(While cmd) {
+        boolean rewrite = this.rewrite;
+        this.rewrite = false;
+        Map<Integer, Integer> head = this.constants;
+        while (this.test(cmd.cond) != Boolean.FALSE) {
+            this.constants = copy(head);
+            this.refine(cmd.cond, true);
+            this.visit(cmd.statements);
+            Map<Integer, Integer> next = meet(head, this.constants);
+            if (next.equals(head)) break;
+            this.constants = head = next;
+        }
+        this.rewrite = rewrite;
+        this.constants = head;
+
+        Boolean holds = this.test(cmd.cond);
+        if (holds == Boolean.FALSE) return null;
+
+        if (this.rewrite) {
+            cmd.cond = this.fold(cmd.cond);
+            this.constants = copy(head);
+            this.refine(cmd.cond, true);
+            cmd.statements = this.visit(cmd.statements);
+        }
+
+        // a loop whose condition always holds is never left
+        this.constants = holds == Boolean.TRUE ? null : copy(head);
+        this.refine(cmd.cond, false);
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Read cmd) {
+        this.constants.remove(this.symbols.symbol(cmd.id));
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Write cmd) {
+        if (this.rewrite) cmd.exp = this.fold(cmd.exp);
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Expressions expressions) {
+        return expressions;
+    }
+
+    @Override
+    public AST visit(IntExpression intExpression) {
+        return intExpression;
+    }
+
+    @Override
+    public AST visit(FunctionExpression functionExpression) {
+        return functionExpression;
+    }
+
+    /**
+     * Walks a list of statements, splicing in the branches
+     * of resolved ifs and dropping removed loops.
+     */
+    @Override
+    public Statements visit(Statements statements) {
+        List<Statement> rewritten = new ArrayList<>();
+        for (Statement statement : statements.statements) {
+            if (this.constants == null) {
+                rewritten.add(statement);
+                continue;
+            }
+            AST result = statement.accept(this);
+            if (result instanceof Statements) rewritten.addAll(((Statements) result).statements);
+            else if (result != null) rewritten.add((Statement) result);
+        }
+        return this.rewrite ? new Statements(rewritten) : statements;
+    }
+
+    @Override
+    public AST visit(Arguments arguments) {
+        return arguments;
+    }
+
+    @Override
+    public AST visit(Condition condition) {
+        return condition;
+    }
+
+    @Override
+    public AST visit(Identifier identifier) {
+        return identifier;
+    }
+
+    @Override
+    public Method visit(Method method) {
+        this.constants = new HashMap<>();
+        this.rewrite = true;
+        if (method.statements != null) method.statements = this.visit(method.statements);
+        return method;
+    }
+
+    /**
+     * Propagates constants through a method of a program, or one about to be added to it.
+     */
+    public Method visit(Program program, Method method) {
+        this.symbols = program.symbols;
+        this.evaluator = Evaluator.of(program, this.fuel);
+        return this.visit(method);
+    }
+
+    @Override
+    public Methods visit(Methods methods) {
+        methods.methods.forEach(this::visit);
+        return methods;
+    }
+
+    @Override
+    public Program visit(Program program) {
+        this.symbols = program.symbols;
+        this.evaluator = Evaluator.of(program, this.fuel);
+        this.visit(program.methods);
+        return program;
+    }
+}
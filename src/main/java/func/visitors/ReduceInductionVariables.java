@@ -0,0 +1,279 @@
+package func.visitors;
+
+import func.syntax.*;
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces multiplications of a loop's induction variables by constants
+ * with additions.
+ * <p>
+ * An induction variable is one a while assigns exactly once, directly in
+ * its body, by adding or subtracting a constant. A multiplication of it by
+ * a constant anywhere in the loop, its condition included, reads instead
+ * from a temporary set to the product before the loop and moved on by the
+ * constant times the step just after the variable is. Both sides wrap on
+ * overflow, so the temporary always holds the product.
+ * <p>
+ * Multiplying by a power of two is already a single shift in the MIPS
+ * backends, so those are left alone. Temporaries are shared like those of
+ * {@link HoistInvariants}, within {@link ProgramAnalyser#MAX_VARIABLES}.
+ */
+public class ReduceInductionVariables implements ASTVisitor<AST> {
+
+    private SymbolTable symbols = new SymbolTable();
+    private final List<Identifier> methods = new ArrayList<>();
+    private final SymbolSet names = new SymbolSet();
+
+    private final List<Identifier> temporaries = new ArrayList<>();
+    private int held;
+    private int budget;
+
+    /**
+     * The current loop's induction variables and their steps, by symbol,
+     * and the temporaries for each product by the variable and constant.
+     */
+    private Map<Integer, Integer> steps;
+    private Map<String, Identifier> products;
+    private Map<String, FunctionExpression> multiplications;
+
+    private Identifier temporary() {
+        int index = this.held + this.products.size();
+        if (index < this.temporaries.size()) return this.temporaries.get(index);
+        if (this.temporaries.size() >= this.budget) return null;
+
+        Identifier identifier = this.symbols.identifier("ind");
+        for (int i = 2; this.names.contains(this.symbols.symbol(identifier)); i++) {
+            identifier = this.symbols.identifier("ind" + i);
+        }
+        this.names.add(this.symbols.symbol(identifier));
+        this.temporaries.add(identifier);
+        return identifier;
+    }
+
+    /**
+     * The step of an assignment that moves an induction variable, or null.
+     */
+    private Integer step(Statement statement, Map<Integer, Integer> assignments) {
+        if (!(statement instanceof Assign)) return null;
+        int symbol = this.symbols.symbol(((Assign) statement).id);
+        return assignments.get(symbol) == 1 ? Loops.step(this.symbols, statement, symbol) : null;
+    }
+
+    /**
+     * An expression with its multiplications of induction
+     * variables read from temporaries.
+     */
+    private Expression reduce(Expression expression) {
+        if (!(expression instanceof FunctionExpression)) return expression;
+        FunctionExpression function = (FunctionExpression) expression;
+        if (function.expressions == null) return expression;
+
+        if (Builtin.of(expression) == Builtin.TIMES) {
+            List<Expression> operands = function.expressions.expressions;
+            for (int i = 0; i < 2; i++) {
+                if (!(operands.get(i) instanceof FunctionExpression) || !(operands.get(1 - i) instanceof IntExpression)) continue;
+                FunctionExpression variable = (FunctionExpression) operands.get(i);
+                int constant = ((IntExpression) operands.get(1 - i)).integer;
+                long magnitude = Math.abs((long) constant);
+                if (variable.expressions != null || !this.steps.containsKey(this.symbols.symbol(variable.id)) || Long.bitCount(magnitude) <= 1) {
+                    continue;
+                }
+
+                String key = variable.id.name + " " + constant;
+                Identifier temporary = this.products.get(key);
+                if (temporary == null && (temporary = this.temporary()) != null) {
+                    this.products.put(key, temporary);
+                    this.multiplications.put(key, new FunctionExpression(function.id, new Expressions(variable, new IntExpression(constant))));
+                }
+                if (temporary != null) return new FunctionExpression(temporary, null);
+            }
+        }
+
+        List<Expression> arguments = new ArrayList<>();
+        for (Expression argument : function.expressions.expressions) arguments.add(this.reduce(argument));
+        return new FunctionExpression(function.id, new Expressions(arguments));
+    }
+
+    private Condition reduce(Condition condition) {
+        Expression left = this.reduce(condition.exps.expressions.get(0));
+        Expression right = this.reduce(condition.exps.expressions.get(1));
+        return new Condition(condition.bop, new Expressions(left, right));
+    }
+
+    private Statements reduce(Statements statements) {
+        List<Statement> reduced = new ArrayList<>();
+        for (Statement statement : statements.statements) {
+            if (statement instanceof Assign) {
+                Assign assign = (Assign) statement;
+                reduced.add(new Assign(assign.id, this.reduce(assign.expression)));
+            } else if (statement instanceof Write) {
+                reduced.add(new Write(this.reduce(((Write) statement).exp)));
+            } else if (statement instanceof If) {
+                If cmd = (If) statement;
+                reduced.add(new If(this.reduce(cmd.cond), this.reduce(cmd.then), cmd.otherwise != null ? this.reduce(cmd.otherwise) : null));
+            } else if (statement instanceof While) {
+                While cmd = (While) statement;
+                reduced.add(new While(this.reduce(cmd.cond), this.reduce(cmd.statements)));
+            } else {
+                reduced.add(statement);
+            }
+        }
+        return new Statements(reduced);
+    }
+
+    @Override
+    public AST visit(Assign cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(If cmd) {
+        cmd.then = this.visit(cmd.then);
+        if (cmd.otherwise != null) cmd.otherwise = this.visit(cmd.otherwise);
+        return cmd;
+    }
+
+    /**
+     * Reduces a loop's multiplications, giving back the loop
+     * with the assignments to its temporaries before it.
+     */
+    @Override
+    public Statements visit(While cmd) {
+        Map<Integer, Integer> assignments = new HashMap<>();
+        Loops.count(this.symbols, cmd.statements, assignments);
+        this.steps = new HashMap<>();
+        for (Statement statement : cmd.statements.statements) {
+            Integer step = this.step(statement, assignments);
+            if (step != null) this.steps.put(this.symbols.symbol(((Assign) statement).id), step);
+        }
+        this.products = new LinkedHashMap<>();
+        this.multiplications = new HashMap<>();
+        While loop = new While(this.reduce(cmd.cond), this.reduce(cmd.statements));
+
+        List<Statement> statements = new ArrayList<>();
+        List<Statement> body = new ArrayList<>();
+        for (Statement statement : loop.statements.statements) {
+            body.add(statement);
+            Integer step = this.step(statement, assignments);
+            if (step == null) continue;
+            int symbol = this.symbols.symbol(((Assign) statement).id);
+            this.products.forEach((key, temporary) -> {
+                List<Expression> operands = this.multiplications.get(key).expressions.expressions;
+                if (this.symbols.symbol(((FunctionExpression) operands.get(0)).id) != symbol) return;
+                int constant = ((IntExpression) operands.get(1)).integer;
+                Expressions next = new Expressions(new FunctionExpression(temporary, null), new IntExpression(step * constant));
+                body.add(new Assign(temporary, new FunctionExpression(this.symbols.identifier("plus"), next)));
+            });
+        }
+        this.products.forEach((key, temporary) -> statements.add(new Assign(temporary, this.multiplications.get(key))));
+        loop.statements = new Statements(body);
+
+        int held = this.held;
+        this.held += this.products.size();
+        loop.statements = this.visit(loop.statements);
+        this.held = held;
+        statements.add(loop);
+        return new Statements(statements);
+    }
+
+    @Override
+    public AST visit(Read cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Write cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Expressions expressions) {
+        return expressions;
+    }
+
+    @Override
+    public AST visit(IntExpression intExpression) {
+        return intExpression;
+    }
+
+    @Override
+    public AST visit(FunctionExpression functionExpression) {
+        return functionExpression;
+    }
+
+    @Override
+    public Statements visit(Statements statements) {
+        List<Statement> visited = new ArrayList<>();
+        for (Statement statement : statements.statements) {
+            AST result = statement.accept(this);
+            if (result instanceof Statements) visited.addAll(((Statements) result).statements);
+            else visited.add((Statement) result);
+        }
+        return new Statements(visited);
+    }
+
+    @Override
+    public AST visit(Arguments arguments) {
+        return arguments;
+    }
+
+    @Override
+    public AST visit(Condition condition) {
+        return condition;
+    }
+
+    @Override
+    public AST visit(Identifier identifier) {
+        return identifier;
+    }
+
+    @Override
+    public Method visit(Method method) {
+        if (method.statements == null) return method;
+        List<Identifier> variables = method.variables();
+        this.temporaries.clear();
+        this.held = 0;
+        this.budget = ProgramAnalyser.MAX_VARIABLES - variables.size();
+        this.names.clear();
+        this.methods.forEach(name -> this.names.add(this.symbols.symbol(name)));
+        variables.forEach(variable -> this.names.add(this.symbols.symbol(variable)));
+
+        method.statements = this.visit(method.statements);
+        if (!this.temporaries.isEmpty()) {
+            List<Identifier> vars = method.vars != null ? new ArrayList<>(method.vars.identifiers) : new ArrayList<>();
+            vars.addAll(this.temporaries);
+            method.vars = new Arguments(vars);
+        }
+        return method;
+    }
+
+    @Override
+    public Methods visit(Methods methods) {
+        methods.methods.forEach(this::visit);
+        return methods;
+    }
+
+    @Override
+    public Program visit(Program program) {
+        this.symbols = program.symbols;
+        program.methods.methods.forEach(method -> this.methods.add(method.id));
+        this.visit(program.methods);
+        return program;
+    }
+}
@@ -0,0 +1,163 @@
+package func.visitors;
+
+import func.syntax.*;
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.List;
+
+/**
+ * Binds every identifier in the program to a slot, so that later
+ * passes can index an array rather than look names up.
+ * <p>
+ * A method's arguments and variables are numbered in the order they
+ * are declared, later declarations shadowing earlier ones, and locals
+ * shadow globals. Calls are always bound to the global they name.
+ * Identifiers that refer to nothing are left unbound.
+ * <p>
+ * Rewriting the tree can leave stale bindings behind, so this should
+ * be run again by anything that relies on them.
+ */
+public class ResolveBindings implements ASTVisitor<Void> {
+
+    private SymbolTable symbols = new SymbolTable();
+    private final SymbolSet globals = new SymbolSet();
+    private final SymbolMap<Integer> locals = new SymbolMap<>();
+
+    private void bind(Identifier identifier, int slot, int depth) {
+        identifier.slot = slot;
+        identifier.depth = depth;
+    }
+
+    private void bind(Identifier identifier) {
+        if (identifier == null) return;
+        int symbol = this.symbols.symbol(identifier);
+        Integer slot = this.locals.get(symbol);
+        if (slot != null) this.bind(identifier, slot, Identifier.LOCAL);
+        else this.bindGlobal(identifier);
+    }
+
+    private void bindGlobal(Identifier identifier) {
+        int symbol = this.symbols.symbol(identifier);
+        if (this.globals.contains(symbol)) this.bind(identifier, symbol, Identifier.GLOBAL);
+        else this.bind(identifier, Identifier.UNBOUND, Identifier.UNBOUND);
+    }
+
+    @Override
+    public Void visit(Assign cmd) {
+        this.bind(cmd.id);
+        cmd.expression.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(If cmd) {
+        this.visit(cmd.cond);
+        this.visit(cmd.then);
+        if (cmd.otherwise != null) this.visit(cmd.otherwise);
+        return null;
+    }
+
+    @Override
+    public Void visit(While cmd) {
+        this.visit(cmd.cond);
+        this.visit(cmd.statements);
+        return null;
+    }
+
+    @Override
+    public Void visit(Read cmd) {
+        this.bind(cmd.id);
+        return null;
+    }
+
+    @Override
+    public Void visit(Write cmd) {
+        cmd.exp.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expressions expressions) {
+        for (Expression expression : expressions.expressions) expression.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(IntExpression intExpression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionExpression functionExpression) {
+        if (functionExpression.expressions == null) {
+            this.bind(functionExpression.id);
+        } else {
+            this.bindGlobal(functionExpression.id);
+            this.visit(functionExpression.expressions);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Statements statements) {
+        for (Statement statement : statements.statements) statement.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(Arguments arguments) {
+        arguments.identifiers.forEach(this::bind);
+        return null;
+    }
+
+    @Override
+    public Void visit(Condition condition) {
+        this.visit(condition.exps);
+        return null;
+    }
+
+    @Override
+    public Void visit(Identifier identifier) {
+        this.bind(identifier);
+        return null;
+    }
+
+    @Override
+    public Void visit(Method method) {
+        this.locals.clear();
+        List<Identifier> variables = method.variables();
+        for (int i = 0; i < variables.size(); i++) this.locals.put(this.symbols.symbol(variables.get(i)), i);
+
+        this.bindGlobal(method.id);
+        if (method.args != null) this.visit(method.args);
+        if (method.vars != null) this.visit(method.vars);
+        if (method.statements != null) this.visit(method.statements);
+        this.bind(method.ret);
+        return null;
+    }
+
+    @Override
+    public Void visit(Methods methods) {
+        for (int i = 0; i < SymbolTable.BUILTINS.length; i++) this.globals.add(i);
+        for (Method method : methods.methods) this.globals.add(this.symbols.symbol(method.id));
+        methods.methods.forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Program program) {
+        this.symbols = program.symbols;
+        this.visit(program.methods);
+        return null;
+    }
+}
@@ -14,9 +14,6 @@ import func.syntax.statement.rw.Write;
 
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import static func.Func.builtins;
 
 
 public class SemanticAnalyser implements ASTVisitor<Boolean> {
@@ -33,7 +30,10 @@ public class SemanticAnalyser implements ASTVisitor<Boolean> {
         return e;
     }
 
-    private final List<Identifier> globalScope = new ArrayList<>(builtins);
+    private SymbolTable symbols = new SymbolTable();
+    private final SymbolSet globalScope = new SymbolSet();
+    private final SymbolSet declared = new SymbolSet();
+    private final SymbolSet used = new SymbolSet();
 
     public List<SemanticError> getErrors() {
         return Collections.unmodifiableList(this.errors);
@@ -53,13 +53,12 @@ public class SemanticAnalyser implements ASTVisitor<Boolean> {
     public Boolean visit(While cmd) {
         ExtractIdentifiers extractIdentifiers = new ExtractIdentifiers();
         List<Identifier> conditionalVariables = extractIdentifiers.visit(cmd.cond);
-        List<Identifier> updatedVariables = cmd.statements.statements.stream()
+        SymbolSet updatedVariables = new SymbolSet();
+        cmd.statements.statements.stream()
             .filter(o -> o instanceof Assign)
-            .map(x -> (Assign) x)
-            .map(x -> x.id)
-            .collect(Collectors.toList());
+            .forEach(x -> updatedVariables.add(symbols.symbol(((Assign) x).id)));
 
-        if (conditionalVariables.stream().noneMatch(updatedVariables::contains))
+        if (conditionalVariables.stream().noneMatch(i -> updatedVariables.contains(symbols.symbol(i))))
             error("Condition not updated in loop: ", cmd.cond);
 
         return errors.isEmpty();
@@ -126,22 +125,30 @@ public class SemanticAnalyser implements ASTVisitor<Boolean> {
         if (method.args != null) declaredIdentifiers.addAll(method.args.accept(extractIdentifiers));
         if (method.vars != null) declaredIdentifiers.addAll(method.vars.accept(extractIdentifiers));
 
+        this.declared.clear();
+        this.used.clear();
+        declaredIdentifiers.forEach(i -> this.declared.add(symbols.symbol(i)));
+        usedIdentifiers.forEach(i -> this.used.add(symbols.symbol(i)));
+
         for (Identifier used : usedIdentifiers) {
-            if (Stream.of(declaredIdentifiers, globalScope)
-                .flatMap(List::stream)
-                .noneMatch(used::equals)) {
+            int symbol = symbols.symbol(used);
+            if (!this.declared.contains(symbol) && !this.globalScope.contains(symbol)) {
                 error("Identifier doesn't exist in scope.", method, used);
             }
         }
 
         for (Identifier declared : declaredIdentifiers) {
-            if (usedIdentifiers.stream().noneMatch(declared::equals))
+            if (!this.used.contains(symbols.symbol(declared)))
                 error("Identifier is not used in scope", method, declared);
         }
 
         if (method.vars != null && method.args != null) {
-            Set<Identifier> intersection = new HashSet<>(method.vars.identifiers);
-            intersection.retainAll(method.args.identifiers);
+            SymbolSet args = new SymbolSet();
+            method.args.identifiers.forEach(i -> args.add(symbols.symbol(i)));
+            List<Identifier> intersection = method.vars.identifiers.stream()
+                .filter(i -> args.contains(symbols.symbol(i)))
+                .distinct()
+                .collect(Collectors.toList());
             if (!intersection.isEmpty()) {
                 List<AST> elems = new LinkedList<>();
                 elems.add(method);
@@ -169,12 +176,14 @@ public class SemanticAnalyser implements ASTVisitor<Boolean> {
 
     @Override
     public Boolean visit(Methods methods) {
-        this.globalScope.addAll(methods.methods.stream().map(method -> method.id).collect(Collectors.toList()));
+        for (int i = 0; i < SymbolTable.BUILTINS.length; i++) this.globalScope.add(i);
+        methods.methods.forEach(method -> this.globalScope.add(symbols.symbol(method.id)));
         return methods.methods.stream().allMatch(this::visit);
     }
 
     @Override
     public Boolean visit(Program program) {
+        this.symbols = program.symbols;
         this.visit(program.methods);
         Optional<Method> main = program.methods.methods.stream().filter(method -> method.id.name.equals("main")).findFirst();
         if (main.isPresent()) {
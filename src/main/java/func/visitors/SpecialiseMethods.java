@@ -0,0 +1,262 @@
+package func.visitors;
+
+import func.syntax.*;
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clones methods for calls that pass some of their arguments as constants.
+ * <p>
+ * A call like {@code pow(x, 8)} is sent to a copy of the method without
+ * the constant parameters, which instead start the copy by assigning
+ * them their values, as in {@code pow__8(x)}. Constants are then
+ * propagated through the copy, folding what they decide, and the copy's
+ * own calls are specialised in turn. Calls with the same constants in
+ * the same places share a copy, named after them, though the name
+ * only labels the copy: two methods can give the same one.
+ * <p>
+ * Each method gets at most limit copies, and calls whose arguments are
+ * all constant are left to be run by {@link PropagateConstants}, so
+ * every copy still takes an argument.
+ */
+public class SpecialiseMethods implements ASTVisitor<AST> {
+
+    private final int limit;
+    private final int fuel;
+
+    private SymbolTable symbols = new SymbolTable();
+    private final SymbolMap<Method> methods = new SymbolMap<>();
+    private final SymbolMap<Integer> copies = new SymbolMap<>();
+    private final Map<List<Integer>, Identifier> specialised = new HashMap<>();
+
+    /**
+     * @param limit how many copies to make of each method
+     * @param fuel  how long calls in the copies may run for at compile time
+     */
+    public SpecialiseMethods(int limit, int fuel) {
+        this.limit = limit;
+        this.fuel = fuel;
+    }
+
+    /**
+     * The method a call can be specialised from, or null.
+     */
+    private Method specialisable(FunctionExpression call) {
+        if (call.expressions == null) return null;
+        int symbol = this.symbols.symbol(call.id);
+        Method method = SymbolTable.isBuiltin(symbol) ? null : this.methods.get(symbol);
+        if (method == null || method.args == null || method.statements == null) return null;
+
+        List<Expression> arguments = call.expressions.expressions;
+        if (method.args.identifiers.size() != arguments.size()) return null;
+        long constants = arguments.stream().filter(argument -> argument instanceof IntExpression).count();
+        return constants > 0 && constants < arguments.size() ? method : null;
+    }
+
+    /**
+     * The name of a method with some of its arguments fixed,
+     * with an empty part for each argument that isn't.
+     */
+    private static String name(Method method, List<Expression> arguments) {
+        StringBuilder name = new StringBuilder(method.id.name);
+        for (Expression argument : arguments) {
+            name.append('_');
+            if (!(argument instanceof IntExpression)) continue;
+            int constant = ((IntExpression) argument).integer;
+            name.append(constant < 0 ? "m" + -(long) constant : "" + constant);
+        }
+        return name.toString();
+    }
+
+    /**
+     * What a copy is made for: the method's symbol followed by
+     * the position and value of each constant argument.
+     */
+    private List<Integer> key(Method method, List<Expression> arguments) {
+        List<Integer> key = new ArrayList<>();
+        key.add(this.symbols.symbol(method.id));
+        for (int i = 0; i < arguments.size(); i++) {
+            if (!(arguments.get(i) instanceof IntExpression)) continue;
+            key.add(i);
+            key.add(((IntExpression) arguments.get(i)).integer);
+        }
+        return key;
+    }
+
+    /**
+     * A name not yet used anywhere in the program.
+     */
+    private Identifier fresh(String name) {
+        String candidate = name;
+        for (int i = 2; ; i++) {
+            int size = this.symbols.size();
+            if (this.symbols.intern(candidate) >= size) return this.symbols.identifier(candidate);
+            candidate = name + i;
+        }
+    }
+
+    /**
+     * A copy of a method with the constant arguments of a call fixed.
+     */
+    private Method specialise(Method method, List<Expression> arguments, Identifier name, Program program) {
+        Method copy = new CopyTree(this.symbols).visit(method);
+        copy.id = name;
+
+        List<Identifier> parameters = new ArrayList<>();
+        List<Identifier> variables = new ArrayList<>();
+        List<Statement> statements = new ArrayList<>();
+        for (int i = 0; i < arguments.size(); i++) {
+            Identifier parameter = copy.args.identifiers.get(i);
+            if (!(arguments.get(i) instanceof IntExpression)) {
+                parameters.add(parameter);
+                continue;
+            }
+            variables.add(parameter);
+            statements.add(new Assign(new Identifier(parameter.name, parameter.symbol), arguments.get(i)));
+        }
+        if (copy.vars != null) variables.addAll(copy.vars.identifiers);
+        statements.addAll(copy.statements.statements);
+
+        copy.args = new Arguments(parameters);
+        copy.vars = new Arguments(variables);
+        copy.statements = new Statements(statements);
+        return new PropagateConstants(this.fuel).visit(program, copy);
+    }
+
+    /**
+     * Sends a call to the copy of its method for its constants,
+     * making the copy if there is room for it.
+     */
+    private Method redirect(FunctionExpression call, Program program) {
+        Method method = this.specialisable(call);
+        if (method == null) return null;
+
+        List<Expression> arguments = call.expressions.expressions;
+        List<Integer> key = this.key(method, arguments);
+        Identifier name = this.specialised.get(key);
+        Method copy = null;
+        if (name == null) {
+            int symbol = this.symbols.symbol(method.id);
+            int copies = this.copies.containsKey(symbol) ? this.copies.get(symbol) : 0;
+            if (copies >= this.limit) return null;
+            this.copies.put(symbol, copies + 1);
+
+            name = this.fresh(name(method, arguments));
+            this.specialised.put(key, name);
+            copy = this.specialise(method, arguments, name, program);
+        }
+
+        List<Expression> remaining = new ArrayList<>();
+        for (Expression argument : arguments) if (!(argument instanceof IntExpression)) remaining.add(argument);
+        call.id = new Identifier(name.name, name.symbol);
+        call.expressions = new Expressions(remaining);
+        return copy;
+    }
+
+    @Override
+    public AST visit(Assign cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(If cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(While cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Read cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Write cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Expressions expressions) {
+        return expressions;
+    }
+
+    @Override
+    public AST visit(IntExpression intExpression) {
+        return intExpression;
+    }
+
+    @Override
+    public AST visit(FunctionExpression functionExpression) {
+        return functionExpression;
+    }
+
+    @Override
+    public AST visit(Statements statements) {
+        return statements;
+    }
+
+    @Override
+    public AST visit(Arguments arguments) {
+        return arguments;
+    }
+
+    @Override
+    public AST visit(Condition condition) {
+        return condition;
+    }
+
+    @Override
+    public AST visit(Identifier identifier) {
+        return identifier;
+    }
+
+    @Override
+    public AST visit(Method method) {
+        return method;
+    }
+
+    @Override
+    public AST visit(Methods methods) {
+        return methods;
+    }
+
+    /**
+     * Specialises the calls in every method, then in each
+     * copy as it is made, adding the copies to the program.
+     */
+    @Override
+    public Program visit(Program program) {
+        this.symbols = program.symbols;
+        program.methods.methods.forEach(method -> this.methods.put(this.symbols.symbol(method.id), method));
+
+        // copies go in as they are made, so calls to them can be run at compile time
+        List<Method> methods = new ArrayList<>(program.methods.methods);
+        program.methods.methods = methods;
+        for (int i = 0; i < methods.size(); i++) {
+            List<FunctionExpression> calls = new ArrayList<>();
+            new FindCalls(calls::add).visit(methods.get(i));
+            for (FunctionExpression call : calls) {
+                Method copy = this.redirect(call, program);
+                if (copy != null) methods.add(copy);
+            }
+        }
+        return program;
+    }
+}
@@ -22,41 +22,19 @@ import java.util.*;
  */
 public class TypeChecker implements ASTVisitor<Void> {
 
-    private ReferenceFrame frame;
+    private SymbolTable symbols = new SymbolTable();
+    private final SymbolMap<AST> globals = new SymbolMap<>();
+    private final SymbolMap<AST> locals = new SymbolMap<>();
 
-    private class ReferenceFrame {
-
-        final Map<Identifier, AST> variables = new HashMap<>();
-        ReferenceFrame parent = null;
-
-        public ReferenceFrame() {
-        }
-
-        public void register(Identifier variable, AST references) {
-            variables.put(variable, references);
-        }
-
-
-        public boolean exists(Identifier variable) {
-            return variables.containsKey(variable);
-        }
-
-        public AST find(Identifier variable) {
-            AST v = variables.get(variable);
-            if (v != null) return v;
-            if (parent != null) return parent.find(variable);
-            return null;
-        }
-
-        public ReferenceFrame push() {
-            ReferenceFrame r = new ReferenceFrame();
-            r.parent = this;
-            return r;
-        }
+    private void register(Identifier variable, AST references) {
+        locals.put(symbols.symbol(variable), references);
+    }
 
-        public ReferenceFrame pop() {
-            return this.parent;
-        }
+    private AST find(Identifier variable) {
+        int symbol = symbols.symbol(variable);
+        AST v = locals.get(symbol);
+        if (v != null) return v;
+        return globals.get(symbol);
     }
 
     private final List<SemanticError> errors = new LinkedList<>();
@@ -87,17 +65,17 @@ public class TypeChecker implements ASTVisitor<Void> {
             if (fe.expressions != null) {
                 srcType = new IntExpression(-1);
             } else {
-                srcType = frame.find(fe.id);
+                srcType = find(fe.id);
             }
         } else if (cmd.expression instanceof IntExpression) {
             srcType = cmd.expression;
         }
 
-        AST destType = frame.find(cmd.id);
+        AST destType = find(cmd.id);
         if (destType != null && srcType.getClass() != destType.getClass()) {
             error("Assigning wrong type to variable:", cmd.id, srcType);
         }
-        frame.register(cmd.id, srcType);
+        register(cmd.id, srcType);
         return null;
     }
 
@@ -125,7 +103,7 @@ public class TypeChecker implements ASTVisitor<Void> {
         if (cmd.exp instanceof FunctionExpression) {
             FunctionExpression fe = (FunctionExpression) cmd.exp;
             if (fe.expressions == null) {
-                if (!(frame.find(fe.id) instanceof IntExpression))
+                if (!(find(fe.id) instanceof IntExpression))
                     error("The write keyword may only accept integer types", cmd);
             }
         }
@@ -149,7 +127,7 @@ public class TypeChecker implements ASTVisitor<Void> {
     @Override
     public Void visit(FunctionExpression functionExpression) {
         if (functionExpression.expressions != null) {
-            AST ast = frame.find(functionExpression.id);
+            AST ast = find(functionExpression.id);
             if (!(ast instanceof Method)) {
                 error("Trying to call a non-function: ", ast);
             } else {
@@ -165,7 +143,7 @@ public class TypeChecker implements ASTVisitor<Void> {
                 for (Expression e : functionExpression.expressions.expressions) {
                     if (e instanceof FunctionExpression) {
                         FunctionExpression funcArg = (FunctionExpression) e;
-                        if (funcArg.expressions == null && !(frame.find(funcArg.id) instanceof IntExpression)) {
+                        if (funcArg.expressions == null && !(find(funcArg.id) instanceof IntExpression)) {
                             error("Functions may only accept int types", m, funcArg);
                         }
                     }
@@ -200,15 +178,14 @@ public class TypeChecker implements ASTVisitor<Void> {
 
     @Override
     public Void visit(Method method) {
-        this.frame = this.frame.push();
+        this.locals.clear();
         if (method.args != null)
-            method.args.identifiers.forEach(i -> this.frame.register(i, new IntExpression(-1)));
+            method.args.identifiers.forEach(i -> register(i, new IntExpression(-1)));
         if (method.statements != null)
             method.statements.accept(this);
-        if (method.ret != null && !(this.frame.find(method.ret) instanceof IntExpression)) {
+        if (method.ret != null && !(find(method.ret) instanceof IntExpression)) {
             error("Attempting to return a non-int value", method, method.ret);
         }
-        this.frame.pop();
         return null;
     }
 
@@ -220,12 +197,11 @@ public class TypeChecker implements ASTVisitor<Void> {
 
     @Override
     public Void visit(Program program) {
-        this.frame = new ReferenceFrame();
-        frame.register(new Identifier("times"), new Method(new Identifier("times"), new Arguments(new Identifier("x"), new Identifier("y")), null, null, null));
-        frame.register(new Identifier("plus"), new Method(new Identifier("plus"), new Arguments(new Identifier("x"), new Identifier("y")), null, null, null));
-        frame.register(new Identifier("minus"), new Method(new Identifier("minus"), new Arguments(new Identifier("x"), new Identifier("y")), null, null, null));
-        frame.register(new Identifier("divide"), new Method(new Identifier("divide"), new Arguments(new Identifier("x"), new Identifier("y")), null, null, null));
-        program.methods.methods.forEach(m -> frame.register(m.id, m));
+        this.symbols = program.symbols;
+        for (String builtin : SymbolTable.BUILTINS) {
+            globals.put(symbols.intern(builtin), new Method(new Identifier(builtin), new Arguments(new Identifier("x"), new Identifier("y")), null, null, null));
+        }
+        program.methods.methods.forEach(m -> globals.put(symbols.symbol(m.id), m));
         program.methods.accept(this);
         return null;
     }
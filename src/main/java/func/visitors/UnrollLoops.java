@@ -0,0 +1,244 @@
+package func.visitors;
+
+import func.syntax.*;
+import func.syntax.exp.Expression;
+import func.syntax.exp.Expressions;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.Statements;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Read;
+import func.syntax.statement.rw.Write;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unrolls while loops that run a known number of times.
+ * <p>
+ * A loop's trip count is known when its condition compares a variable
+ * with a constant, the variable is set to a constant before the loop
+ * and the body assigns it exactly once, directly, by adding or taking a
+ * constant. Counts that would need the variable to wrap are not worked out.
+ * <p>
+ * A loop that runs at most {@link #FULL_TRIPS} times is replaced by that
+ * many copies of its body. Any other runs factor copies per iteration,
+ * until the variable reaches the value it has after the last whole
+ * group, and the iterations left over follow the loop. Either is only
+ * done while the copies come to at most {@link #MAX_SIZE} nodes.
+ */
+public class UnrollLoops implements ASTVisitor<AST> {
+
+    public static final int FULL_TRIPS = 8;
+    public static final int MAX_SIZE = 160;
+
+    private final int factor;
+    private SymbolTable symbols = new SymbolTable();
+
+    /**
+     * @param factor how many copies of the body to run per iteration of a
+     *               loop that isn't unrolled fully, or 1 to leave them
+     */
+    public UnrollLoops(int factor) {
+        this.factor = factor;
+    }
+
+    /**
+     * The variable a loop's condition compares with a constant, or null.
+     */
+    private FunctionExpression variable(Condition condition) {
+        for (Expression operand : condition.exps.expressions) {
+            if (operand instanceof FunctionExpression && ((FunctionExpression) operand).expressions == null) {
+                return (FunctionExpression) operand;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The constant a variable is set to by the statements before a loop,
+     * or null if it isn't known.
+     */
+    private Integer start(List<Statement> before, int symbol) {
+        for (int i = before.size() - 1; i >= 0; i--) {
+            Statement statement = before.get(i);
+            if (statement instanceof Assign && this.symbols.symbol(((Assign) statement).id) == symbol) {
+                Expression expression = ((Assign) statement).expression;
+                return expression instanceof IntExpression ? ((IntExpression) expression).integer : null;
+            }
+            Map<Integer, Integer> assignments = new HashMap<>();
+            Loops.count(this.symbols, new Statements(before.subList(i, i + 1)), assignments);
+            if (assignments.containsKey(symbol)) return null;
+        }
+        return null;
+    }
+
+    /**
+     * How many times a loop runs whose condition compares a variable going
+     * from start by step with a bound, or -1 if it wraps or never stops.
+     */
+    static long trips(BinaryOp bop, boolean left, long start, long step, long bound) {
+        long trips;
+        switch (bop) {
+            case Eq:
+                trips = start == bound ? 1 : 0;
+                break;
+            case NEq:
+                if (start == bound) trips = 0;
+                else if ((bound - start) % step != 0 || (bound - start) / step < 0) return -1;
+                else trips = (bound - start) / step;
+                break;
+            default:
+                // a variable on the right moves the other way compared to the bound
+                long from = left ? start : -start;
+                long by = left ? step : -step;
+                long to = (left ? bound : -bound) + (bop == BinaryOp.LessEq ? 1 : 0);
+                if (from >= to) trips = 0;
+                else if (by < 0) return -1;
+                else trips = (to - from + by - 1) / by;
+        }
+        long end = start + trips * step;
+        return end >= Integer.MIN_VALUE && end <= Integer.MAX_VALUE ? trips : -1;
+    }
+
+    private List<Statement> copies(Statements body, long count) {
+        List<Statement> copies = new ArrayList<>();
+        for (long i = 0; i < count; i++) copies.addAll(new CopyTree(this.symbols).visit(body).statements);
+        return copies;
+    }
+
+    /**
+     * The statements a loop unrolls to, or null if it is kept as it is.
+     */
+    private List<Statement> unroll(While loop, List<Statement> before) {
+        FunctionExpression variable = this.variable(loop.cond);
+        if (variable == null) return null;
+        List<Expression> operands = loop.cond.exps.expressions;
+        boolean left = operands.get(0) == variable;
+        Expression bound = operands.get(left ? 1 : 0);
+        if (!(bound instanceof IntExpression)) return null;
+
+        int symbol = this.symbols.symbol(variable.id);
+        Map<Integer, Integer> assignments = new HashMap<>();
+        Loops.count(this.symbols, loop.statements, assignments);
+        if (assignments.getOrDefault(symbol, 0) != 1) return null;
+        Integer step = null;
+        for (Statement statement : loop.statements.statements) {
+            if (step == null) step = Loops.step(this.symbols, statement, symbol);
+        }
+        Integer start = this.start(before, symbol);
+        if (step == null || step == 0 || start == null) return null;
+
+        long trips = trips(loop.cond.bop, left, start, step, ((IntExpression) bound).integer);
+        if (trips < 0) return null;
+        int size = new CountNodes().visit(loop.statements);
+        if (trips <= FULL_TRIPS && trips * size <= MAX_SIZE) return this.copies(loop.statements, trips);
+        if (this.factor < 2 || trips < 2L * this.factor || (long) this.factor * size > MAX_SIZE) return null;
+
+        long rest = trips % this.factor;
+        int end = (int) (start + (trips - rest) * step);
+        Condition condition = new Condition(BinaryOp.NEq, new Expressions(new FunctionExpression(variable.id, null), new IntExpression(end)));
+        List<Statement> statements = new ArrayList<>();
+        statements.add(new While(condition, new Statements(this.copies(loop.statements, this.factor))));
+        statements.addAll(this.copies(loop.statements, rest));
+        return statements;
+    }
+
+    @Override
+    public AST visit(Assign cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(If cmd) {
+        cmd.then = this.visit(cmd.then);
+        if (cmd.otherwise != null) cmd.otherwise = this.visit(cmd.otherwise);
+        return cmd;
+    }
+
+    @Override
+    public AST visit(While cmd) {
+        cmd.statements = this.visit(cmd.statements);
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Read cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Write cmd) {
+        return cmd;
+    }
+
+    @Override
+    public AST visit(Expressions expressions) {
+        return expressions;
+    }
+
+    @Override
+    public AST visit(IntExpression intExpression) {
+        return intExpression;
+    }
+
+    @Override
+    public AST visit(FunctionExpression functionExpression) {
+        return functionExpression;
+    }
+
+    /**
+     * Walks a list of statements, unrolling loops once
+     * the loops inside them have been.
+     */
+    @Override
+    public Statements visit(Statements statements) {
+        List<Statement> unrolled = new ArrayList<>();
+        for (Statement statement : statements.statements) {
+            statement = (Statement) statement.accept(this);
+            List<Statement> replacement = statement instanceof While ? this.unroll((While) statement, unrolled) : null;
+            if (replacement != null) unrolled.addAll(replacement);
+            else unrolled.add(statement);
+        }
+        return new Statements(unrolled);
+    }
+
+    @Override
+    public AST visit(Arguments arguments) {
+        return arguments;
+    }
+
+    @Override
+    public AST visit(Condition condition) {
+        return condition;
+    }
+
+    @Override
+    public AST visit(Identifier identifier) {
+        return identifier;
+    }
+
+    @Override
+    public Method visit(Method method) {
+        if (method.statements != null) method.statements = this.visit(method.statements);
+        return method;
+    }
+
+    @Override
+    public Methods visit(Methods methods) {
+        methods.methods.forEach(this::visit);
+        return methods;
+    }
+
+    @Override
+    public Program visit(Program program) {
+        this.symbols = program.symbols;
+        this.visit(program.methods);
+        return program;
+    }
+}
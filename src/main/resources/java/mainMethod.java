@@ -1,4 +1,4 @@
 public static void {{ name }}(String[] args) {
-    {{ vars }}
+    {{{ vars }}}
     {{{ statements }}}
 }
\ No newline at end of file
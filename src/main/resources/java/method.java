@@ -1,5 +1,5 @@
 private static {{ type }} {{ name }}({{ args }}) {
-    {{ vars }}
+    {{{ vars }}}
     {{{ statements }}}
     {{ ret }}
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import func.syntax.Arguments;
 import func.syntax.BinaryOp;
 import func.syntax.Condition;
 import func.syntax.Method;
+import func.syntax.Program;
 import func.syntax.exp.FunctionExpression;
 import func.syntax.statement.Assign;
 import func.syntax.statement.If;
@@ -12,7 +13,14 @@ import func.syntax.statement.Statements;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 public class ParserTest {
 
@@ -253,4 +261,68 @@ public class ParserTest {
         Assertions.assertEquals(0, s.expressions.expressions.size());
         Assertions.assertEquals(0, p.getErrors().size());
     }
+
+    /**
+     * Each method should reach the sink before any of
+     * the following method has been lexed.
+     */
+    @Test
+    public void testStreaming() {
+        String example = "method one() begin x := 1; endmethod; method main() begin y := 2; endmethod;";
+        Lexer l = new Lexer(new StringReader(example));
+        int[] pulled = {0};
+        Iterator<Token> counted = new Iterator<Token>() {
+            @Override
+            public boolean hasNext() {
+                return l.hasNext();
+            }
+
+            @Override
+            public Token next() {
+                pulled[0]++;
+                return l.next();
+            }
+        };
+        Parser p = new Parser(new TokenWindow(counted));
+
+        List<String> seen = new ArrayList<>();
+        p.program(m -> seen.add(m.id.name + "@" + pulled[0]));
+        Assertions.assertEquals(0, p.getErrors().size());
+        Assertions.assertEquals("one@11", seen.get(0));
+        Assertions.assertEquals("main@22", seen.get(1));
+    }
+
+    /**
+     * Recovering from an if with no endif reaches the end of the
+     * program, and the parser should stop there rather than run off it.
+     */
+    @Test
+    public void testUnterminatedIf() {
+        String example = "method main() begin if eq(a, 1) then write a; endmethod;";
+        Lexer l = new Lexer(new StringReader(example));
+        Parser p = new Parser(l);
+
+        Program program = p.program();
+        Assertions.assertEquals(1, program.methods.methods.size());
+        Assertions.assertTrue(p.hasErrors());
+    }
+
+    /**
+     * A window only keeps the last few tokens, so the runs that
+     * recovery skips over have to be kept as they are scanned.
+     * The errors should match those from a buffer of every token.
+     */
+    @Test
+    public void testWindowRecovery() throws IOException {
+        String invalid = new String(Files.readAllBytes(Paths.get("examples", "program_invalid.func")), StandardCharsets.UTF_8);
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 50; i++) source.append(invalid).append('\n');
+
+        Parser buffered = new Parser(TokenBuffer.read(new StringReader(source.toString())));
+        buffered.program(m -> { });
+        Parser windowed = new Parser(new TokenWindow(new Lexer(new StringReader(source.toString()))));
+        windowed.program(m -> { });
+        Assertions.assertTrue(buffered.hasErrors());
+        Assertions.assertEquals(buffered.getErrors().toString(), windowed.getErrors().toString());
+    }
 }
@@ -1,14 +1,23 @@
 package func;
 
 import func.errors.SyntaxError;
+import func.syntax.FlatTree;
 import func.syntax.Program;
+import func.syntax.SymbolTable;
 import func.visitors.ASTPrinter;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
 
 class ParserValidateTest {
 
@@ -78,4 +87,116 @@ class ParserValidateTest {
         printer.visit(program);
         Assertions.assertEquals(string, printer.toString());
     }
-}
\ No newline at end of file
+
+    @ParameterizedTest
+    @ValueSource(strings = {program1, program2, program3})
+    void testBuffered(String string) throws IOException {
+        Parser p = new Parser(TokenBuffer.read(new StringReader(string)));
+        Program program = p.program();
+        ASTPrinter printer = new ASTPrinter();
+        printer.visit(program);
+        Assertions.assertEquals(string, printer.toString());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {program1, program2, program3})
+    void testStreamingPrinter(String string) throws IOException {
+        Program program = new Parser(TokenBuffer.read(new StringReader(string))).program();
+        StringWriter out = new StringWriter();
+        new ASTPrinter(out).visit(program);
+        Assertions.assertEquals(string, out.toString());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {program1, program2, program3})
+    void testFlat(String string) throws IOException {
+        Program program = new Parser(TokenBuffer.read(new StringReader(string))).program();
+        FlatTree tree = FlatTree.of(program);
+        Assertions.assertEquals(string, tree.program().toString());
+        Assertions.assertEquals(FlatTree.Kind.METHOD, tree.kind(tree.method(0)));
+        Program view = tree.program();
+        Assertions.assertSame(view.methods.methods.get(0), view.methods.methods.get(0));
+    }
+
+    /**
+     * An unrecognised statement is parsed to a null, which both
+     * ways of building a flat tree have to keep so that the syntax
+     * errors still get reported.
+     */
+    @Test
+    void testFlatInvalid() throws IOException {
+        String string = "method main() vars x\nbegin\n    x := 1;\n    x x x;\n    write x;\nendmethod;\n";
+        TokenBuffer tokens = TokenBuffer.read(new StringReader(string));
+        Parser parser = new Parser(tokens);
+        Program program = parser.program();
+        Assertions.assertTrue(parser.hasErrors());
+        Assertions.assertEquals(program.toString(), FlatTree.of(program).program().toString());
+
+        FlatTree tree = new FlatTree(new SymbolTable());
+        Parser streaming = new Parser(tokens, tree.symbols());
+        streaming.program(tree::add);
+        Assertions.assertEquals(parser.getErrors().toString(), streaming.getErrors().toString());
+        Assertions.assertEquals(program.toString(), tree.program().toString());
+        Assertions.assertNull(tree.program().methods.methods.get(0).statements.statements.get(1));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {program1, program2, program3})
+    void testBufferedTokens(String string) throws IOException {
+        TokenBuffer buffer = TokenBuffer.read(new StringReader(string));
+        Iterator<Token> symbols = new Lexer(new StringReader(string));
+        int i = 0;
+        while (symbols.hasNext()) {
+            Assertions.assertEquals(symbols.next(), buffer.token(i++));
+        }
+        Assertions.assertEquals(i, buffer.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {program1, program3, "method main() vars caf\u00e9 begin caf\u00e9 := 1; endmethod;\n"})
+    void testMapped(String string) throws IOException {
+        Path file = Files.createTempFile("func", ".func");
+        try {
+            Files.write(file, string.getBytes(StandardCharsets.UTF_8));
+            TokenBuffer mapped = TokenBuffer.read(file);
+            TokenBuffer read = TokenBuffer.read(new StringReader(new String(Files.readAllBytes(file))));
+            Assertions.assertEquals(read.size(), mapped.size());
+            for (int i = 0; i < read.size(); i++) {
+                Assertions.assertEquals(read.token(i), mapped.token(i));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Repeats the program enough times to be split across tasks,
+     * including once with a method that is missing its endmethod
+     * so that the parser has to stitch around it.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {program1, program3, program3 + "method broken() begin x := 1;\n", "write 1;\n" + program1})
+    void testParallel(String string) throws IOException {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 200; i++) source.append(string);
+        TokenBuffer tokens = TokenBuffer.read(new StringReader(source.toString()));
+
+        Parser sequential = new Parser(tokens);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelParser parallel = new ParallelParser(tokens, pool);
+            String expected;
+            try {
+                expected = sequential.program().toString();
+            } catch (SyntaxError e) {
+                SyntaxError thrown = Assertions.assertThrows(SyntaxError.class, parallel::program);
+                Assertions.assertEquals(e.toString(), thrown.toString());
+                return;
+            }
+            Assertions.assertEquals(expected, parallel.program().toString());
+            Assertions.assertEquals(sequential.getErrors().toString(), parallel.getErrors().toString());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
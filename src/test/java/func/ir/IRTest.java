@@ -0,0 +1,106 @@
+package func.ir;
+
+import func.Func;
+import func.syntax.Program;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IRTest {
+
+    private static final String POW = "" +
+        "method pow(x, y) vars i, res\n" +
+        "begin\n" +
+        "    res := x;\n" +
+        "    i := 1;\n" +
+        "    while less(i, y)\n" +
+        "    begin\n" +
+        "        res := times(res, x);\n" +
+        "        i := plus(i, 1);\n" +
+        "    endwhile;\n" +
+        "    return res;\n" +
+        "endmethod;\n" +
+        "\n" +
+        "method main() vars a\n" +
+        "begin\n" +
+        "    a := pow(2, 5);\n" +
+        "    write a;\n" +
+        "endmethod;\n";
+
+    private static Function pow() {
+        Program program = Func.parseProgram(new ByteArrayInputStream(POW.getBytes()));
+        return Lowering.lower(program).stream().filter(f -> f.name.equals("pow")).findFirst().orElseThrow(AssertionError::new);
+    }
+
+    @Test
+    void testDominators() {
+        Function pow = pow();
+        BasicBlock entry = pow.entry();
+        BasicBlock header = ((Jump) entry.terminator).target;
+        Branch branch = (Branch) header.terminator;
+
+        DominatorTree dominators = new DominatorTree(pow);
+        assertNull(dominators.immediateDominator(entry));
+        assertEquals(entry, dominators.immediateDominator(header));
+        assertEquals(header, dominators.immediateDominator(branch.ifTrue));
+        assertEquals(header, dominators.immediateDominator(branch.ifFalse));
+        assertFalse(dominators.dominates(branch.ifTrue, branch.ifFalse));
+        assertEquals(Collections.singleton(header), dominators.frontier(branch.ifTrue));
+    }
+
+    @Test
+    void testPhisAtLoopHeader() {
+        Function pow = SSABuilder.build(pow());
+        BasicBlock header = ((Jump) pow.entry().terminator).target;
+
+        Set<Variable> phis = new HashSet<>();
+        header.phis.forEach(phi -> phis.add(phi.target.base()));
+        assertEquals(new HashSet<>(Arrays.asList(Variable.named("i"), Variable.named("res"))), phis);
+
+        Set<Variable> defined = new HashSet<>();
+        for (BasicBlock block : pow.blocks) {
+            block.phis.forEach(phi -> assertTrue(defined.add(phi.target)));
+            for (Instruction instruction : block.instructions) {
+                if (instruction.def() != null) assertTrue(defined.add(instruction.def()), instruction + " redefines");
+            }
+        }
+    }
+
+    @Test
+    void testDestruct() {
+        Function pow = SSADestructor.destruct(SSABuilder.build(pow()));
+        for (BasicBlock block : pow.blocks) {
+            assertTrue(block.phis.isEmpty());
+            for (Instruction instruction : block.instructions) {
+                List<Operand> operands = new ArrayList<>(instruction.uses());
+                operands.add(instruction.def());
+                for (Operand operand : operands) {
+                    if (operand instanceof Variable) assertEquals(Variable.UNVERSIONED, ((Variable) operand).version);
+                }
+                if (instruction instanceof Move) assertNotEquals(((Move) instruction).target, ((Move) instruction).source);
+            }
+        }
+    }
+
+    @Test
+    void testDestructInterfering() {
+        // x.1 and x.2 are live at once, so cannot both go back to x
+        Variable x = Variable.named("x");
+        Function function = new Function("main", new ArrayList<>(), new ArrayList<>(Collections.singletonList(x)));
+        BasicBlock block = function.newBlock();
+        block.instructions.add(new Move(x.version(1), new Constant(1)));
+        block.instructions.add(new Move(x.version(2), new Constant(2)));
+        block.instructions.add(new WriteInt(x.version(1)));
+        block.instructions.add(new WriteInt(x.version(2)));
+        block.terminator = new Return(null);
+
+        SSADestructor.destruct(function);
+        Operand first = ((WriteInt) block.instructions.get(2)).value;
+        Operand second = ((WriteInt) block.instructions.get(3)).value;
+        assertEquals(x, first);
+        assertNotEquals(first, second);
+    }
+}
@@ -0,0 +1,82 @@
+package func.ir;
+
+import func.visitors.MIPSCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeepholeTest {
+
+    /**
+     * The labels and instructions left by optimising some lines,
+     * without comments or indentation.
+     */
+    private static List<String> optimise(Peephole peephole, String... lines) {
+        String assembly = Arrays.stream(lines).map(line -> line.endsWith(":") ? line : "\t" + line).collect(Collectors.joining("\n"));
+        return Arrays.stream(peephole.optimise(assembly).split("\n")).map(String::trim).filter(line -> !line.startsWith("#")).collect(Collectors.toList());
+    }
+
+    private static List<String> optimise(String... lines) {
+        return optimise(MIPSBackend.peephole(), lines);
+    }
+
+    @Test
+    void pushPopAroundStraightLineCodeCancels() {
+        Peephole peephole = MIPSBackend.peephole();
+        List<String> code = optimise(peephole, "move $t8, $s1", "addi $sp, $sp, -4", "sw $t8, 0($sp)", "li $t9, 5",
+            "lw $t8, 0($sp)", "addi $sp, $sp, 4", "bge $t8, $t9, end", "li $v0, 1", "end:", "jr $ra");
+        assertEquals(Arrays.asList("li $t9, 5", "bge $s1, $t9, end", "li $v0, 1", "end:", "jr $ra"), code);
+        assertEquals(Arrays.asList("push/pop cancellation", "move coalescing", "jump to next label", "redundant loads"),
+            new ArrayList<>(peephole.removed().keySet()));
+        assertEquals(Arrays.asList(4, 1, 0, 0), new ArrayList<>(peephole.removed().values()));
+    }
+
+    @Test
+    void pushPopAroundCallIsKept() {
+        String[] lines = {"addi $sp, $sp, -4", "sw $t0, 0($sp)", "jal f", "lw $t0, 0($sp)", "addi $sp, $sp, 4", "move $v0, $t0", "jr $ra"};
+        assertEquals(Arrays.asList(lines), optimise(lines));
+    }
+
+    @Test
+    void popIntoAnotherRegisterMoves() {
+        assertEquals(Arrays.asList("li $t9, 1", "add $s1, $s0, $t9", "jr $ra"), optimise(
+            "addi $sp, $sp, -4", "sw $s0, 0($sp)", "li $t9, 1", "lw $s1, 0($sp)", "addi $sp, $sp, 4", "add $s1, $s1, $t9", "jr $ra"));
+    }
+
+    @Test
+    void movesCoalesce() {
+        assertEquals(Arrays.asList("jal f", "move $a0, $v0", "li $v0, 1", "syscall", "jr $ra"),
+            optimise("jal f", "move $t0, $v0", "move $a0, $t0", "li $v0, 1", "syscall", "jr $ra"));
+        assertEquals(Arrays.asList("li $s2, 7", "jr $ra"), optimise("li $t8, 7", "move $s2, $t8", "move $s0, $s0", "jr $ra"));
+    }
+
+    @Test
+    void valuesReadAfterLabelsAreKept() {
+        String[] lines = {"move $s1, $s0", "loop:", "add $s2, $s2, $s1", "j loop"};
+        assertEquals(Arrays.asList(lines), optimise(lines));
+    }
+
+    @Test
+    void syntaxTreeValuesLiveAcrossCalls() {
+        assertEquals(Arrays.asList("move $t8, $s0", "move $a0, $s1", "jal f", "add $s2, $t8, $v0", "jr $ra"), optimise(MIPSCompiler.peephole(),
+            "move $t8, $s0", "move $a0, $s1", "jal f", "move $t9, $v0", "add $s2, $t8, $t9", "jr $ra"));
+    }
+
+    @Test
+    void jumpsToNextLabelAreRemoved() {
+        assertEquals(Arrays.asList("other:", "next:", "end:", "j next", "jr $ra"),
+            optimise("j next", "# comment", "other:", "next:", "beq $s0, $s1, end", "end:", "j next", "jr $ra"));
+    }
+
+    @Test
+    void redundantLoadsAreRemoved() {
+        assertEquals(Arrays.asList("li $t9, 4", "add $s0, $s0, $t9", "add $s1, $s1, $t9", "loop:", "li $t9, 4", "sub $s0, $s0, $t9", "jr $ra"),
+            optimise("li $t9, 4", "add $s0, $s0, $t9", "li $t9, 4", "add $s1, $s1, $t9", "loop:", "li $t9, 4", "sub $s0, $s0, $t9", "jr $ra"));
+        assertEquals(Arrays.asList("sw $s0, 0($sp)", "jr $ra"), optimise("sw $s0, 0($sp)", "lw $s0, 0($sp)", "jr $ra"));
+    }
+}
@@ -0,0 +1,96 @@
+package func.ir;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StrengthReductionTest {
+
+    private static final int[] SPECIAL = {0, 1, -1, 2, -2, 3, 7, 100, -100, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE + 1};
+
+    /**
+     * Runs the few instructions the sequences use.
+     */
+    private static int run(List<String> code, String dest, String x, int value) {
+        Map<String, Integer> registers = new HashMap<>();
+        registers.put("$zero", 0);
+        registers.put(x, value);
+        int hi = 0;
+        for (String line : code) {
+            String[] parts = line.split("[ ,]+");
+            int a = parts.length > 2 && registers.containsKey(parts[2]) ? registers.get(parts[2]) : 0;
+            int b = parts.length > 3 ? (registers.containsKey(parts[3]) ? registers.get(parts[3]) : Integer.parseInt(parts[3])) : 0;
+            switch (parts[0]) {
+                case "li":
+                    registers.put(parts[1], Integer.parseInt(parts[2]));
+                    break;
+                case "move":
+                    registers.put(parts[1], a);
+                    break;
+                case "addu":
+                    registers.put(parts[1], a + b);
+                    break;
+                case "subu":
+                    registers.put(parts[1], a - b);
+                    break;
+                case "sll":
+                    registers.put(parts[1], a << b);
+                    break;
+                case "sra":
+                    registers.put(parts[1], a >> b);
+                    break;
+                case "srl":
+                    registers.put(parts[1], a >>> b);
+                    break;
+                case "mult":
+                    hi = (int) ((long) registers.get(parts[1]) * a >> 32);
+                    break;
+                case "mfhi":
+                    registers.put(parts[1], hi);
+                    break;
+                default:
+                    fail("unexpected " + line);
+            }
+        }
+        return registers.get(dest);
+    }
+
+    private static void check(int c, int value) {
+        for (String dest : new String[]{"$t8", "$s0"}) {
+            List<String> times = StrengthReduction.times(dest, "$t8", c, "$t9");
+            if (times != null) assertEquals(value * c, run(times, dest, "$t8", value), value + " * " + c + ": " + times);
+            List<String> divide = StrengthReduction.divide(dest, "$t8", c, "$t9");
+            if (divide != null) assertEquals(value / c, run(divide, dest, "$t8", value), value + " / " + c + ": " + divide);
+        }
+    }
+
+    @Test
+    void testConstants() {
+        Random random = new Random(0);
+        for (int c = -300; c <= 300; c++) {
+            for (int value : SPECIAL) check(c, value);
+            for (int i = 0; i < 200; i++) check(c, random.nextInt());
+        }
+        for (int i = 0; i < 2000; i++) {
+            int c = random.nextInt();
+            for (int value : SPECIAL) check(c, value);
+            check(c, random.nextInt());
+            for (int value : SPECIAL) check(value, random.nextInt());
+        }
+    }
+
+    @Test
+    void testShapes() {
+        assertEquals("[sll $s0, $t8, 3]", StrengthReduction.times("$s0", "$t8", 8, "$t9").toString());
+        assertEquals("[sll $t9, $t8, 3, sll $s0, $t8, 1, addu $s0, $t9, $s0]", StrengthReduction.times("$s0", "$t8", 10, "$t9").toString());
+        assertEquals("[sll $t9, $t8, 3, subu $s0, $t9, $t8]", StrengthReduction.times("$s0", "$t8", 7, "$t9").toString());
+        assertNull(StrengthReduction.times("$s0", "$t8", 11, "$t9"));
+        assertNull(StrengthReduction.divide("$s0", "$t8", 0, "$t9"));
+        assertFalse(StrengthReduction.divide("$s0", "$t8", 7, "$t9").stream().anyMatch(line -> line.startsWith("div")));
+    }
+}
@@ -0,0 +1,111 @@
+package func.passes;
+
+import func.Func;
+import func.syntax.Program;
+import func.visitors.CleanTree;
+import func.visitors.EliminateDeadCode;
+import func.visitors.EliminateDeadMethods;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PassManagerTest {
+
+    private static final String PROGRAM = "" +
+        "method main() vars a\n" +
+        "begin\n" +
+        "    a := plus(1, 2);\n" +
+        "    write a;\n" +
+        "endmethod;\n";
+
+    /**
+     * Counts how many times it is computed.
+     */
+    private static class Counting implements Analysis<Integer> {
+        int runs;
+
+        @Override
+        public String name() {
+            return "counting";
+        }
+
+        @Override
+        public Integer analyse(Program program, PassManager passes) {
+            return ++this.runs;
+        }
+    }
+
+    private static PassManager passes() {
+        PassManager passes = new PassManager();
+        passes.setProgram(Func.parseProgram(new ByteArrayInputStream(PROGRAM.getBytes())));
+        return passes;
+    }
+
+    @Test
+    void testCached() {
+        PassManager passes = passes();
+        Counting counting = new Counting();
+        assertEquals(1, (int) passes.get(counting));
+        assertEquals(1, (int) passes.get(counting));
+        assertSame(passes.get(Analyses.DIAGNOSTICS), passes.get(Analyses.DIAGNOSTICS));
+    }
+
+    @Test
+    void testInvalidated() {
+        PassManager passes = passes();
+        Counting counting = new Counting();
+        Counting untouched = new Counting();
+        passes.get(counting);
+        passes.get(untouched);
+
+        passes.run(new VisitorPass("clean", CleanTree::new, counting));
+        assertEquals(2, (int) passes.get(counting));
+        assertEquals(1, (int) passes.get(untouched));
+    }
+
+    @Test
+    void testRequires() {
+        PassManager passes = passes();
+        Counting counting = new Counting();
+        passes.run(new Pass() {
+            @Override
+            public String name() {
+                return "requiring";
+            }
+
+            @Override
+            public List<Analysis<?>> requires() {
+                return Collections.singletonList(counting);
+            }
+
+            @Override
+            public Program run(Program program, PassManager passes) {
+                assertEquals(1, (int) passes.get(counting));
+                return program;
+            }
+        });
+        assertEquals(1, counting.runs);
+    }
+
+    /**
+     * Passes that only change method bodies keep the call graph
+     * for the passes after them, which are given the cached one.
+     */
+    @Test
+    void testCallGraphShared() {
+        PassManager passes = passes();
+        CallGraph graph = passes.get(Analyses.CALL_GRAPH);
+        passes.run(new VisitorPass("dead code elimination", EliminateDeadCode::new, Analyses.BODIES));
+        assertSame(graph, passes.get(Analyses.CALL_GRAPH));
+
+        passes.run(new VisitorPass("dead method elimination", Collections.singletonList(Analyses.CALL_GRAPH), manager -> {
+            assertSame(graph, manager.get(Analyses.CALL_GRAPH));
+            return new EliminateDeadMethods(manager.get(Analyses.CALL_GRAPH));
+        }, Analyses.ALL));
+        assertNotSame(graph, passes.get(Analyses.CALL_GRAPH));
+    }
+}
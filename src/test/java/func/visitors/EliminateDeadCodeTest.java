@@ -0,0 +1,59 @@
+package func.visitors;
+
+import func.syntax.Method;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static func.visitors.Passes.statements;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EliminateDeadCodeTest {
+
+    private static Method eliminate(String source) throws IOException {
+        return Passes.apply(source, new EliminateDeadCode());
+    }
+
+    @Test
+    void testDeadStores() throws IOException {
+        Method method = eliminate("method f(a) vars x, y, z, i\n" +
+            "begin\n" +
+            "    x := 1;\n" +
+            "    y := times(a, 2);\n" +
+            "    z := f(a);\n" +
+            "    read z;\n" +
+            "    x := plus(a, 1);\n" +
+            "    if less(a, 0) then\n" +
+            "        y := 3;\n" +
+            "    else\n" +
+            "        i := divide(a, 2);\n" +
+            "    endif;\n" +
+            "    y := divide(a, x);\n" +
+            "    write z;\n" +
+            "    return x;\n" +
+            "endmethod;\n");
+        assertEquals("[z := f(a), read z, x := plus(a, 1), y := divide(a, x), write z]", statements(method.statements.statements).toString());
+        assertEquals("x, y, z", method.vars.toString());
+    }
+
+    @Test
+    void testLoops() throws IOException {
+        Method method = eliminate("method f(a) vars x, y, i\n" +
+            "begin\n" +
+            "    x := 0;\n" +
+            "    y := 0;\n" +
+            "    i := 0;\n" +
+            "    while less(i, a)\n" +
+            "    begin\n" +
+            "        y := times(x, 2);\n" +
+            "        x := plus(x, i);\n" +
+            "        i := plus(i, 1);\n" +
+            "    endwhile;\n" +
+            "    return x;\n" +
+            "endmethod;\n");
+        List<String> statements = statements(method.statements.statements);
+        assertEquals("[x := 0, i := 0, while less(i, a)]", statements.toString());
+        assertEquals("x, i", method.vars.toString());
+    }
+}
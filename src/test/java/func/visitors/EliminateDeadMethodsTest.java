@@ -0,0 +1,34 @@
+package func.visitors;
+
+import func.Parser;
+import func.TokenBuffer;
+import func.syntax.Method;
+import func.syntax.Program;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EliminateDeadMethodsTest {
+
+    private static String method(String name, String calls) {
+        return "method " + name + "(n) vars r\nbegin\n    r := n;\n" + calls + "    return r;\nendmethod;\n";
+    }
+
+    @Test
+    void testReachable() throws IOException {
+        String source = "" +
+            method("unused", "    r := c(r);\n") +
+            method("c", "") +
+            method("b", "    r := b(c(r));\n") +
+            method("a", "    r := d(r);\n    r := a(r);\n") +
+            method("d", "    r := plus(a(r), 1);\n") +
+            "method main() vars x\nbegin\n    x := a(1);\n    write b(x);\nendmethod;\n";
+        Program program = new Parser(TokenBuffer.read(new StringReader(source))).program();
+        program.accept(new EliminateDeadMethods());
+        assertEquals("main, a, d, b, c", program.methods.methods.stream().map((Method m) -> m.id.name).collect(Collectors.joining(", ")));
+    }
+}
@@ -0,0 +1,96 @@
+package func.visitors;
+
+import func.syntax.Method;
+import func.syntax.statement.While;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static func.visitors.Passes.statements;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EliminateTailCallsTest {
+
+    private static Method eliminate(String source) throws IOException {
+        return Passes.apply(source, new EliminateTailCalls());
+    }
+
+    @Test
+    void testLoopBranch() throws IOException {
+        Method method = eliminate("method gcd(a, b) vars r\n" +
+            "begin\n" +
+            "    if eq(b, 0) then\n" +
+            "        r := a;\n" +
+            "    else\n" +
+            "        r := gcd(b, minus(a, times(divide(a, b), b)));\n" +
+            "    endif;\n" +
+            "    return r;\n" +
+            "endmethod;\n");
+        assertEquals("[while nEq(b, 0), r := a]", statements(method.statements.statements).toString());
+        While loop = (While) method.statements.statements.get(0);
+        assertEquals("[gcd_tmp := a, a := b, b := minus(gcd_tmp, times(divide(gcd_tmp, b), b))]",
+            statements(loop.statements.statements).toString());
+        assertEquals("r, gcd_tmp", method.vars.toString());
+    }
+
+    @Test
+    void testFlag() throws IOException {
+        Method method = eliminate("method count(n, acc) vars r\n" +
+            "begin\n" +
+            "    write n;\n" +
+            "    r := acc;\n" +
+            "    if less(0, n) then\n" +
+            "        r := count(minus(n, 1), plus(acc, 1));\n" +
+            "    else\n" +
+            "        write 0;\n" +
+            "    endif;\n" +
+            "    return r;\n" +
+            "endmethod;\n");
+        assertEquals("[count_loop := 1, while eq(count_loop, 1)]", statements(method.statements.statements).toString());
+        While loop = (While) method.statements.statements.get(1);
+        assertEquals("[count_loop := 0, write n, r := acc, if less(0, n)]", statements(loop.statements.statements).toString());
+        assertEquals("r, count_loop", method.vars.toString());
+    }
+
+    @Test
+    void testImpureArguments() throws IOException {
+        Method method = eliminate("method f(a, b) vars r\n" +
+            "begin\n" +
+            "    if eq(a, 0) then\n" +
+            "        r := b;\n" +
+            "    else\n" +
+            "        r := f(g(b), h(a));\n" +
+            "    endif;\n" +
+            "    return r;\n" +
+            "endmethod;\n" +
+            "method g(x) vars y\n" +
+            "begin\n" +
+            "    write x;\n" +
+            "    y := minus(x, 1);\n" +
+            "    return y;\n" +
+            "endmethod;\n" +
+            "method h(x) vars y\n" +
+            "begin\n" +
+            "    write plus(x, 100);\n" +
+            "    y := minus(x, 1);\n" +
+            "    return y;\n" +
+            "endmethod;\n");
+        While loop = (While) method.statements.statements.get(0);
+        assertEquals("[f_tmp := g(b), f_tmp2 := h(a), a := f_tmp, b := f_tmp2]", statements(loop.statements.statements).toString());
+        assertEquals("r, f_tmp, f_tmp2", method.vars.toString());
+    }
+
+    @Test
+    void testNotTail() throws IOException {
+        Method method = eliminate("method fact(n) vars r\n" +
+            "begin\n" +
+            "    if lesseq(n, 1) then\n" +
+            "        r := 1;\n" +
+            "    else\n" +
+            "        r := times(n, fact(minus(n, 1)));\n" +
+            "    endif;\n" +
+            "    return r;\n" +
+            "endmethod;\n");
+        assertEquals("[if lessEq(n, 1)]", statements(method.statements.statements).toString());
+    }
+}
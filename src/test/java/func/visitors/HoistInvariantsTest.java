@@ -0,0 +1,64 @@
+package func.visitors;
+
+import func.syntax.Method;
+import func.syntax.statement.While;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static func.visitors.Passes.statements;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HoistInvariantsTest {
+
+    private static Method hoist(String source) throws IOException {
+        return Passes.apply(source, new HoistInvariants());
+    }
+
+    @Test
+    void testHoist() throws IOException {
+        Method method = hoist("method f(n, m) vars i, s\n" +
+            "begin\n" +
+            "    s := 0;\n" +
+            "    i := 0;\n" +
+            "    while less(i, times(n, 4))\n" +
+            "    begin\n" +
+            "        s := plus(s, plus(times(n, m), times(i, divide(m, s))));\n" +
+            "        write times(n, m);\n" +
+            "        read m;\n" +
+            "        i := plus(i, 1);\n" +
+            "    endwhile;\n" +
+            "    return s;\n" +
+            "endmethod;\n");
+        assertEquals("[s := 0, i := 0, inv := times(n, 4), while less(i, inv)]", statements(method.statements.statements).toString());
+        While loop = (While) method.statements.statements.get(3);
+        assertEquals("s := plus(s, plus(times(n, m), times(i, divide(m, s))))", loop.statements.statements.get(0).toString());
+        assertEquals("n, m, i, s, inv", method.args + ", " + method.vars);
+    }
+
+    @Test
+    void testNested() throws IOException {
+        Method method = hoist("method f(n, m) vars i, j, s\n" +
+            "begin\n" +
+            "    s := 0;\n" +
+            "    i := 0;\n" +
+            "    while less(i, times(n, 4))\n" +
+            "    begin\n" +
+            "        j := 0;\n" +
+            "        while less(j, plus(m, i))\n" +
+            "        begin\n" +
+            "            s := plus(s, plus(times(n, m), times(i, divide(m, 2))));\n" +
+            "            j := plus(j, 1);\n" +
+            "        endwhile;\n" +
+            "        i := plus(i, 1);\n" +
+            "    endwhile;\n" +
+            "    return s;\n" +
+            "endmethod;\n");
+        assertEquals("[s := 0, i := 0, inv := times(n, m), inv2 := divide(m, 2), while less(i, times(n, 4))]",
+            statements(method.statements.statements).toString());
+        While outer = (While) method.statements.statements.get(4);
+        assertEquals("[j := 0, while less(j, plus(m, i)), i := plus(i, 1)]", statements(outer.statements.statements).toString());
+        While inner = (While) outer.statements.statements.get(1);
+        assertEquals("s := plus(s, plus(inv, times(i, inv2)))", inner.statements.statements.get(0).toString());
+    }
+}
@@ -0,0 +1,73 @@
+package func.visitors;
+
+import func.Parser;
+import func.TokenBuffer;
+import func.syntax.Method;
+import func.syntax.Program;
+import func.syntax.statement.Statement;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InlineMethodsTest {
+
+    private static final String SOURCE = "" +
+        "method sq(a) vars r\n" +
+        "begin\n" +
+        "    r := times(a, a);\n" +
+        "    return r;\n" +
+        "endmethod;\n" +
+        "method fact(n) vars r\n" +
+        "begin\n" +
+        "    r := 1;\n" +
+        "    if less(n, 2) then\n" +
+        "        r := 1;\n" +
+        "    else\n" +
+        "        r := times(n, fact(minus(n, 1)));\n" +
+        "    endif;\n" +
+        "    return r;\n" +
+        "endmethod;\n" +
+        "method quad(a) vars r\n" +
+        "begin\n" +
+        "    r := sq(a);\n" +
+        "    r := sq(r);\n" +
+        "    return r;\n" +
+        "endmethod;\n";
+
+    private static Program inline(String main, int size, int depth) throws IOException {
+        Program program = new Parser(TokenBuffer.read(new StringReader(SOURCE + main))).program();
+        program.accept(new InlineMethods(size, depth));
+        return program;
+    }
+
+    private static List<String> statements(Method method) {
+        return method.statements.statements.stream().map(Statement::toString).collect(Collectors.toList());
+    }
+
+    @Test
+    void testInline() throws IOException {
+        Program program = inline("method main() vars x, r\nbegin\n    x := quad(3);\n    write fact(x);\nendmethod;\n", 40, 3);
+        Method main = program.mainMethod();
+        assertEquals("[quad_a := 3, sq_a := quad_a, sq_r := times(sq_a, sq_a), quad_r := sq_r, " +
+            "sq_a := quad_r, sq_r := times(sq_a, sq_a), quad_r := sq_r, x := quad_r, write fact(x)]", statements(main).toString());
+        assertEquals("x, r, quad_a, quad_r, sq_a, sq_r", main.vars.toString());
+        assertEquals("[sq_a := a, sq_r := times(sq_a, sq_a), r := sq_r, sq_a := r, sq_r := times(sq_a, sq_a), r := sq_r]",
+            statements(program.methods.methods.get(2)).toString());
+    }
+
+    @Test
+    void testLimits() throws IOException {
+        String main = "method main() vars x, y, z, w\nbegin\n    x := quad(3);\n    write x;\nendmethod;\n";
+        assertEquals("[quad_a := 3, quad_r := sq(quad_a), quad_r := sq(quad_r), x := quad_r, write x]",
+            statements(inline(main, 40, 1).mainMethod()).toString());
+        assertEquals("[x := quad(3), write x]", statements(inline(main, 5, 3).mainMethod()).toString());
+        String full = "method main() vars x, y, z, w, v\nbegin\n    x := quad(3);\n    write x;\nendmethod;\n";
+        assertEquals("[quad_a := 3, quad_r := sq(quad_a), quad_r := sq(quad_r), x := quad_r, write x]",
+            statements(inline(full, 40, 3).mainMethod()).toString());
+    }
+}
@@ -0,0 +1,79 @@
+package func.visitors;
+
+import func.syntax.Method;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import func.syntax.statement.While;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static func.visitors.Passes.statements;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NumberValuesTest {
+
+    private static Method number(String source) throws IOException {
+        return Passes.apply(source, new NumberValues());
+    }
+
+    @Test
+    void testStraightLine() throws IOException {
+        Method method = number("method f(a, b) vars x, y, z\n" +
+            "begin\n" +
+            "    x := plus(a, b);\n" +
+            "    y := x;\n" +
+            "    z := times(plus(b, a), f(a, a));\n" +
+            "    write times(a, divide(b, 2));\n" +
+            "    z := plus(times(a, divide(b, 2)), plus(a, b));\n" +
+            "    y := plus(b, a);\n" +
+            "    read a;\n" +
+            "    write plus(a, b);\n" +
+            "    return z;\n" +
+            "endmethod;\n");
+        assertEquals("[x := plus(a, b), y := x, z := times(x, f(a, a)), cse := times(a, divide(b, 2)), " +
+                "write cse, z := plus(cse, x), read a, write plus(a, b)]",
+            statements(method.statements.statements).toString());
+        assertEquals("x, y, z, cse", method.vars.toString());
+    }
+
+    @Test
+    void testBranches() throws IOException {
+        Method method = number("method f(a, b) vars x\n" +
+            "begin\n" +
+            "    if less(times(a, b), 10) then\n" +
+            "        x := times(a, b);\n" +
+            "        a := 1;\n" +
+            "    else\n" +
+            "        x := minus(a, b);\n" +
+            "    endif;\n" +
+            "    write times(a, b);\n" +
+            "    write minus(a, b);\n" +
+            "    return x;\n" +
+            "endmethod;\n");
+        List<Statement> statements = method.statements.statements;
+        assertEquals("[cse := times(a, b), if less(cse, 10), write times(a, b), write minus(a, b)]", statements(statements).toString());
+        assertEquals("[x := cse, a := 1]", statements(((If) statements.get(1)).then.statements).toString());
+    }
+
+    @Test
+    void testLoop() throws IOException {
+        Method method = number("method f(a, b) vars x, i\n" +
+            "begin\n" +
+            "    x := times(plus(a, b), 2);\n" +
+            "    i := 0;\n" +
+            "    while less(i, plus(a, b))\n" +
+            "    begin\n" +
+            "        x := plus(x, times(plus(a, b), 2));\n" +
+            "        i := plus(i, 1);\n" +
+            "    endwhile;\n" +
+            "    x := plus(x, times(plus(a, b), 2));\n" +
+            "    return x;\n" +
+            "endmethod;\n");
+        List<Statement> statements = method.statements.statements;
+        assertEquals("[cse := plus(a, b), cse2 := times(cse, 2), x := cse2, i := 0, while less(i, cse), x := plus(x, cse2)]",
+            statements(statements).toString());
+        assertEquals("[x := plus(x, cse2), i := plus(i, 1)]", statements(((While) statements.get(4)).statements.statements).toString());
+    }
+}
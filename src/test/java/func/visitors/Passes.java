@@ -0,0 +1,74 @@
+package func.visitors;
+
+import func.Parser;
+import func.TokenBuffer;
+import func.passes.Evaluator;
+import func.syntax.ASTVisitor;
+import func.syntax.Method;
+import func.syntax.Program;
+import func.syntax.statement.Statement;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs passes over programs in the tests.
+ */
+final class Passes {
+
+    private static final int FUEL = 10_000;
+
+    /**
+     * The arguments methods are called with, by position.
+     */
+    private static final int[] VALUES = {0, 1, 2, 5, 9, -3};
+
+    private Passes() {
+    }
+
+    static Program parse(String source) throws IOException {
+        return new Parser(TokenBuffer.read(new StringReader(source))).program();
+    }
+
+    /**
+     * The first method of a program after running a pass over it.
+     * Every method has to give the same results before and after the
+     * pass on a few arguments, where they can be worked out.
+     */
+    static Method apply(String source, ASTVisitor<?> pass) throws IOException {
+        Program before = parse(source);
+        Program after = parse(source);
+        after.accept(pass);
+
+        Evaluator original = Evaluator.of(before, FUEL);
+        Evaluator changed = Evaluator.of(after, FUEL);
+        for (int i = 0; i < before.methods.methods.size(); i++) {
+            Method method = before.methods.methods.get(i);
+            Method result = after.methods.methods.get(i);
+            for (List<Integer> arguments : arguments(method.args == null ? 0 : method.args.identifiers.size())) {
+                assertEquals(original.call(method.id, arguments), changed.call(result.id, arguments),
+                    () -> method.id + "" + arguments);
+            }
+        }
+        return after.methods.methods.get(0);
+    }
+
+    private static List<List<Integer>> arguments(int count) {
+        List<List<Integer>> arguments = new ArrayList<>();
+        for (int row = 0; row < VALUES.length; row++) {
+            List<Integer> values = new ArrayList<>();
+            for (int i = 0; i < count; i++) values.add(VALUES[(row + i) % VALUES.length]);
+            arguments.add(values);
+        }
+        return arguments;
+    }
+
+    static List<String> statements(List<Statement> statements) {
+        return statements.stream().map(Statement::toString).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,132 @@
+package func.visitors;
+
+import func.Parser;
+import func.TokenBuffer;
+import func.syntax.Program;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgramAnalyserTest {
+
+    private static Program parse(String source) throws IOException {
+        return new Parser(TokenBuffer.read(new StringReader(source))).program();
+    }
+
+    /**
+     * Checks the fused analyser reports exactly what the three separate passes do.
+     */
+    private static void assertSameDiagnostics(String source) throws IOException {
+        SemanticAnalyser sa = new SemanticAnalyser();
+        parse(source).accept(sa);
+        AssignmentAnalyser aa = new AssignmentAnalyser();
+        parse(source).accept(aa);
+        TypeChecker tc = new TypeChecker();
+        parse(source).accept(tc);
+
+        ProgramAnalyser pa = new ProgramAnalyser();
+        parse(source).accept(pa);
+        assertEquals(sa.getErrors().toString(), pa.getSemanticErrors().toString());
+        assertEquals(aa.getErrors().toString(), pa.getAssignmentErrors().toString());
+        assertEquals(tc.getErrors().toString(), pa.getTypeErrors().toString());
+    }
+
+    @Test
+    void testValid() throws IOException {
+        String source = "method pow(x, y) vars i, res\n" +
+            "begin\n" +
+            "    res := x;\n" +
+            "    i := 1;\n" +
+            "    while less(i, y)\n" +
+            "    begin\n" +
+            "        res := times(res, x);\n" +
+            "        i := plus(i, 1);\n" +
+            "    endwhile;\n" +
+            "    return res;\n" +
+            "endmethod;\n" +
+            "method main() vars a\n" +
+            "begin\n" +
+            "    a := pow(2, 5);\n" +
+            "    write a;\n" +
+            "endmethod;\n";
+        ProgramAnalyser pa = new ProgramAnalyser();
+        parse(source).accept(pa);
+        assertTrue(pa.getSemanticErrors().isEmpty());
+        assertTrue(pa.getAssignmentErrors().isEmpty());
+        assertTrue(pa.getTypeErrors().isEmpty());
+    }
+
+    @Test
+    void testErrors() throws IOException {
+        assertSameDiagnostics("method f(a, b) vars c, a\n" +
+            "begin\n" +
+            "    while less(a, 3)\n" +
+            "    begin\n" +
+            "        write d;\n" +
+            "    endwhile;\n" +
+            "    c := c;\n" +
+            "    c := f;\n" +
+            "    a := f(c);\n" +
+            "    write c;\n" +
+            "    return c;\n" +
+            "endmethod;\n" +
+            "method g() vars x\n" +
+            "begin\n" +
+            "    x := y;\n" +
+            "endmethod;\n" +
+            "method main(q)\n" +
+            "begin\n" +
+            "    q := g(1);\n" +
+            "    write plus(q, times(q));\n" +
+            "endmethod;\n");
+    }
+
+    @Test
+    void testLoopCondition() throws IOException {
+        assertSameDiagnostics("method main() vars i, j\n" +
+            "begin\n" +
+            "    i := 0;\n" +
+            "    j := 0;\n" +
+            "    while less(i, 3)\n" +
+            "    begin\n" +
+            "        j := plus(j, 1);\n" +
+            "    endwhile;\n" +
+            "    while less(j, 3)\n" +
+            "    begin\n" +
+            "        i := plus(i, 1);\n" +
+            "    endwhile;\n" +
+            "endmethod;\n");
+    }
+
+    @Test
+    void testParallel() throws IOException {
+        // enough methods to be split between tasks, with the first errors of each kind well in
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            source.append("method f").append(i).append("(a) vars b\n")
+                .append("begin\n")
+                .append(i == 300 ? "    write c;\n" : "")
+                .append(i >= 200 && i % 50 == 0 ? "    write b;\n" : "")
+                .append(i % 70 == 69 ? "    b := f0(a, a);\n" : "")
+                .append("    b := plus(a, 1);\n")
+                .append("    return b;\n")
+                .append("endmethod;\n");
+        }
+        source.append("method main() vars x\nbegin\n    x := f1(2);\n    write x;\nendmethod;\n");
+
+        ProgramAnalyser sequential = new ProgramAnalyser();
+        parse(source.toString()).accept(sequential);
+        ProgramAnalyser parallel = new ProgramAnalyser(new ForkJoinPool(4));
+        parse(source.toString()).accept(parallel);
+
+        assertEquals(1, sequential.getSemanticErrors().size());
+        assertEquals(sequential.getSemanticErrors().toString(), parallel.getSemanticErrors().toString());
+        assertEquals(sequential.getAssignmentErrors().toString(), parallel.getAssignmentErrors().toString());
+        assertEquals(sequential.getTypeErrors().toString(), parallel.getTypeErrors().toString());
+    }
+}
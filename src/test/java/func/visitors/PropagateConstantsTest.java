@@ -0,0 +1,123 @@
+package func.visitors;
+
+import func.Parser;
+import func.TokenBuffer;
+import func.syntax.Method;
+import func.syntax.Program;
+import func.syntax.exp.IntExpression;
+import func.syntax.statement.Assign;
+import func.syntax.statement.Statement;
+import func.syntax.statement.While;
+import func.syntax.statement.rw.Write;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PropagateConstantsTest {
+
+    private static List<Statement> propagate(String body) throws IOException {
+        String source = "method main() vars x, y, i\nbegin\n" + body + "endmethod;\n";
+        Program program = new Parser(TokenBuffer.read(new StringReader(source))).program();
+        program.accept(new PropagateConstants());
+        Method main = program.mainMethod();
+        return main.statements.statements;
+    }
+
+    private static int written(Statement statement) {
+        return ((IntExpression) ((Write) statement).exp).integer;
+    }
+
+    @Test
+    void testFoldAcrossStatements() throws IOException {
+        List<Statement> statements = propagate("" +
+            "    x := 2147483647;\n" +
+            "    y := plus(x, divide(7, 2));\n" +
+            "    write minus(y, times(x, 2));\n");
+        assertEquals(Integer.MIN_VALUE + 2, ((IntExpression) ((Assign) statements.get(1)).expression).integer);
+        assertEquals(Integer.MIN_VALUE + 2 - 2147483647 * 2, written(statements.get(2)));
+    }
+
+    @Test
+    void testResolveBranches() throws IOException {
+        List<Statement> statements = propagate("" +
+            "    x := 3;\n" +
+            "    if less(x, 2) then\n" +
+            "        y := 1;\n" +
+            "    else\n" +
+            "        y := 2;\n" +
+            "    endif;\n" +
+            "    while eq(y, 1)\n" +
+            "    begin\n" +
+            "        y := plus(y, 1);\n" +
+            "    endwhile;\n" +
+            "    write y;\n");
+        assertEquals(3, statements.size());
+        assertEquals(2, ((IntExpression) ((Assign) statements.get(1)).expression).integer);
+        assertEquals(2, written(statements.get(2)));
+    }
+
+    @Test
+    void testLoops() throws IOException {
+        List<Statement> statements = propagate("" +
+            "    x := 4;\n" +
+            "    y := 0;\n" +
+            "    i := 0;\n" +
+            "    while less(i, x)\n" +
+            "    begin\n" +
+            "        y := plus(y, x);\n" +
+            "        i := plus(i, 1);\n" +
+            "    endwhile;\n" +
+            "    write x;\n" +
+            "    write divide(y, 0);\n");
+        While loop = (While) statements.get(3);
+        assertEquals("less(i, 4)", loop.cond.toString());
+        assertEquals("y := plus(y, 4)", loop.statements.statements.get(0).toString());
+        assertEquals(4, written(statements.get(4)));
+        assertEquals("write divide(y, 0)", statements.get(5).toString());
+    }
+
+    @Test
+    void testEvaluateCalls() throws IOException {
+        String source = "" +
+            "method fib(n) vars a, b\n" +
+            "begin\n" +
+            "    if less(n, 2) then\n" +
+            "        a := n;\n" +
+            "    else\n" +
+            "        a := fib(minus(n, 1));\n" +
+            "        b := fib(minus(n, 2));\n" +
+            "        a := plus(a, b);\n" +
+            "    endif;\n" +
+            "    return a;\n" +
+            "endmethod;\n" +
+            "method loud(n) vars a\n" +
+            "begin\n" +
+            "    write n;\n" +
+            "    a := n;\n" +
+            "    return a;\n" +
+            "endmethod;\n" +
+            "method main() vars x, y\n" +
+            "begin\n" +
+            "    x := 25;\n" +
+            "    y := fib(x);\n" +
+            "    write plus(y, 1);\n" +
+            "    write loud(fib(5));\n" +
+            "    write fib(divide(x, 0));\n" +
+            "endmethod;\n";
+        Program program = new Parser(TokenBuffer.read(new StringReader(source))).program();
+        program.accept(new PropagateConstants(1000));
+        List<Statement> statements = program.mainMethod().statements.statements;
+        assertEquals(75026, written(statements.get(2)));
+        assertEquals("write loud(5)", statements.get(3).toString());
+        assertEquals("write fib(divide(25, 0))", statements.get(4).toString());
+
+        program = new Parser(TokenBuffer.read(new StringReader(source))).program();
+        program.accept(new PropagateConstants(100));
+        statements = program.mainMethod().statements.statements;
+        assertEquals("y := fib(25)", statements.get(1).toString());
+    }
+}
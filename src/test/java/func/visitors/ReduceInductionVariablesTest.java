@@ -0,0 +1,58 @@
+package func.visitors;
+
+import func.syntax.Method;
+import func.syntax.statement.While;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static func.visitors.Passes.statements;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReduceInductionVariablesTest {
+
+    private static Method reduce(String source) throws IOException {
+        return Passes.apply(source, new ReduceInductionVariables());
+    }
+
+    @Test
+    void testReduce() throws IOException {
+        Method method = reduce("method f(n) vars i, s\n" +
+            "begin\n" +
+            "    s := 0;\n" +
+            "    i := 0;\n" +
+            "    while less(times(i, 3), n)\n" +
+            "    begin\n" +
+            "        s := plus(s, times(10, i));\n" +
+            "        write times(i, 8);\n" +
+            "        i := minus(i, 2);\n" +
+            "        write times(s, 10);\n" +
+            "    endwhile;\n" +
+            "    return s;\n" +
+            "endmethod;\n");
+        assertEquals("[s := 0, i := 0, ind := times(i, 3), ind2 := times(i, 10), while less(ind, n)]",
+            statements(method.statements.statements).toString());
+        While loop = (While) method.statements.statements.get(4);
+        assertEquals("[s := plus(s, ind2), write times(i, 8), i := minus(i, 2), ind := plus(ind, -6), ind2 := plus(ind2, -20), write times(s, 10)]",
+            statements(loop.statements.statements).toString());
+        assertEquals("n, i, s, ind, ind2", method.args + ", " + method.vars);
+    }
+
+    @Test
+    void testNotInduction() throws IOException {
+        Method method = reduce("method f(n) vars i, s\n" +
+            "begin\n" +
+            "    s := 0;\n" +
+            "    i := 0;\n" +
+            "    while less(i, n)\n" +
+            "    begin\n" +
+            "        s := plus(s, times(i, 3));\n" +
+            "        if less(s, 10) then i := plus(i, 1); endif;\n" +
+            "        i := plus(i, 1);\n" +
+            "    endwhile;\n" +
+            "    return s;\n" +
+            "endmethod;\n");
+        assertEquals("[s := 0, i := 0, while less(i, n)]", statements(method.statements.statements).toString());
+        assertEquals("n, i, s", method.args + ", " + method.vars);
+    }
+}
@@ -0,0 +1,61 @@
+package func.visitors;
+
+import func.Parser;
+import func.TokenBuffer;
+import func.syntax.Identifier;
+import func.syntax.Method;
+import func.syntax.Program;
+import func.syntax.exp.FunctionExpression;
+import func.syntax.statement.Assign;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResolveBindingsTest {
+
+    private static Method bind(String source, String method) throws IOException {
+        Program program = new Parser(TokenBuffer.read(new StringReader(source))).program();
+        program.accept(new ResolveBindings());
+        return program.methods.methods.stream().filter(m -> m.id.name.equals(method)).findFirst().orElseThrow(AssertionError::new);
+    }
+
+    private static void assertBound(int slot, int depth, Identifier identifier) {
+        assertEquals(slot, identifier.slot, identifier.name + " slot");
+        assertEquals(depth, identifier.depth, identifier.name + " depth");
+    }
+
+    @Test
+    void testSlots() throws IOException {
+        Method f = bind("method f(a, b) vars c, f\n" +
+            "begin\n" +
+            "    c := plus(a, b);\n" +
+            "    f := g(c);\n" +
+            "    b := q;\n" +
+            "    return f;\n" +
+            "endmethod;\n" +
+            "method g(x)\n" +
+            "begin\n" +
+            "endmethod;\n", "f");
+
+        Assign first = (Assign) f.statements.statements.get(0);
+        FunctionExpression plus = (FunctionExpression) first.expression;
+        assertBound(2, Identifier.LOCAL, first.id);
+        assertBound(0, Identifier.GLOBAL, plus.id);
+        assertBound(0, Identifier.LOCAL, ((FunctionExpression) plus.expressions.expressions.get(0)).id);
+        assertBound(1, Identifier.LOCAL, ((FunctionExpression) plus.expressions.expressions.get(1)).id);
+
+        // a local shadows the method of the same name, but calls still go to methods
+        Assign second = (Assign) f.statements.statements.get(1);
+        FunctionExpression g = (FunctionExpression) second.expression;
+        assertBound(3, Identifier.LOCAL, second.id);
+        assertEquals(Identifier.GLOBAL, g.id.depth);
+        assertEquals(g.id.symbol, g.id.slot);
+
+        Assign third = (Assign) f.statements.statements.get(2);
+        assertBound(Identifier.UNBOUND, Identifier.UNBOUND, ((FunctionExpression) third.expression).id);
+        assertBound(3, Identifier.LOCAL, f.ret);
+    }
+}
@@ -0,0 +1,109 @@
+package func.visitors;
+
+import func.Parser;
+import func.TokenBuffer;
+import func.syntax.Method;
+import func.syntax.Program;
+import func.syntax.statement.If;
+import func.syntax.statement.Statement;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SpecialiseMethodsTest {
+
+    private static final String SOURCE = "" +
+        "method scale(v, k) vars r\n" +
+        "begin\n" +
+        "    if eq(k, 0) then\n" +
+        "        r := 0;\n" +
+        "    else\n" +
+        "        r := divide(times(v, k), 1000);\n" +
+        "    endif;\n" +
+        "    return r;\n" +
+        "endmethod;\n" +
+        "method sum(n, d) vars s\n" +
+        "begin\n" +
+        "    if less(n, 1) then\n" +
+        "        s := 0;\n" +
+        "    else\n" +
+        "        s := plus(n, sum(minus(n, d), d));\n" +
+        "    endif;\n" +
+        "    return s;\n" +
+        "endmethod;\n" +
+        "method main() vars a\n" +
+        "begin\n" +
+        "    read a;\n" +
+        "    write scale(a, 0);\n" +
+        "    write scale(a, 1000);\n" +
+        "    write scale(a, 0);\n" +
+        "    write scale(2, a);\n" +
+        "    write scale(a, 10);\n" +
+        "    write sum(a, minus(0, 2));\n" +
+        "endmethod;\n";
+
+    private static Program specialise(String source, int limit) throws IOException {
+        Program program = new Parser(TokenBuffer.read(new StringReader(source))).program();
+        program.accept(new SpecialiseMethods(limit, 1000));
+        return program;
+    }
+
+    private static List<String> statements(List<Statement> statements) {
+        return statements.stream().map(Statement::toString).collect(Collectors.toList());
+    }
+
+    @Test
+    void testSpecialise() throws IOException {
+        Program program = specialise(SOURCE, 3);
+        assertEquals("[read a, write scale__0(a), write scale__1000(a), write scale__0(a), write scale_2_(a), write scale(a, 10), write sum(a, minus(0, 2))]",
+            statements(program.mainMethod().statements.statements).toString());
+
+        Method copy = program.methods.methods.get(3);
+        assertEquals("scale__0", copy.id.name);
+        assertEquals("v, k, r", copy.args + ", " + copy.vars);
+        assertEquals("[k := 0, r := 0]", statements(copy.statements.statements).toString());
+        Method other = program.methods.methods.get(5);
+        assertEquals("scale_2_", other.id.name);
+        assertEquals("k, v, r", other.args + ", " + other.vars);
+        assertEquals(6, program.methods.methods.size());
+    }
+
+    @Test
+    void testRecursive() throws IOException {
+        Program program = specialise(SOURCE.replace("minus(0, 2)", "2"), 1);
+        Method copy = program.methods.methods.get(program.methods.methods.size() - 1);
+        assertEquals("sum__2", copy.id.name);
+        assertEquals("[d := 2, if less(n, 1)]", statements(copy.statements.statements).toString());
+        If cmd = (If) copy.statements.statements.get(1);
+        assertEquals("s := plus(n, sum__2(minus(n, 2)))", cmd.otherwise.statements.get(0).toString());
+    }
+
+    @Test
+    void testSameName() throws IOException {
+        Program program = specialise("" +
+            "method a_1(x, y) vars r\n" +
+            "begin\n" +
+            "    r := plus(x, y);\n" +
+            "    return r;\n" +
+            "endmethod;\n" +
+            "method a(p, q, s) vars r\n" +
+            "begin\n" +
+            "    r := plus(p, plus(q, s));\n" +
+            "    return r;\n" +
+            "endmethod;\n" +
+            "method main() vars x\n" +
+            "begin\n" +
+            "    read x;\n" +
+            "    write a_1(x, 2);\n" +
+            "    write a(1, x, 2);\n" +
+            "endmethod;\n", 4);
+        assertEquals("[read x, write a_1__2(x), write a_1__22(x)]", statements(program.mainMethod().statements.statements).toString());
+        assertEquals("x", program.methods.methods.get(3).args.toString());
+        assertEquals("q", program.methods.methods.get(4).args.toString());
+    }
+}
@@ -0,0 +1,91 @@
+package func.visitors;
+
+import func.Parser;
+import func.TokenBuffer;
+import func.syntax.BinaryOp;
+import func.syntax.Program;
+import func.syntax.statement.Statement;
+import func.syntax.statement.While;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UnrollLoopsTest {
+
+    private static List<Statement> unroll(String body) throws IOException {
+        String source = "method main() vars i, s\nbegin\n" + body + "endmethod;\n";
+        Program program = new Parser(TokenBuffer.read(new StringReader(source))).program();
+        program.accept(new UnrollLoops(4));
+        return program.mainMethod().statements.statements;
+    }
+
+    private static List<String> statements(List<Statement> statements) {
+        return statements.stream().map(Statement::toString).collect(Collectors.toList());
+    }
+
+    @Test
+    void testTrips() {
+        assertEquals(4, UnrollLoops.trips(BinaryOp.Less, true, 0, 3, 10));
+        assertEquals(0, UnrollLoops.trips(BinaryOp.Less, true, 10, 3, 10));
+        assertEquals(6, UnrollLoops.trips(BinaryOp.LessEq, false, 5, -1, 0));
+        assertEquals(5, UnrollLoops.trips(BinaryOp.NEq, true, 10, -2, 0));
+        assertEquals(-1, UnrollLoops.trips(BinaryOp.NEq, true, 10, -3, 0));
+        assertEquals(1, UnrollLoops.trips(BinaryOp.Eq, true, 3, 7, 3));
+        assertEquals(-1, UnrollLoops.trips(BinaryOp.Less, true, 0, -1, 10));
+        assertEquals(-1, UnrollLoops.trips(BinaryOp.LessEq, true, 0, 1, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void testFull() throws IOException {
+        List<Statement> statements = unroll("" +
+            "    s := 0;\n" +
+            "    i := 1;\n" +
+            "    while less(i, 4)\n" +
+            "    begin\n" +
+            "        s := plus(s, i);\n" +
+            "        i := plus(i, 1);\n" +
+            "    endwhile;\n" +
+            "    write s;\n");
+        assertEquals("[s := 0, i := 1, s := plus(s, i), i := plus(i, 1), s := plus(s, i), i := plus(i, 1), " +
+            "s := plus(s, i), i := plus(i, 1), write s]", statements(statements).toString());
+    }
+
+    @Test
+    void testPartial() throws IOException {
+        List<Statement> statements = unroll("" +
+            "    s := 0;\n" +
+            "    i := 50;\n" +
+            "    while less(0, i)\n" +
+            "    begin\n" +
+            "        s := plus(s, i);\n" +
+            "        i := minus(i, 5);\n" +
+            "    endwhile;\n" +
+            "    write s;\n");
+        assertEquals("[s := 0, i := 50, while nEq(i, 10), s := plus(s, i), i := minus(i, 5), " +
+            "s := plus(s, i), i := minus(i, 5), write s]", statements(statements).toString());
+        assertEquals(8, ((While) statements.get(2)).statements.statements.size());
+    }
+
+    @Test
+    void testUnknown() throws IOException {
+        List<Statement> statements = unroll("" +
+            "    read s;\n" +
+            "    i := 0;\n" +
+            "    while less(i, 3)\n" +
+            "    begin\n" +
+            "        if less(s, 2) then i := plus(i, 1); endif;\n" +
+            "        i := plus(i, 1);\n" +
+            "    endwhile;\n" +
+            "    read i;\n" +
+            "    while less(i, 3)\n" +
+            "    begin\n" +
+            "        i := plus(i, 1);\n" +
+            "    endwhile;\n");
+        assertEquals("[read s, i := 0, while less(i, 3), read i, while less(i, 3)]", statements(statements).toString());
+    }
+}